@@ -11,7 +11,11 @@
 
 package lx4p;
 
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 import java.net.*;
+import java.util.Random;
+import java.util.TreeSet;
 
 /** LXArtNet
  * 
@@ -20,14 +24,26 @@ import java.net.*;
  * 
  * <p>LXArtNet is primarily a server (controller) implementation.  It is, however,
  * capable of receiving Art-Net packets from the network and responding to ArtPoll
- * requests.  When in receiving mode, LXArtNet supports merge of up to two Art-Net
- * packet streams from unique IP addresses.</p>
+ * requests.  When in receiving mode, LXArtNet merges Art-Net packet streams from
+ * unique IP addresses, HTP or LTP, up to a configurable number of sources.</p>
+ * 
+ * <p>Any number of universes can be received by a single LXArtNet object by subscribing
+ * to their Port-Addresses with addPortAddress.  Each subscribed universe has its own merge buffers.</p>
+ * 
+ * <p>ArtSync is supported.  Once an ArtSync has been received, ArtDMX frames are held until the next ArtSync.
+ * If no ArtSync is received for 4 seconds, held frames are output and ArtDMX is again output as it arrives.
+ * ArtSync is only accepted from the sender of the most recent ArtDMX.
+ * sendArtSync tells receivers to output the ArtDMX packets sent since the last ArtSync.
+ * LXArtNetOutputGroup sends many universes followed by a single ArtSync.</p>
+ * 
+ * <p>Instead of calling readPacket, an LXArtNet object can be registered with an LXUDPReactor
+ * which receives packets on its own thread.  Poll replies are then sent using the reactor's channel.</p>
  * 
  * <p>Art-Net(TM) Designed by and Copyright Artistic Licence Holdings Ltd.</p>
 */
 
 
-public class LXArtNet extends LXDMXEthernet  {
+public class LXArtNet extends LXDMXEthernet implements LXUDPPacketHandler  {
 
 	public static final int ARTNET_PORT = 0x1936;
 	public static final int ARTNET_BUFFER_MAX = 530;
@@ -39,36 +55,72 @@ public class LXArtNet extends LXDMXEthernet  {
 	public static final int ARTNET_ART_POLL_REPLY = 0x2100;
 	public static final int ARTNET_ART_DMX = 0x5000;
 	public static final int ARTNET_ART_ADDRESS = 0x6000;
+	public static final int ARTNET_ART_SYNC = 0x5200;
+	public static final int ARTNET_SYNC_SIZE = 14;
+	/**
+	 * milliseconds without ArtSync after which ArtDMX is output immediately
+	 */
+	public static final int ARTNET_SYNC_TIMEOUT = 4000;
+	/**
+	 * longest random delay in milliseconds before replying to ArtPoll
+	 */
+	public static final int ARTNET_POLL_REPLY_DELAY_MAX = 1000;
+	/**
+	 * number of controllers that can wait for a delayed directed ArtPollReply
+	 */
+	public static final int ARTNET_POLL_REPLY_PENDING_MAX = 8;
 	public static final int ARTNET_NOP = 0;
+	
+	public static final int ARTNET_PORT_ADDRESS_MAX = 0x7FFF;
+	/**
+	 * ports described by one ArtPollReply, more ports are described with additional bind indexes
+	 */
+	public static final int ARTNET_PORTS_PER_REPLY = 4;
+	/**
+	 * "Art-Net" and its zero terminator read as a big endian long
+	 */
+	public static final long ARTNET_ID_LONG = 0x4172742D4E657400L;
 
 	/**
 	 * buffer for reading and sending packets
 	 */
 	byte[] _packet_buffer = new byte[ARTNET_BUFFER_MAX];
 	/**
-	 * buffer for dmx data for sending and received from first source
+	 * view of _packet_buffer for parsing packets received by readPacket
+	 */
+	ByteBuffer _packet_view = ByteBuffer.wrap(_packet_buffer);
+	/**
+	 * reusable DatagramPacket receiving into _packet_buffer, its length is reset before each receive
+	 */
+	DatagramPacket _receive_packet = new DatagramPacket(_packet_buffer, _packet_buffer.length);
+	/**
+	 * buffer for dmx data for sending
 	 */
 	byte[] _dmx_buffer1 = new byte[DMX_UNIVERSE_MAX];
 	/**
-	 * dmx data received from second dmx source
+	 * merges dmx data received from Art-Net sources
 	 */
-	byte[] _dmx_buffer2 = new byte[DMX_UNIVERSE_MAX];
+	LXDMXMerge _merge = new LXDMXMerge(DMX_UNIVERSE_MAX);
 	/**
 	 * number of slots aka addresses or channels
 	 */
 	int _dmx_slots = DMX_UNIVERSE_MAX;
 	/**
-	 * high nibble subnet, low nibble universe
+	 * high nibble subnet 0-15, low nibble universe 0-15
 	 */
 	byte _universe = 0;
 	/**
-	 * net portion of Port-Address, net+subnet+universe, 15bits (7+4+4)
+	 * net portion of Port-Address 0-127, net+subnet+universe, 15bits (7+4+4)
 	 */
 	byte _net = 0;
 	/**
-	 * packet sequence number for sending
+	 * frames committed from dmx buffer #1 for sending
+	 */
+	LXDMXUniverseBuffer _output_frames = new LXDMXUniverseBuffer(DMX_UNIVERSE_MAX);
+	/**
+	 * reusable ArtDMX packet for sending
 	 */
-	byte _sequence = 0;
+	LXArtNetDMXPacket _dmx_packet = new LXArtNetDMXPacket(0);
 	/**
 	 * IPv4 address advertised by ArtPollReply
 	 */
@@ -77,14 +129,6 @@ public class LXArtNet extends LXDMXEthernet  {
 	 * broadcast IPv4 address for packets/poll replies (can be null)
 	 */
 	public InetAddress _broadcast_address = null;
-	/**
-	 * IPv4 address of first received dmx source
-	 */
-	InetAddress _dmx_source1 = null;
-	/**
-	 * IPv4 address of second received dmx source
-	 */
-	InetAddress _dmx_source2 = null;
 	/**
 	 * Address of node to send output
 	 */
@@ -93,11 +137,116 @@ public class LXArtNet extends LXDMXEthernet  {
 	 *  controls if ArtDMX is broadcast if sendDMX is called without a specific destination address
 	 */
 	boolean _broadcast_dmx_enabled = false;
+	/**
+	 * nodes that have replied to ArtPoll
+	 */
+	LXArtNetNodeTable _node_table = new LXArtNetNodeTable();
+	/**
+	 * if true, sendDMX without a destination unicasts to the nodes in the node table that output the Port-Address
+	 */
+	boolean _unicast_routing = false;
+	/**
+	 * if true, ArtPollReply is sent after a random delay of up to ARTNET_POLL_REPLY_DELAY_MAX
+	 */
+	boolean _poll_reply_delay = true;
+	/**
+	 * time a delayed ArtPollReply is due, -1 if none is waiting
+	 */
+	long _pending_reply_time = -1;
+	/**
+	 * socket and addresses for the waiting ArtPollReply
+	 */
+	DatagramSocket _pending_reply_socket = null;
+	InetAddress[] _pending_reply_to = new InetAddress[ARTNET_POLL_REPLY_PENDING_MAX];
+	int _pending_reply_count = 0;
+	/**
+	 * source of reply delays
+	 */
+	Random _random = new Random();
+	/**
+	 * if true, ArtPollReply is sent to the sender of the poll even when a broadcast address is set
+	 */
+	boolean _poll_reply_directed = false;
+	/**
+	 * names, codes and status advertised in ArtPollReply
+	 */
+	LXArtNetNodeIdentity _identity = new LXArtNetNodeIdentity();
+	/**
+	 * encoded ArtPollReply packets, one per bind index, reused until the identity or ports change
+	 */
+	byte[][] _reply_buffers = new byte[0][];
+	DatagramPacket[] _reply_packets = new DatagramPacket[0];
+	/**
+	 * views of _reply_buffers, used to send replies on the channel of an LXUDPReactor
+	 */
+	ByteBuffer[] _reply_views = new ByteBuffer[0];
+	int _reply_count = 0;
+	/**
+	 * destination of replies sent on a reactor channel, replaced only when the reply address changes
+	 */
+	InetSocketAddress _reply_destination = null;
+	/**
+	 * state the encoded replies were built from
+	 */
+	int _reply_version = -1;
+	int _reply_port_address = -1;
+	LXDMXUniverse[] _reply_universes = null;
+	InetAddress _reply_address = null;
+	
+	/**
+	 * table of subscribed universes indexed by 15 bit Port-Address
+	 * <p>null unless multi-universe receive mode is used</p>
+	 */
+	LXDMXUniverse[] _universe_table = null;
+	/**
+	 * the subscribed universes in the order they were added
+	 */
+	LXDMXUniverse[] _universe_list = new LXDMXUniverse[0];
+	/**
+	 * time of next check for sources that have stopped sending
+	 */
+	long _next_timeout_check = 0;
+	/**
+	 * time the last ArtSync was received, ArtDMX is held while this is recent, valid if _art_sync_received
+	 */
+	long _last_art_sync = 0;
+	/**
+	 * true once an ArtSync has been received, currentTime has an arbitrary origin so _last_art_sync cannot mean "never"
+	 */
+	boolean _art_sync_received = false;
+	/**
+	 * ArtSync packet, encoded once when first sent
+	 */
+	byte[] _sync_buffer = new byte[ARTNET_SYNC_SIZE];
+	/**
+	 * reusable DatagramPacket wrapping _sync_buffer, null until the first ArtSync is sent
+	 */
+	DatagramPacket _sync_packet = null;
+	/**
+	 * if false, received ArtSync packets are ignored
+	 */
+	boolean _art_sync_enabled = true;
+	/**
+	 * true while in synchronous mode, cleared by checkSourceTimeouts when ArtSync stops
+	 */
+	boolean _sync_mode = false;
+	/**
+	 * sender of the most recent ArtDMX, ArtSync from another address is ignored
+	 */
+	InetAddress _last_dmx_sender = null;
+	/**
+	 * Port-Address of the last ArtDMX packet accepted by the universe table
+	 */
+	int _last_port_address = -1;
 	
 	/**
 	 * Object interested in received ArtPoll replies
 	 */
 	LXArtNetPollReplyListener _reply_Listener = null;
+	/**
+	 * channel used for replies when packets are received from an LXUDPReactor
+	 */
+	DatagramChannel _reply_channel = null;
 
 	/**
 	 * constructor initializes data buffers and local IP address
@@ -129,21 +278,59 @@ public class LXArtNet extends LXDMXEthernet  {
 		return ARTNET_PORT;
 	}
 	
+	/**
+	 * levels to read from
+	 * @return merged received levels once dmx has been received, otherwise dmx buffer #1
+	 */
+	byte[] inputLevels() {
+		if ( _merge.isActive() ) {
+			return _merge.mergedData();
+		}
+		return _dmx_buffer1;
+	}
+	
 	/**
 	 * dmx level data in slot
 	 * @param slot the address or channel of the data (1-512)
 	 * @return the level 0-255 for the slot (aka address or channel)
 	 */
 	public int getSlot(int slot) {
-		if ( _dmx_source2 != null ) {					// merge output HTP if necessary
-			int b1 = byte2int( _dmx_buffer1[slot-1] );  // _dmx_source2 is set when a packet is received
-			int b2 = byte2int( _dmx_buffer2[slot-1] );	// from a second, different, InetAddress
-			if ( b1 > b2 ) {
-				return b1;
-			}
-			return b2;
+		return byte2int( inputLevels()[slot-1] );
+	}
+	
+	/**
+	 * copy the levels of consecutive slots into a byte array
+	 * @param slot first slot to read (1-512)
+	 * @param data receives levels
+	 * @param offset index in data for first level
+	 * @param length number of slots to read
+	 */
+	public void getSlots(int slot, byte[] data, int offset, int length) {
+		System.arraycopy(inputLevels(), slot-1, data, offset, length);
+	}
+	
+	/**
+	 * copy the levels of consecutive slots into an int array
+	 * @param slot first slot to read (1-512)
+	 * @param data receives levels 0-255
+	 * @param offset index in data for first level
+	 * @param length number of slots to read
+	 */
+	public void getSlots(int slot, int[] data, int offset, int length) {
+		byte[] levels = inputLevels();
+		for (int j=0; j<length; j++) {
+			data[offset+j] = byte2int(levels[slot-1+j]);
 		}
-		return byte2int( _dmx_buffer1[slot-1] );		// otherwise return slot from dmx buffer #1
+	}
+	
+	/**
+	 * put the levels of consecutive slots into a ByteBuffer at its current position
+	 * @param slot first slot to read (1-512)
+	 * @param data receives levels, position is advanced by length
+	 * @param length number of slots to read
+	 */
+	public void getSlots(int slot, ByteBuffer data, int length) {
+		data.put(inputLevels(), slot-1, length);
 	}
 
 	/**
@@ -153,18 +340,71 @@ public class LXArtNet extends LXDMXEthernet  {
 	 * @param value the level 0-255 for the slot (aka address or channel)
 	 */
 	public void setSlot(int slot, byte value) {
-		_dmx_buffer1[slot-1] = value;
+		if ( _dmx_buffer1[slot-1] != value ) {
+			_dmx_buffer1[slot-1] = value;
+			_output_frames.markChanged(slot-1);
+		}
+	}
+	
+	/**
+	 * copy a range of levels into consecutive slots
+	 * @param slot first slot to set (1-512)
+	 * @param data levels 0-255
+	 * @param offset index of first level in data
+	 * @param length number of slots to set
+	 */
+	public void setSlots(int slot, byte[] data, int offset, int length) {
+		_output_frames.update(_dmx_buffer1, slot-1, data, offset, length);
+	}
+	
+	/**
+	 * copy a range of int levels into consecutive slots
+	 * @param slot first slot to set (1-512)
+	 * @param data levels 0-255
+	 * @param offset index of first level in data
+	 * @param length number of slots to set
+	 */
+	public void setSlots(int slot, int[] data, int offset, int length) {
+		_output_frames.update(_dmx_buffer1, slot-1, data, offset, length);
+	}
+	
+	/**
+	 * copy levels from the current position of a ByteBuffer into consecutive slots
+	 * @param slot first slot to set (1-512)
+	 * @param data levels 0-255, position is advanced by length
+	 * @param length number of slots to set
+	 */
+	public void setSlots(int slot, ByteBuffer data, int length) {
+		_output_frames.update(_dmx_buffer1, slot-1, data, length);
 	}
 	
 	/**
-	 * clears both dmx data buffers
+	 * set a range of consecutive slots to the same level
+	 * @param slot first slot to set (1-512)
+	 * @param length number of slots to set
+	 * @param value the level 0-255
+	 */
+	public void fillSlots(int slot, int length, byte value) {
+		_output_frames.fill(_dmx_buffer1, slot-1, length, value);
+	}
+	
+	/**
+	 * publish the levels in dmx buffer #1 as a complete frame for sending
+	 */
+	public void commitSlots() {
+		_output_frames.commit(_dmx_buffer1, 0, _dmx_slots);
+	}
+	
+	/**
+	 * clears dmx data buffer and received levels
 	 */
 	public void clearSlots() {
+		_merge.clear();
 		for(int j=0; j<DMX_UNIVERSE_MAX; j++) {
 			_dmx_buffer1[j] = 0;
-			_dmx_buffer2[j] = 0;
 			_packet_buffer[18+j] = 0;	//clear output in case less than full number of slots are sent...
 		}
+		_output_frames.markFrameChanged();
 	}
 	
 	/**
@@ -210,7 +450,37 @@ public class LXArtNet extends LXDMXEthernet  {
 	 * @param u universe
 	 */
 	public void setSubnetUniverse(byte s, byte u) {
-		_universe = (byte) ( ((s & 0x07) << 4 ) | u );
+		_universe = (byte) ( ((s & 0x0f) << 4 ) | (u & 0x0f) );
+	}
+	
+	/**
+	 * @return 15 bit Port-Address, net+subnet+universe
+	 */
+	public int getPortAddress() {
+		return (byte2int(_net) << 8) | byte2int(_universe);
+	}
+	
+	/**
+	 * sets net, subnet and universe
+	 * @param pa 15 bit Port-Address, see portAddress(net, subnet, universe)
+	 */
+	public void setPortAddress(int pa) {
+		_net = (byte) ((pa >> 8) & 0x7f);
+		_universe = (byte) (pa & 0xff);
+	}
+	
+	/**
+	 * @return net portion of Port-Address 0-127
+	 */
+	public int getNet() {
+		return byte2int(_net);
+	}
+	
+	/**
+	 * @return subnet portion of Port-Address 0-15
+	 */
+	public int getSubnet() {
+		return byte2int(_universe) >> 4;
 	}
 	
 
@@ -222,7 +492,7 @@ public class LXArtNet extends LXDMXEthernet  {
 	public void setUniverseAddress(byte u) {
 		if ( byte2int(u) != 0x7f ) {
 			if ( (u & 0x80) != 0 ) {
-				_universe = (byte) ( ( _universe & 0xf0 ) | (u & 0x07) );
+				_universe = (byte) ( ( _universe & 0xf0 ) | (u & 0x0f) );
 			}
 		}
 	}
@@ -235,7 +505,7 @@ public class LXArtNet extends LXDMXEthernet  {
 	public void setSubnetAddress(byte s) {
 		if ( byte2int(s) != 0x7f ) {
 			if ( (s & 0x80) != 0 ) {
-				_universe = (byte) ( ( _universe & 0x0f ) | ((s & 0x07) << 4 ) );
+				_universe = (byte) ( ( _universe & 0x0f ) | ((s & 0x0f) << 4 ) );
 			}
 		}
 	}
@@ -246,7 +516,7 @@ public class LXArtNet extends LXDMXEthernet  {
 	 */
 	public void setNetAddress(byte s) {
 		if ( (s & 0x80) != 0 ) {
-			_net = (byte) (s & 0x07);
+			_net = (byte) (s & 0x7f);
 		}
 	}
 	
@@ -267,6 +537,24 @@ public class LXArtNet extends LXDMXEthernet  {
 		_broadcast_dmx_enabled = en;
 	}
 	
+	/**
+	 * @return table of nodes that have replied to ArtPoll
+	 */
+	public LXArtNetNodeTable getNodeTable() {
+		return _node_table;
+	}
+	
+	/**
+	 * sends ArtDMX only to the nodes that output its Port-Address
+	 * <p>When enabled, sendDMX without a destination unicasts a copy of the packet to each node in the node table
+	 * that outputs this object's Port-Address.  If there are none, the output address or broadcast is used as before.
+	 * Nodes are found by sending ArtPoll.</p>
+	 * @param en enables unicast routing
+	 */
+	public void setUnicastRoutingEnabled(boolean en) {
+		_unicast_routing = en;
+	}
+	
 	/**
 	 * sets dmx output address address
 	 * @param outaddr address to send ArtDMX when no specific address is specified
@@ -275,6 +563,169 @@ public class LXArtNet extends LXDMXEthernet  {
 		_output_node_address = outaddr;
 	}
 
+	/**
+	 * utility to combine the parts of a Port-Address
+	 * @param net 0-127
+	 * @param subnet 0-15
+	 * @param universe 0-15
+	 * @return 15 bit Port-Address
+	 */
+	public static int portAddress(int net, int subnet, int universe) {
+		return ((net & 0x7f) << 8) | ((subnet & 0x0f) << 4) | (universe & 0x0f);
+	}
+	
+	/**
+	 * subscribe to a universe in multi-universe receive mode
+	 * <p>ArtDMX packets addressed to any subscribed Port-Address are accepted by a single LXArtNet
+	 * object and stored in that universe's own merge buffers.</p>
+	 * @param pa 15 bit Port-Address
+	 * @return universe object holding the received data for the Port-Address
+	 */
+	public LXDMXUniverse addPortAddress(int pa) {
+		pa = pa & ARTNET_PORT_ADDRESS_MAX;
+		if ( _universe_table == null ) {
+			_universe_table = new LXDMXUniverse[ARTNET_PORT_ADDRESS_MAX+1];
+		}
+		if ( _universe_table[pa] == null ) {
+			LXDMXUniverse u = new LXDMXUniverse(pa);
+			u.setMaxSources(_merge.getMaxSources());
+			u.setMergeMode(_merge.getMergeMode());
+			u.setSourceTimeout(_merge.getSourceTimeout());
+			u.setSourceLossListener(_merge._loss_listener);
+			_universe_table[pa] = u;
+			LXDMXUniverse[] nl = new LXDMXUniverse[_universe_list.length+1];
+			System.arraycopy(_universe_list, 0, nl, 0, _universe_list.length);
+			nl[_universe_list.length] = u;
+			_universe_list = nl;
+		}
+		return _universe_table[pa];
+	}
+	
+	/**
+	 * unsubscribe from a universe in multi-universe receive mode
+	 * @param pa 15 bit Port-Address
+	 */
+	public void removePortAddress(int pa) {
+		if ( _universe_table != null ) {
+			LXDMXUniverse u = _universe_table[pa & ARTNET_PORT_ADDRESS_MAX];
+			if ( u != null ) {
+				_universe_table[pa & ARTNET_PORT_ADDRESS_MAX] = null;
+				LXDMXUniverse[] nl = new LXDMXUniverse[_universe_list.length-1];
+				int n = 0;
+				for (int i=0; i<_universe_list.length; i++) {
+					if ( _universe_list[i] != u ) {
+						nl[n++] = _universe_list[i];
+					}
+				}
+				_universe_list = nl;
+			}
+		}
+	}
+	
+	/**
+	 * @param pa 15 bit Port-Address
+	 * @return subscribed universe object or null if the Port-Address is not subscribed
+	 */
+	public LXDMXUniverse getUniverseForPortAddress(int pa) {
+		if ( _universe_table != null ) {
+			return _universe_table[pa & ARTNET_PORT_ADDRESS_MAX];
+		}
+		return null;
+	}
+	
+	/**
+	 * dmx level data in slot of a subscribed universe
+	 * @param pa 15 bit Port-Address
+	 * @param slot the address or channel of the data (1-512)
+	 * @return the level 0-255 for the slot or zero if the Port-Address is not subscribed
+	 */
+	public int getSlot(int pa, int slot) {
+		LXDMXUniverse u = getUniverseForPortAddress(pa);
+		if ( u != null ) {
+			return u.getSlot(slot);
+		}
+		return 0;
+	}
+	
+	/**
+	 * sets the maximum number of sources merged for received universes
+	 * <p>Applies to this object's universe and every subscribed Port-Address.</p>
+	 * @param max number of sources
+	 */
+	public void setMaxMergeSources(int max) {
+		_merge.setMaxSources(max);
+		for (int i=0; i<_universe_list.length; i++) {
+			_universe_list[i].setMaxSources(max);
+		}
+	}
+	
+	/**
+	 * sets how received sources are merged
+	 * <p>Applies to this object's universe and every subscribed Port-Address.</p>
+	 * @param m LXDMXMerge.MERGE_HTP or LXDMXMerge.MERGE_LTP
+	 */
+	public void setMergeMode(int m) {
+		_merge.setMergeMode(m);
+		_identity.setMergeModeLTP(m == LXDMXMerge.MERGE_LTP);
+		for (int i=0; i<_universe_list.length; i++) {
+			_universe_list[i].setMergeMode(m);
+		}
+	}
+	
+	/**
+	 * sets the time after which a source that has stopped sending is removed from the merge
+	 * <p>Applies to this object's universe and every subscribed Port-Address.</p>
+	 * @param ms milliseconds, zero to never remove sources
+	 */
+	public void setSourceTimeout(int ms) {
+		_merge.setSourceTimeout(ms);
+		for (int i=0; i<_universe_list.length; i++) {
+			_universe_list[i].setSourceTimeout(ms);
+		}
+	}
+	
+	/**
+	 * sets the object notified when a source is removed from the merge after timing out
+	 * <p>Applies to this object's universe and every subscribed Port-Address.</p>
+	 * @param l listener
+	 */
+	public void setSourceLossListener(LXDMXSourceLossListener l) {
+		_merge.setSourceLossListener(l);
+		for (int i=0; i<_universe_list.length; i++) {
+			_universe_list[i].setSourceLossListener(l);
+		}
+	}
+	
+	/**
+	 * removes sources and nodes that have stopped sending and sends a delayed ArtPollReply when it is due
+	 * <p>Called by readPacket.  Timeout checks are limited to ten per second.</p>
+	 */
+	public void checkSourceTimeouts() {
+		long now = LXDMXMerge.currentTime();
+		sendDelayedPollReply(now);
+		if ( now >= _next_timeout_check ) {
+			_next_timeout_check = now + 100;
+			if ( _sync_mode && ! isSynchronous() ) {
+				_sync_mode = false;
+				applyStagedFrames(now);		// ArtSync has stopped, output held frames and return to immediate output
+			}
+			_merge.removeExpiredSources(now);
+			for (int i=0; i<_universe_list.length; i++) {
+				_universe_list[i].removeExpiredSources(now);
+			}
+			_node_table.removeExpiredNodes(now);
+		}
+	}
+	
+	/**
+	 * Port-Address of the most recent ArtDMX packet stored in a subscribed universe
+	 * <p>Use after readPacket returns true to find which universe changed.</p>
+	 * @return 15 bit Port-Address or -1
+	 */
+	public int lastReceivedPortAddress() {
+		return _last_port_address;
+	}
+
 	/**
 	 * attempt to read an Art-Net DMX packet from socket
 	 * @param socket Open and configured socket used to receive the packet.
@@ -282,18 +733,16 @@ public class LXArtNet extends LXDMXEthernet  {
 	 */
 	public boolean readPacket(DatagramSocket socket) {
 		boolean good_dmx = false;
-		// setup a DatagramPacket.  Note that _packet_buffer is the storage for the receivePacket, zero the buffer
-		for ( int i = 0; i < _packet_buffer.length; i++ ) {
-			_packet_buffer[i] = 0;
-  		}
-		DatagramPacket receivePacket = new DatagramPacket(_packet_buffer, _packet_buffer.length);
+		// _packet_buffer is the storage for _receive_packet, a previous receive may have shortened its length
+		_receive_packet.setLength(_packet_buffer.length);
 		try {
-			socket.receive(receivePacket);
-			good_dmx = (processDatagramPacket(socket, receivePacket) == ARTNET_ART_DMX);
+			socket.receive(_receive_packet);
+			good_dmx = (processDatagramPacket(socket, _receive_packet) == ARTNET_ART_DMX);
 		} catch ( Exception e) {
 			//   will catch receive time out exception
 			//System.out.println("readPacket exception " + e);
 		}
+		checkSourceTimeouts();
       return good_dmx;
 	}
 	
@@ -304,18 +753,16 @@ public class LXArtNet extends LXDMXEthernet  {
 	 */
 	public int readArtNetPacket(DatagramSocket socket) {
 		  int rv = -1;
-		  // setup a DatagramPacket.  Note that _packet_buffer is the storage for the receivePacket, zero the buffer
-		  for ( int i = 0; i < _packet_buffer.length; i++ ) {
-		    _packet_buffer[i] = 0;
-		    }
-		  DatagramPacket receivePacket = new DatagramPacket(_packet_buffer, _packet_buffer.length);
+		  // _packet_buffer is the storage for _receive_packet, a previous receive may have shortened its length
+		  _receive_packet.setLength(_packet_buffer.length);
 		  try {
-		    socket.receive(receivePacket);
-		    rv = processDatagramPacket(socket, receivePacket);
+		    socket.receive(_receive_packet);
+		    rv = processDatagramPacket(socket, _receive_packet);
 		  } catch ( Exception e) {
 		    //   will catch receive time out exception
 		    //System.out.println("readPacket exception " + e);
 		  }
+		  checkSourceTimeouts();
 		    return rv;
 	}
 	
@@ -345,73 +792,244 @@ public class LXArtNet extends LXDMXEthernet  {
 	 * @return opcode of the Art-Net packet
 	 */
 	public int processDatagramPacket(DatagramSocket socket, DatagramPacket receivePacket) {
+		int length = Math.min(receivePacket.getLength(), _packet_buffer.length);
+		if ( receivePacket.getData() != _packet_buffer ) {
+			System.arraycopy(receivePacket.getData(), receivePacket.getOffset(), _packet_buffer, 0, length);
+		}
+		_packet_view.clear();
+		_packet_view.limit(length);
+		return processPacket(socket, _packet_view, receivePacket.getAddress());
+	}
+	
+	/**
+	 * called by an LXUDPReactor when a packet is received on a channel registered with this object
+	 * <p>ArtDMX levels are merged directly from the reactor's buffer.  Replies are sent on channel.</p>
+	 */
+	public void packetReceived(LXUDPReactor reactor, DatagramChannel channel, ByteBuffer packet, InetSocketAddress sender) {
+		_reply_channel = channel;
+		if ( processPacket(null, packet, sender.getAddress()) == ARTNET_ART_DMX ) {
+			if ( _receive_listener != null ) {
+				int pa = _last_port_address;
+				if (( _universe_table == null ) || ( pa < 0 )) {
+					pa = getPortAddress();
+				}
+				_receive_listener.dmxReceived(this, pa);
+			}
+		}
+	}
+	
+	/**
+	 * called periodically by an LXUDPReactor to remove sources that have stopped sending
+	 */
+	public void reactorPeriodic(LXUDPReactor reactor) {
+		checkSourceTimeouts();
+	}
+	
+	/**
+	 * parses a received packet for Art-Net content
+	 * <p>ArtDMX is read in place, without copying the packet.  Other packets are copied to the packet buffer,
+	 * zero padded to the size of an ArtPollReply.</p>
+	 * @param socket used to send reply, if null the reactor's channel is used
+	 * @param packet received packet from position to limit
+	 * @param sender address of sender
+	 * @return opcode of the Art-Net packet
+	 */
+	int processPacket(DatagramSocket socket, ByteBuffer packet, InetAddress sender) {
+		int opcode = parseHeader(packet);
+		if ( opcode == ARTNET_ART_DMX ) {
+			return readArtDMX(packet, sender);
+		}
+		if ( opcode == ARTNET_ART_SYNC ) {
+			return readArtSync(sender);
+		}
+		if ( opcode != ARTNET_NOP ) {
+			int length = Math.min(packet.remaining(), _packet_buffer.length);
+			if ( packet != _packet_view ) {
+				packet.get(_packet_buffer, 0, length);
+			}
+			for (int i=length; i<ARTNET_REPLY_SIZE; i++) {
+				_packet_buffer[i] = 0;
+			}
+			opcode = processPacket(socket, length, sender);
+		}
+		return opcode;
+	}
+	
+	/**
+	 * merges the levels of an ArtDMX packet directly from the received packet
+	 * <p>Checks universe, protocol version and length.  A non-zero sequence[12] is checked per source
+	 * and duplicate or late packets are rejected.  Ignores physical[13].</p>
+	 * @param packet received ArtDMX packet from position to limit, position is not changed
+	 * @param sender address of sender
+	 * @return ARTNET_ART_DMX if levels were accepted, otherwise ARTNET_NOP
+	 */
+	int readArtDMX(ByteBuffer packet, InetAddress sender) {
+		int p = packet.position();
+		if (( packet.remaining() < 18 ) || ( (packet.get(p+11) & 0xff) < 14 )) {
+			return ARTNET_NOP;
+		}
+		int dmxlen = packet.getShort(p+16) & 0xffff;		// length is hi byte first
+		if (( packet.remaining() < dmxlen + 18 ) || ( dmxlen > DMX_UNIVERSE_MAX )) {
+			return ARTNET_NOP;
+		}
+		_last_dmx_sender = sender;
+		if ( _universe_table != null ) {
+			int pa = ((packet.get(p+15) & 0x7f) << 8) | (packet.get(p+14) & 0xff);
+			LXDMXUniverse u = _universe_table[pa];
+			if ( u != null ) {
+				LXDMXMergeSource source = u.sourceForAddress(sender, true);
+				if ( source != null ) {
+					if ( ! acceptSequence(source, packet.get(p+12)) ) {
+						return ARTNET_NOP;
+					}
+					if ( isSynchronous() ) {
+						u.stageSource(source, packet, p+18, dmxlen, source._priority);
+						return ARTNET_NOP;		// held until ArtSync
+					}
+					u.updateSource(source, packet, p+18, dmxlen);
+					_last_port_address = pa;
+					return ARTNET_ART_DMX;
+				}
+				return ARTNET_NOP;
+			}
+		}
+		if (( _universe == packet.get(p+14) ) && ( _net == (packet.get(p+15) & 0x7f) )) {
+			LXDMXMergeSource source = _merge.sourceForAddress(sender, true);
+			if ( source != null ) {
+				if ( ! acceptSequence(source, packet.get(p+12)) ) {
+					return ARTNET_NOP;
+				}
+				if ( dmxlen > _dmx_slots ) {
+					_dmx_slots = dmxlen;
+				}
+				if ( isSynchronous() ) {
+					_merge.stageSource(source, packet, p+18, dmxlen, source._priority);
+					return ARTNET_NOP;			// held until ArtSync
+				}
+				_merge.updateSource(source, packet, p+18, dmxlen);
+				return ARTNET_ART_DMX;
+			}
+		}
+		return ARTNET_NOP;
+	}
+	
+	/**
+	 * checks the ArtDMX sequence number of a source
+	 * @param source sender of packet
+	 * @param sequence sequence[12], zero if the sender does not use sequence numbers
+	 * @return true if the packet should be used
+	 */
+	boolean acceptSequence(LXDMXMergeSource source, byte sequence) {
+		if ( sequence == 0 ) {
+			source._sequence = -1;
+			return true;
+		}
+		return checkSequence(source, sequence & 0xff, 255);
+	}
+	
+	/**
+	 * @return true if an ArtSync has been received recently enough that ArtDMX should be held
+	 */
+	boolean isSynchronous() {
+		return _art_sync_enabled && _art_sync_received && ( LXDMXMerge.currentTime() - _last_art_sync <= ARTNET_SYNC_TIMEOUT );
+	}
+	
+	/**
+	 * @param en if false, ArtSync packets are ignored and ArtDMX is always output as it arrives
+	 */
+	public void setArtSyncEnabled(boolean en) {
+		_art_sync_enabled = en;
+	}
+	
+	/**
+	 * @return true if received ArtDMX is being held until the next ArtSync
+	 */
+	public boolean isSynchronousMode() {
+		return _sync_mode && isSynchronous();
+	}
+	
+	/**
+	 * merges ArtDMX frames held for synchronization
+	 * <p>As required by Art-Net, ArtSync is ignored unless it comes from the sender of the most recent ArtDMX.</p>
+	 * @param sender address of sender
+	 * @return ARTNET_ART_DMX if held frames were merged, otherwise ARTNET_ART_SYNC
+	 */
+	int readArtSync(InetAddress sender) {
+		if ( ! _art_sync_enabled ) {
+			return ARTNET_ART_SYNC;
+		}
+		if (( _last_dmx_sender != null ) && ( sender != null ) && ! _last_dmx_sender.equals(sender) ) {
+			return ARTNET_ART_SYNC;
+		}
+		long now = LXDMXMerge.currentTime();
+		_last_art_sync = now;
+		_art_sync_received = true;
+		_sync_mode = true;
+		if ( applyStagedFrames(now) ) {
+			return ARTNET_ART_DMX;		// so caller knows there has been a change in levels
+		}
+		return ARTNET_ART_SYNC;
+	}
+	
+	/**
+	 * merges the frames held for synchronization in every universe
+	 * @param now current time, see LXDMXMerge.currentTime
+	 * @return true if any held frame was merged
+	 */
+	boolean applyStagedFrames(long now) {
+		boolean applied = _merge.applySync(0, now);
+		for (int i=0; i<_universe_list.length; i++) {
+			if ( _universe_list[i].applySync(0, now) ) {
+				applied = true;
+			}
+		}
+		return applied;
+	}
+	
+	/**
+	 * parses the contents of the packet buffer for Art-Net content
+	 * @param socket used to send reply, if null the reactor's channel is used
+	 * @param receivedDataLength length of packet in packet buffer
+	 * @param sender address of sender
+	 * @return opcode of the Art-Net packet
+	 */
+	int processPacket(DatagramSocket socket, int receivedDataLength, InetAddress sender) {
 		int opcode = ARTNET_NOP;
-		byte[] receivedData = receivePacket.getData();
-		int receivedDataLength = receivePacket.getLength();
+		byte[] receivedData = _packet_buffer;
 
 		opcode = parseHeader();
 		switch ( opcode ) {
 			case ARTNET_ART_DMX:
-				// check universe and protocol version, ignore sequence[12], physical[13] and subnet/universe hi byte[15]
-				boolean no_dmx = true;
-				if (( _universe == receivedData[14] ) && ( _net == receivedData[15] ) && (byte2int(receivedData[11]) >= 14)) {
-					int dmxlen = byte2int(receivedData[16]) * 256 + byte2int(receivedData[17]);  // check size/slots
-					if ( receivedDataLength >= dmxlen + 18 ) {
-						if ( _dmx_source1 == null ) {		//if first sender, remember address
-							_dmx_source1 = receivePacket.getAddress();
-						}
-						if ( _dmx_source1.equals(receivePacket.getAddress()) ) {
-							if ( dmxlen > _dmx_slots ) {
-								_dmx_slots = dmxlen;
-							}
-							for(int j=0; j<_dmx_slots; j++) {
-								if ( j < dmxlen ) {
-									_dmx_buffer1[j] = receivedData[18+j];
-								} else {
-									_dmx_buffer1[j] = 0;
-								}
-							}
-							no_dmx = false;
-						} else {	// matched sender1
-							if ( _dmx_source2 == null ) {		//if first sender, remember address
-								_dmx_source2 = receivePacket.getAddress();
-							}
-							if ( _dmx_source2.equals(receivePacket.getAddress()) ) {
-								if ( dmxlen > _dmx_slots ) {
-									_dmx_slots = dmxlen;
-								}
-								for(int j=0; j<_dmx_slots; j++) {
-									if ( j < dmxlen ) {
-										_dmx_buffer2[j] = receivedData[18+j];
-									} else {
-										_dmx_buffer2[j] = 0;
-									}
-								}
-								no_dmx = false;
-							}
-						}
-					}     // matched size
-				}        // matched universe
-				if ( no_dmx ) {
-					opcode = ARTNET_NOP;    //return ARTNET_NOP if not good
-				}
+				_packet_view.clear();
+				_packet_view.limit(receivedDataLength);
+				opcode = readArtDMX(_packet_view, sender);
+				break;
+			case ARTNET_ART_SYNC:
+				opcode = readArtSync(sender);
 				break;
 			case ARTNET_ART_POLL:
 				if  (byte2int(receivedData[11]) >= 14) {
-					sendArtPollReply(socket, receivePacket.getAddress());
+					if ( _poll_reply_delay ) {
+						schedulePollReply(socket, sender);
+					} else {
+						sendArtPollReply(socket, sender);
+					}
 				}
 				break;
 			case ARTNET_ART_ADDRESS:
 				if (( receivedDataLength >= 107 ) && ( receivedData[11] >= 14 )) {  //protocol version [10] hi byte [11] lo byte 
 			   	   opcode = parseArtAddress();
-			   	   sendArtPollReply(socket, receivePacket.getAddress());
+			   	   sendArtPollReply(socket, sender);
 			   	}
 		   	break;
 			case ARTNET_ART_POLL_REPLY:
+				if (( receivedDataLength >= 207 ) && ( ! sender.equals(_my_address) )) {
+					_node_table.pollReplyReceived(receivedData, sender);
+				}
 				if ( _reply_Listener != null ) {
-					if ( _reply_Listener.pollReplyReceived(new LXArtNetPollReplyInfo(receivedData, receivePacket.getAddress())) ) {
-						if ( ! receivePacket.getAddress().equals(_my_address) ) {
-							_output_node_address = receivePacket.getAddress();	// ! from _my_address 
+					if ( _reply_Listener.pollReplyReceived(new LXArtNetPollReplyInfo(receivedData, sender)) ) {
+						if ( ! sender.equals(_my_address) ) {
+							_output_node_address = sender;	// ! from _my_address 
 						}
 					}
 				}
@@ -428,47 +1046,58 @@ public class LXArtNet extends LXDMXEthernet  {
 	 * @param to_ip address to which packet is sent
 	 */
 	public void sendDMX ( DatagramSocket socket, InetAddress to_ip ) {
-		setStringInByteArray("Art-Net", _packet_buffer, 0, true);
-		_packet_buffer[8] = 0;        //op code lo-hi
-		_packet_buffer[9] = 0x50;
-		_packet_buffer[10] = 0;
-		_packet_buffer[11] = 14;		//protocol version
-		
-		if ( _sequence == 0 ) {
-		  _sequence = 1;
-		} else {
-			_sequence++;
-		}
-		_packet_buffer[12] = _sequence;
-		_packet_buffer[13] = 0;
-		_packet_buffer[14] = _universe;
-		_packet_buffer[15] = _net;
-		_packet_buffer[16] = (byte)(_dmx_slots >> 8);
-		_packet_buffer[17] = (byte)(_dmx_slots & 0xFF);
-		
-		// write from dmx buffer #1 to packet buffer for output
-		// (setSlot puts values into dmx buffer #1)
-		for(int j=0; j<_dmx_slots; j++)  {
-			_packet_buffer[18+j] = _dmx_buffer1[j];
-  		}
-  
-  		DatagramPacket sendPacket = new DatagramPacket(_packet_buffer, _dmx_slots+18, to_ip, ARTNET_PORT);
-
-		try {
-			socket.send(sendPacket);
-		} catch ( Exception e) {
-			System.out.println("send dmx exception " + e);
+		if ( prepareDMX() ) {
+			_dmx_packet.send(socket, to_ip);
 		}
 	}
 	
+	/**
+	 * Sends the same Art-Net DMX packet to several addresses using socket.
+	 * @param socket Open and configured socket used to send the packet.
+	 * @param to_ips addresses to which packet is sent
+	 */
+	public void sendDMX ( DatagramSocket socket, InetAddress[] to_ips ) {
+		if ( prepareDMX() ) {
+			for (int i=0; i<to_ips.length; i++) {
+				_dmx_packet.send(socket, to_ips[i]);
+			}
+		}
+	}
+	
+	/**
+	 * copies the committed frame into the ArtDMX packet if the send policy requires a packet
+	 * @return true if the packet should be sent
+	 */
+	boolean prepareDMX() {
+		// header is pre-built, only Port-Address, sequence, length and data change
+		_dmx_packet.setPortAddress( getPortAddress() );
+		if ( autoCommit(_output_frames) ) {
+			commitSlots();		// (setSlot puts values into dmx buffer #1)
+		}
+		if ( ! sendRequired(_output_frames.hasNewFrame()) ) {
+			return false;		// unchanged and keep-alive interval has not passed
+		}
+		byte[] frame = _output_frames.snapshot();
+		_dmx_packet.setDMX(frame, 0, _output_frames.snapshotLength());
+		return true;
+	}
+	
 	/**
 	 * Sends Art-Net DMX packet to member output node address using socket.
+	 * <p>With unicast routing enabled, the packet is sent to the nodes that output the Port-Address instead.</p>
 	 * <p>Assumes that the socket is already setup for the type of address (unicast or broadcast).</p>
 	 * <p>Does nothing if broadcast address is not set</p>
 	 * @see #_broadcast_address
 	 * @param socket Open and configured socket used to send the packet.
 	 */
 	public void sendDMX ( DatagramSocket socket ) {
+		if ( _unicast_routing ) {
+			InetAddress[] nodes = _node_table.addressesForPortAddress(getPortAddress());
+			if ( nodes.length > 0 ) {
+				sendDMX(socket, nodes);
+				return;
+			}
+		}
 		if ( _output_node_address != null ) {
 			sendDMX(socket, _output_node_address	);
 		} else if ( _broadcast_dmx_enabled && ( _broadcast_address != null )) {
@@ -476,6 +1105,60 @@ public class LXArtNet extends LXDMXEthernet  {
 		}
 	}
 	
+	/**
+	 * Sends ArtSync telling receivers to output the ArtDMX packets sent since the last ArtSync
+	 * @param socket Open and configured socket used to send the packet.
+	 * @param to_ip address to which packet is sent, normally the broadcast address
+	 */
+	public void sendArtSync ( DatagramSocket socket, InetAddress to_ip ) {
+		if ( _sync_packet == null ) {
+			encodeArtSync(_sync_buffer);
+			_sync_packet = new DatagramPacket(_sync_buffer, ARTNET_SYNC_SIZE, to_ip, ARTNET_PORT);
+		} else if ( _sync_packet.getAddress() != to_ip ) {
+			_sync_packet.setAddress(to_ip);
+		}
+		try {
+			socket.send(_sync_packet);
+		} catch ( Exception e) {
+			System.out.println("send sync exception " + e);
+		}
+	}
+	
+	/**
+	 * writes an ArtSync packet
+	 * @param syncBuffer array of at least ARTNET_SYNC_SIZE bytes
+	 */
+	public static void encodeArtSync(byte[] syncBuffer) {
+		System.arraycopy(LXArtNetDMXPacket.ARTNET_ID, 0, syncBuffer, 0, LXArtNetDMXPacket.ARTNET_ID.length);
+		syncBuffer[8] = 0;        // op code lo-hi
+		syncBuffer[9] = (byte)0x52;
+		syncBuffer[10] = 0;
+		syncBuffer[11] = (byte)14;//protocol version lo byte
+		syncBuffer[12] = 0;       // aux1
+		syncBuffer[13] = 0;       // aux2
+	}
+	
+	/**
+	 * Sends ArtSync to the output node address or, if enabled, the broadcast address
+	 * @param socket Open and configured socket used to send the packet.
+	 */
+	public void sendArtSync ( DatagramSocket socket ) {
+		if ( _output_node_address != null ) {
+			sendArtSync(socket, _output_node_address);
+		} else if ( _broadcast_dmx_enabled && ( _broadcast_address != null )) {
+			sendArtSync(socket, _broadcast_address);
+		}
+	}
+	
+	/**
+	 * Sends ArtSync using dmxsocket
+	 */
+	public void sendSynchronization() {
+		if ( dmxsocket != null ) {
+			sendArtSync(dmxsocket);
+		}
+	}
+	
 	/**
 	 * Sends Art Poll
 	 * <p>If  broadcast address is set, poll is sent to that address. Otherwise does nothing.</p>
@@ -517,93 +1200,239 @@ public class LXArtNet extends LXDMXEthernet  {
 	
 	/**
 	 * Sends Art Poll Reply using socket
-	 * <p>If  broadcast address is set, poll reply is sent to that address.<BR>
+	 * <p>If  broadcast address is set and directed replies are not enabled, poll reply is sent to that address.<BR>
 	 * Otherwise it is sent to the specified address which is assumed to be the sender of the poll.</p>
+	 * <p>Every Port-Address received is advertised as an output port.  Ports sharing a net and subnet
+	 * are described together, up to four per reply.  Each reply after the first has the next bind index.</p>
+	 * <p>The replies are encoded once and resent until the node identity, the Port-Addresses or the IP address change.</p>
 	 * @see #_broadcast_address
 	 * @param socket Open and configured socket used to send the packet.
 	 * @param to_ip address for direct reply to poll
 	 */
-	public void sendArtPollReply ( DatagramSocket socket, InetAddress to_ip ) {
-  		byte[] replyBuffer = new byte[ARTNET_REPLY_SIZE];
-  		int i;
-  		for ( i = 0; i < ARTNET_REPLY_SIZE; i++ ) {
-		 replyBuffer[i] = 0;
-  		}
-  		setStringInByteArray("Art-Net", replyBuffer, 0, true);
-  		replyBuffer[8] = 0;        // op code lo-hi
-  		replyBuffer[9] = 0x21;
-  		byte[] raw = _my_address.getAddress();
-  		replyBuffer[10] = (byte)(raw[0] & 0xff);      //ip address
-  		replyBuffer[11] = (byte)(raw[1] & 0xff);
-  		replyBuffer[12] = (byte)(raw[2] & 0xff);
-  		replyBuffer[13] = (byte)(raw[3] & 0xff);
-  		replyBuffer[14] = 0x36;    // port lo first always 0x1936
-  		replyBuffer[15] = 0x19;
-  		replyBuffer[16] = 0;       // firmware hi-lo
-  		replyBuffer[17] = 0;
-  		replyBuffer[18] = 0;       // subnet hi-lo
-  		replyBuffer[19] = 0;
-  		replyBuffer[20] = 0;       // oem hi-lo
-  		replyBuffer[21] = 0;
-  		replyBuffer[22] = 0;       // ubea
-  		replyBuffer[23] = 0;       // status
-  		replyBuffer[24] = 0x50;    //     Mfg Code
-  		replyBuffer[25] = 0x12;    //     seems DMX workshop reads these bytes backwards
-  		
-  		setStringInByteArray("LXforProcessing", replyBuffer, 26, true);// short name
-  		setStringInByteArray("LXforProcessing", replyBuffer, 44, true);// short name// long name
-  		
-  		replyBuffer[173] = 1;    // number of ports
-  		replyBuffer[174] = (byte)128;  // can output from network
-  		replyBuffer[182] = (byte)128;  //  good output... change if error
-  		replyBuffer[190] = _universe;
-
+	public synchronized void sendArtPollReply ( DatagramSocket socket, InetAddress to_ip ) {
   		InetAddress a = _broadcast_address;
-  		if ( a == null ) {
+  		if (( a == null ) || _poll_reply_directed ) {
   			a = to_ip;   // reply directly if no broadcast address is supplied
   		}
-  		DatagramPacket sendPacket = new DatagramPacket(replyBuffer, replyBuffer.length, a, ARTNET_PORT);
-		try {
+  		if ( a == null ) {
+  			return;
+  		}
+  		preparePollReplies();
+  		for (int i=0; i<_reply_count; i++) {
+			try {
+				sendPollReply(socket, i, a);
+			} catch ( Exception e) {
+				System.out.println("send poll reply exception " + e);
+			}
+  		}
+	}
+	
+	/**
+	 * sends an encoded ArtPollReply using socket or, if socket is null, the channel of the last packet received from an LXUDPReactor
+	 * @param socket open socket or null
+	 * @param i index of reply in _reply_packets and _reply_views
+	 * @param a destination address
+	 */
+	void sendPollReply(DatagramSocket socket, int i, InetAddress a) throws java.io.IOException {
+		if ( socket != null ) {
+			DatagramPacket sendPacket = _reply_packets[i];
+			sendPacket.setAddress(a);
 			socket.send(sendPacket);
-		} catch ( Exception e) {
-			System.out.println("send poll reply exception " + e);
+		} else if ( _reply_channel != null ) {
+			if (( _reply_destination == null ) || ( ! a.equals(_reply_destination.getAddress()) )) {
+				_reply_destination = new InetSocketAddress(a, ARTNET_PORT);
+			}
+			ByteBuffer view = _reply_views[i];
+			view.clear();
+			_reply_channel.send(view, _reply_destination);
 		}
 	}
-
+	
+	/**
+	 * encodes the ArtPollReply packets if anything they describe has changed
+	 */
+	void preparePollReplies() {
+		int version = _identity.getVersion();
+		int pa = getPortAddress();
+		LXDMXUniverse[] list = _universe_list;
+		if (( version == _reply_version ) && ( pa == _reply_port_address ) && ( list == _reply_universes ) && ( _my_address == _reply_address )) {
+			return;
+		}
+  		int[] ports = pollReplyPortAddresses();
+  		int bind_index = 1;
+  		int first = 0;
+  		int n = 0;
+  		while ( first < ports.length ) {
+  			int count = 1;
+  			while (( count < ARTNET_PORTS_PER_REPLY ) && ( first+count < ports.length ) && (( ports[first+count] >> 4 ) == ( ports[first] >> 4 ))) {
+  				count++;			// same net and subnet
+  			}
+  			if ( n == _reply_buffers.length ) {
+  				byte[][] nb = new byte[n+1][];
+  				DatagramPacket[] np = new DatagramPacket[n+1];
+  				ByteBuffer[] nv = new ByteBuffer[n+1];
+  				System.arraycopy(_reply_buffers, 0, nb, 0, n);
+  				System.arraycopy(_reply_packets, 0, np, 0, n);
+  				System.arraycopy(_reply_views, 0, nv, 0, n);
+  				nb[n] = new byte[ARTNET_REPLY_SIZE];
+  				np[n] = new DatagramPacket(nb[n], ARTNET_REPLY_SIZE, _my_address, ARTNET_PORT);
+  				nv[n] = ByteBuffer.wrap(nb[n]);
+  				_reply_buffers = nb;
+  				_reply_packets = np;
+  				_reply_views = nv;
+  			}
+  			buildArtPollReply(_reply_buffers[n], bind_index, ports, first, count);
+			first += count;
+			bind_index++;
+			n++;
+  		}
+  		_reply_count = n;
+  		_reply_version = version;
+  		_reply_port_address = pa;
+  		_reply_universes = list;
+  		_reply_address = _my_address;
+	}
+	
+	/**
+	 * @return sorted Port-Addresses advertised by ArtPollReply, this object's Port-Address and any subscribed
+	 */
+	int[] pollReplyPortAddresses() {
+		LXDMXUniverse[] list = _universe_list;
+		TreeSet<Integer> pas = new TreeSet<Integer>();
+		pas.add(getPortAddress());
+		for (int i=0; i<list.length; i++) {
+			pas.add(list[i].getUniverse());
+		}
+		int[] rv = new int[pas.size()];
+		int n = 0;
+		for (Integer pa : pas) {
+			rv[n++] = pa;
+		}
+		return rv;
+	}
+	
+	/**
+	 * writes an ArtPollReply describing up to four ports that share a net and subnet
+	 * @param replyBuffer buffer of ARTNET_REPLY_SIZE bytes
+	 * @param bindIndex 1 for the first reply of this node
+	 * @param ports sorted Port-Addresses
+	 * @param first index in ports of first port in this reply
+	 * @param count number of ports in this reply 1-4
+	 */
+	void buildArtPollReply(byte[] replyBuffer, int bindIndex, int[] ports, int first, int count) {
+		_identity.encode(replyBuffer, _my_address, bindIndex, ports, first, count);
+	}
+	
+	/**
+	 * @return the names, codes and status advertised in ArtPollReply
+	 */
+	public LXArtNetNodeIdentity getNodeIdentity() {
+		return _identity;
+	}
+	
+	/**
+	 * @param identity names, codes and status to advertise in ArtPollReply
+	 */
+	public void setNodeIdentity(LXArtNetNodeIdentity identity) {
+		if ( identity != null ) {
+			_identity = identity;
+			_reply_version = -1;
+		}
+	}
+	
+	/**
+	 * @param directed if true, ArtPollReply is sent to the controller that polled instead of the broadcast address
+	 */
+	public void setPollReplyDirected(boolean directed) {
+		_poll_reply_directed = directed;
+	}
+	
+	/**
+	 * @param delay if true (default), ArtPollReply is sent after a random delay of up to one second
+	 * so that the replies of many nodes to a broadcast ArtPoll do not arrive at the controller together
+	 */
+	public void setPollReplyDelayEnabled(boolean delay) {
+		_poll_reply_delay = delay;
+	}
+	
+	/**
+	 * schedules an ArtPollReply after a random delay
+	 * <p>When replies are broadcast, polls received while a reply is waiting do not schedule another.
+	 * When replies are directed, each controller that polls is added to the waiting reply.
+	 * If ARTNET_POLL_REPLY_PENDING_MAX controllers are already waiting, the reply is sent immediately.</p>
+	 */
+	void schedulePollReply(DatagramSocket socket, InetAddress to_ip) {
+		if ( _pending_reply_time < 0 ) {
+			_pending_reply_socket = socket;
+			_pending_reply_count = 0;
+			_pending_reply_time = LXDMXMerge.currentTime() + _random.nextInt(ARTNET_POLL_REPLY_DELAY_MAX+1);
+		}
+		if (( _broadcast_address != null ) && ( ! _poll_reply_directed )) {
+			if ( _pending_reply_count == 0 ) {
+				_pending_reply_to[0] = to_ip;
+				_pending_reply_count = 1;
+			}
+			return;
+		}
+		for (int i=0; i<_pending_reply_count; i++) {
+			if ( to_ip.equals(_pending_reply_to[i]) ) {
+				return;
+			}
+		}
+		if ( _pending_reply_count < ARTNET_POLL_REPLY_PENDING_MAX ) {
+			_pending_reply_to[_pending_reply_count++] = to_ip;
+		} else {
+			sendArtPollReply(socket, to_ip);
+		}
+	}
+	
+	/**
+	 * sends the waiting ArtPollReply if it is due
+	 * @param now current time in milliseconds, see LXDMXMerge.currentTime
+	 */
+	void sendDelayedPollReply(long now) {
+		if (( _pending_reply_time >= 0 ) && ( now >= _pending_reply_time )) {
+			_pending_reply_time = -1;
+			for (int i=0; i<_pending_reply_count; i++) {
+				sendArtPollReply(_pending_reply_socket, _pending_reply_to[i]);
+				_pending_reply_to[i] = null;
+			}
+			_pending_reply_count = 0;
+			_pending_reply_socket = null;
+		}
+	}
+	
 	/**
 	 * sends an ArtAddress packet containing a command
-	 * <p>See Art-Net specification for commands eg. AcCancelMerge and AcClearOp0.</p>.
+	 * <p>See Art-Net specification for commands eg. AcCancelMerge and AcClearOp0.<BR>
+	 * Use LXArtNetAddressCommand to also change addresses or names,
+	 * and LXArtNetAddressProgrammer to program several nodes and confirm the changes.</p>
 	 * @param socket Open and configured socket used to send the packet.
 	 * @param to_ip address to which the packet is sent
 	 * @param command the ArtAddressCommand
 	 */
 	public void sendArtAddressCommand ( DatagramSocket socket, InetAddress to_ip, int command ) {
-		byte[] buffer = new byte[ARTNET_ART_ADDRESS_SIZE];
-  		int i;
-  		for ( i = 0; i < ARTNET_ART_ADDRESS_SIZE; i++ ) {
-  			buffer[i] = 0;
-  		}
-  		setStringInByteArray("Art-Net", buffer, 0, true);
-  		buffer[8] = 0;        // op code lo-hi
-  		buffer[9] = (byte)0x21;
-  		buffer[10] = 0;        // op code hi-lo
-  		buffer[11] = (byte)14;
-  		for(int j=96; j<104; j++) {
-  			buffer[j] = (byte)0x7f;//no change
-  		}
-  		buffer[106] = (byte)command;
+		LXArtNetAddressCommand ac = new LXArtNetAddressCommand(to_ip);
+		ac.setCommand(command);
+		ac.send(socket);
 	}
 	
 	/**
 	 * parses and ArtAddress type packet
-	 * <p>Supports remote setting of subnet/universe address<BR>
-	 * Supports AcCancelMerge and AcClearOp0 commands.</p>.
+	 * <p>Supports remote setting of net/subnet/universe address and of the short and long names<BR>
+	 * Supports AcCancelMerge, AcMergeLtp, AcMergeHtp and AcClearOp0 commands.  Merge mode applies to every port.</p>.
 	 * @return opcode Can be ARTNET_ART_DMX so caller of processDatagramPacket can respond to changed data
 	 */
 	public int parseArtAddress() {
 		setNetAddress(_packet_buffer[12]);
-		//[14] to [31] short name <= 18 bytes
-		//[32] to [95] long name  <= 64 bytes
+		//[14] to [31] short name <= 18 bytes, empty for no change
+		if ( _packet_buffer[14] != 0 ) {
+			_identity.setShortName(LXArtNetNodeIdentity.fieldString(_packet_buffer, 14, LXArtNetNodeIdentity.SHORT_NAME_LENGTH));
+		}
+		//[32] to [95] long name  <= 64 bytes, empty for no change
+		if ( _packet_buffer[32] != 0 ) {
+			_identity.setLongName(LXArtNetNodeIdentity.fieldString(_packet_buffer, 32, LXArtNetNodeIdentity.LONG_NAME_LENGTH));
+		}
 		//[96][97][98][99]                  input universe   ch 1 to 4
 		//[100][101][102][103]               output universe   ch 1 to 4
 		setUniverseAddress(_packet_buffer[100]);
@@ -613,16 +1442,24 @@ public class LXArtNet extends LXDMXEthernet  {
 		int command = byte2int(_packet_buffer[106]); // command
 		switch ( command ) {
 			case 0x01:	//cancel merge: resets ip address used to identify dmx sender
-				_dmx_source1 = null;
-				_dmx_source2 = null;
-				for(int j=0; j<DMX_UNIVERSE_MAX; j++) {
-					_dmx_buffer2[j] = 0;
-				}
+				cancelMergeForPortAddresses(false);
+				_merge.removeAllSources();
 				_dmx_slots = 0;
 				break;
+			case 0x10:	//merge ltp
+			case 0x11:
+			case 0x12:
+			case 0x13:
+				setMergeMode(LXDMXMerge.MERGE_LTP);
+				break;
+			case 0x50:	//merge htp
+			case 0x51:
+			case 0x52:
+			case 0x53:
+				setMergeMode(LXDMXMerge.MERGE_HTP);
+				break;
 			case 0x90:	//clear buffer
-				_dmx_source1 = null;
-				_dmx_source2 = null;
+				cancelMergeForPortAddresses(true);
 				clearSlots();
 				return ARTNET_ART_DMX;	// return ARTNET_ART_DMX so function calling readPacket
 										// knows there has been a change in levels
@@ -631,14 +1468,38 @@ public class LXArtNet extends LXDMXEthernet  {
 	}
 	
 
+	/**
+	 * resets the sources of every subscribed universe
+	 * @param clear also zero the levels of every subscribed universe
+	 */
+	void cancelMergeForPortAddresses(boolean clear) {
+		for (int i=0; i<_universe_list.length; i++) {
+			_universe_list[i].cancelMerge();
+			if ( clear ) {
+				_universe_list[i].clearSlots();
+			}
+		}
+	}
+
 	/**
 	 * utility for testing Art-Net packet header
 	 * @return Opcode of Art-Net packet or ARTNET_NOP
 	 */
 	public int parseHeader() {
-		String header = new String( _packet_buffer, 0, 7 );
-		if ( header.equals("Art-Net") ) {
-			return byte2int(_packet_buffer[9]) * 256 + byte2int(_packet_buffer[8]);  //opcode lo byte first
+		_packet_view.clear();
+		return parseHeader(_packet_view);
+	}
+	
+	/**
+	 * utility for testing Art-Net packet header
+	 * <p>The identifier is compared as a single long so no String is created.</p>
+	 * @param packet received packet from position to limit
+	 * @return Opcode of Art-Net packet or ARTNET_NOP
+	 */
+	public static int parseHeader(ByteBuffer packet) {
+		int p = packet.position();
+		if (( packet.remaining() >= 10 ) && ( packet.getLong(p) == ARTNET_ID_LONG )) {
+			return ((packet.get(p+9) & 0xff) << 8) | (packet.get(p+8) & 0xff);  //opcode lo byte first
 		}
 		return ARTNET_NOP;
 	}
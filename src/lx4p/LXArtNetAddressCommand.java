@@ -0,0 +1,302 @@
+/**
+ * Copyright (c) 2016 by Claude Heintz Design
+ *
+ * This file is part of a library called LXforProcessing - https://github.com/claudeheintz/LXforProcessing
+ * 
+ * LXforProcessing is free software: you can redistribute it and/or modify
+ * it under the terms of a BSD style license that should have been included with this file.
+ * If not, see https://www.claudeheintzdesign.com/lx/opensource.html.
+ * 
+*/
+
+package lx4p;
+
+import java.net.*;
+
+/** LXArtNetAddressCommand
+ * 
+ * <p>LXArtNetAddressCommand is an ArtAddress packet that remotely programs one node.<BR>
+ * Fields that are not set are sent as "no change".  A node answers ArtAddress with an ArtPollReply
+ * describing its new state, which LXArtNetAddressProgrammer uses to confirm the change.</p>
+ * 
+ * <p>The command also records its target and, when sent by an LXArtNetAddressProgrammer,
+ * the number of attempts and whether the change has been confirmed.</p>
+ * 
+ * <p>Art-Net(TM) Designed by and Copyright Artistic Licence Holdings Ltd.</p>
+ * 
+ * @author Claude Heintz
+*/
+
+public class LXArtNetAddressCommand  {
+	
+	public static final int AC_NONE = 0x00;
+	public static final int AC_CANCEL_MERGE = 0x01;
+	public static final int AC_LED_NORMAL = 0x02;
+	public static final int AC_LED_MUTE = 0x03;
+	public static final int AC_LED_LOCATE = 0x04;
+	public static final int AC_RESET_RX_FLAGS = 0x05;
+	public static final int AC_MERGE_LTP_0 = 0x10;
+	public static final int AC_MERGE_HTP_0 = 0x50;
+	public static final int AC_CLEAR_OP_0 = 0x90;
+	
+	/**
+	 * value of a switch field meaning "no change"
+	 */
+	public static final int NO_CHANGE = 0x7f;
+	/**
+	 * bit set in a switch field to program its value
+	 */
+	public static final int PROGRAM = 0x80;
+	
+	public static final int STATE_PENDING = 0;
+	public static final int STATE_CONFIRMED = 1;
+	public static final int STATE_FAILED = 2;
+	
+	/**
+	 * the encoded ArtAddress packet
+	 */
+	byte[] _buffer = new byte[LXArtNet.ARTNET_ART_ADDRESS_SIZE];
+	/**
+	 * node programmed by this command
+	 */
+	InetAddress _address;
+	/**
+	 * bind index of the node, 1 for the root device
+	 */
+	int _bind_index = 1;
+	/**
+	 * expected values, -1 if not changed by this command
+	 */
+	int _net = -1;
+	int _subnet = -1;
+	int[] _output_universes = {-1, -1, -1, -1};
+	String _short_name = null;
+	String _long_name = null;
+	int _command = AC_NONE;
+	/**
+	 * STATE_PENDING, STATE_CONFIRMED or STATE_FAILED
+	 */
+	volatile int _state = STATE_PENDING;
+	/**
+	 * number of times the command has been sent
+	 */
+	int _attempts = 0;
+	/**
+	 * time the command was last sent, see LXDMXMerge.currentTime
+	 */
+	long _last_sent = 0;
+	/**
+	 * reusable packet for sending
+	 */
+	DatagramPacket _packet = null;
+	
+	/**
+	 * construct a command that changes nothing
+	 * @param address IP address of node
+	 * @param bindIndex bind index of node, 1 for the root device
+	 */
+	public LXArtNetAddressCommand(InetAddress address, int bindIndex) {
+		_address = address;
+		_bind_index = Math.max(bindIndex, 1);
+		System.arraycopy(LXArtNetDMXPacket.ARTNET_ID, 0, _buffer, 0, LXArtNetDMXPacket.ARTNET_ID.length);
+		_buffer[8] = 0;        // op code lo-hi
+		_buffer[9] = (byte)(LXArtNet.ARTNET_ART_ADDRESS >> 8);
+		_buffer[10] = 0;       // protocol version hi-lo
+		_buffer[11] = (byte)14;
+		_buffer[12] = (byte)NO_CHANGE;	// net
+		_buffer[13] = (byte)_bind_index;
+		for (int i=96; i<104; i++) {
+			_buffer[i] = (byte)NO_CHANGE;	// input and output universes
+		}
+		_buffer[104] = (byte)NO_CHANGE;	// subnet
+		_buffer[105] = (byte)0xff;		// acn priority, no change
+		_buffer[106] = (byte)AC_NONE;
+	}
+	
+	/**
+	 * construct a command for the root device of a node
+	 * @param address IP address of node
+	 */
+	public LXArtNetAddressCommand(InetAddress address) {
+		this(address, 1);
+	}
+	
+	/**
+	 * @return IP address of node
+	 */
+	public InetAddress getAddress() {
+		return _address;
+	}
+	
+	/**
+	 * @return bind index of node
+	 */
+	public int getBindIndex() {
+		return _bind_index;
+	}
+	
+	/**
+	 * @param net net switch 0-127
+	 */
+	public void setNet(int net) {
+		_net = net & 0x7f;
+		_buffer[12] = (byte)(PROGRAM | _net);
+	}
+	
+	/**
+	 * @param subnet subnet switch 0-15
+	 */
+	public void setSubnet(int subnet) {
+		_subnet = subnet & 0x0f;
+		_buffer[104] = (byte)(PROGRAM | _subnet);
+	}
+	
+	/**
+	 * @param port output port 0-3
+	 * @param universe universe switch 0-15
+	 */
+	public void setOutputUniverse(int port, int universe) {
+		_output_universes[port] = universe & 0x0f;
+		_buffer[100+port] = (byte)(PROGRAM | _output_universes[port]);
+	}
+	
+	/**
+	 * @param port input port 0-3
+	 * @param universe universe switch 0-15
+	 */
+	public void setInputUniverse(int port, int universe) {
+		_buffer[96+port] = (byte)(PROGRAM | (universe & 0x0f));
+	}
+	
+	/**
+	 * set net, subnet and the universe of output port 0 from a Port-Address
+	 * @param pa 15 bit Port-Address
+	 */
+	public void setPortAddress(int pa) {
+		setNet(pa >> 8);
+		setSubnet(pa >> 4);
+		setOutputUniverse(0, pa);
+	}
+	
+	/**
+	 * @param name new short name, truncated to 17 bytes
+	 */
+	public void setShortName(String name) {
+		LXArtNetNodeIdentity.setField(_buffer, 14, LXArtNetNodeIdentity.SHORT_NAME_LENGTH, name);
+		_short_name = LXArtNetNodeIdentity.fieldString(_buffer, 14, LXArtNetNodeIdentity.SHORT_NAME_LENGTH);
+		if ( _short_name.length() == 0 ) {
+			_short_name = null;		// an empty name is sent as no change
+		}
+	}
+	
+	/**
+	 * @param name new long name, truncated to 63 bytes
+	 */
+	public void setLongName(String name) {
+		LXArtNetNodeIdentity.setField(_buffer, 32, LXArtNetNodeIdentity.LONG_NAME_LENGTH, name);
+		_long_name = LXArtNetNodeIdentity.fieldString(_buffer, 32, LXArtNetNodeIdentity.LONG_NAME_LENGTH);
+		if ( _long_name.length() == 0 ) {
+			_long_name = null;		// an empty name is sent as no change
+		}
+	}
+	
+	/**
+	 * @param command ArtAddress command, for example AC_CANCEL_MERGE
+	 */
+	public void setCommand(int command) {
+		_command = command & 0xff;
+		_buffer[106] = (byte)_command;
+	}
+	
+	/**
+	 * @param port output port 0-3
+	 * @param ltp if true merge latest takes precedence, otherwise highest takes precedence
+	 */
+	public void setMergeMode(int port, boolean ltp) {
+		setCommand(( ltp ? AC_MERGE_LTP_0 : AC_MERGE_HTP_0 ) + (port & 0x03));
+	}
+	
+	/**
+	 * tell the node to forget the sources it is merging
+	 */
+	public void cancelMerge() {
+		setCommand(AC_CANCEL_MERGE);
+	}
+	
+	/**
+	 * @return the encoded ArtAddress packet
+	 */
+	public byte[] getBuffer() {
+		return _buffer;
+	}
+	
+	/**
+	 * send the command to its node
+	 * @param socket Open and configured socket used to send the packet.
+	 * @return true if the packet was sent
+	 */
+	public boolean send(DatagramSocket socket) {
+		if ( _packet == null ) {
+			_packet = new DatagramPacket(_buffer, _buffer.length, _address, LXArtNet.ARTNET_PORT);
+		}
+		try {
+			socket.send(_packet);
+		} catch ( Exception e) {
+			System.out.println("send ArtAddress exception " + e);
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * @return STATE_PENDING, STATE_CONFIRMED or STATE_FAILED
+	 */
+	public int getState() {
+		return _state;
+	}
+	
+	/**
+	 * @return true if the node's ArtPollReply has shown the change
+	 */
+	public boolean isConfirmed() {
+		return _state == STATE_CONFIRMED;
+	}
+	
+	/**
+	 * @return number of times the command has been sent
+	 */
+	public int getAttempts() {
+		return _attempts;
+	}
+	
+	/**
+	 * compares a node's latest ArtPollReply with the values set by this command
+	 * <p>Commands that do not change a reported value, such as AC_CANCEL_MERGE, are confirmed by any reply.</p>
+	 * @param node node from the node table
+	 * @return true if the node reports every value this command sets
+	 */
+	public boolean matches(LXArtNetNode node) {
+		if (( _net >= 0 ) && ( node.getNet() != _net )) {
+			return false;
+		}
+		if (( _subnet >= 0 ) && ( node.getSubnet() != _subnet )) {
+			return false;
+		}
+		for (int i=0; i<_output_universes.length; i++) {
+			if (( _output_universes[i] >= 0 ) && ( node.getOutputUniverse(i) != _output_universes[i] )) {
+				return false;
+			}
+		}
+		if (( _short_name != null ) && ! _short_name.equals(node.getShortName()) ) {
+			return false;
+		}
+		if (( _long_name != null ) && ! _long_name.equals(node.getLongName()) ) {
+			return false;
+		}
+		int c = _command & 0xfc;
+		if (( c == AC_MERGE_LTP_0 ) || ( c == AC_MERGE_HTP_0 )) {
+			return node.isMergeModeLTP(_command & 0x03) == ( c == AC_MERGE_LTP_0 );
+		}
+		return true;
+	}
+}
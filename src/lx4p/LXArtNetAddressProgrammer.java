@@ -0,0 +1,246 @@
+/**
+ * Copyright (c) 2016 by Claude Heintz Design
+ *
+ * This file is part of a library called LXforProcessing - https://github.com/claudeheintz/LXforProcessing
+ * 
+ * LXforProcessing is free software: you can redistribute it and/or modify
+ * it under the terms of a BSD style license that should have been included with this file.
+ * If not, see https://www.claudeheintzdesign.com/lx/opensource.html.
+ * 
+*/
+
+package lx4p;
+
+import java.net.*;
+import java.util.Vector;
+import java.util.concurrent.locks.LockSupport;
+
+/** LXArtNetAddressProgrammer
+ * 
+ * <p>LXArtNetAddressProgrammer remotely programs a batch of nodes with ArtAddress and confirms each change.<BR>
+ * Every command is sent at once, without waiting for the others.  A node answers ArtAddress with an ArtPollReply,
+ * which updates the LXArtNet's node table.  A command is confirmed when its node has replied since the command
+ * was sent and the reply shows the values the command set.  Unconfirmed commands are sent again every retry interval
+ * until they are confirmed or the maximum number of attempts have been made.</p>
+ * 
+ * <p>update does one step without blocking and can be called from draw.  program repeats update until every command
+ * is confirmed or has failed.  Replies must be read by the LXArtNet, either wherever it normally reads packets
+ * or, with setReceiving(true), by the thread calling program.</p>
+ * 
+ * <p>Art-Net(TM) Designed by and Copyright Artistic Licence Holdings Ltd.</p>
+ * 
+ * @author Claude Heintz
+*/
+
+public class LXArtNetAddressProgrammer  {
+	
+	public static final int DEFAULT_RETRY_INTERVAL = 250;
+	public static final int DEFAULT_MAX_ATTEMPTS = 4;
+	/**
+	 * receive timeout used when program reads the socket
+	 */
+	public static final int RECEIVE_TIMEOUT = 20;
+	
+	/**
+	 * interface whose node table receives the replies
+	 */
+	LXArtNet _artnet;
+	/**
+	 * socket used to send commands (and to receive if _receiving)
+	 */
+	DatagramSocket _socket;
+	/**
+	 * commands of the batch
+	 */
+	Vector<LXArtNetAddressCommand> _commands = new Vector<LXArtNetAddressCommand>();
+	/**
+	 * milliseconds before an unconfirmed command is sent again
+	 */
+	int _retry_interval = DEFAULT_RETRY_INTERVAL;
+	/**
+	 * number of times a command is sent before it fails
+	 */
+	int _max_attempts = DEFAULT_MAX_ATTEMPTS;
+	/**
+	 * if true, program reads the socket
+	 */
+	boolean _receiving = false;
+	
+	/**
+	 * construct programmer
+	 * @param artnet interface that reads the replies
+	 * @param socket socket used to send commands, normally artnet's socket
+	 */
+	public LXArtNetAddressProgrammer(LXArtNet artnet, DatagramSocket socket) {
+		_artnet = artnet;
+		_socket = socket;
+	}
+	
+	/**
+	 * construct programmer using the interface's socket
+	 * @param artnet interface that reads the replies
+	 */
+	public LXArtNetAddressProgrammer(LXArtNet artnet) {
+		this(artnet, artnet.dmxsocket);
+	}
+	
+	/**
+	 * @param ms milliseconds before an unconfirmed command is sent again
+	 */
+	public void setRetryInterval(int ms) {
+		_retry_interval = ms;
+	}
+	
+	/**
+	 * @param n number of times a command is sent before it fails
+	 */
+	public void setMaxAttempts(int n) {
+		_max_attempts = Math.max(n, 1);
+	}
+	
+	/**
+	 * @param r if true, program reads and processes packets from the socket while it waits, restoring the socket's timeout when it returns
+	 */
+	public void setReceiving(boolean r) {
+		_receiving = r;
+	}
+	
+	/**
+	 * add a command to the batch
+	 * @param c command for one node
+	 */
+	public synchronized void add(LXArtNetAddressCommand c) {
+		c._state = LXArtNetAddressCommand.STATE_PENDING;
+		c._attempts = 0;
+		_commands.add(c);
+	}
+	
+	/**
+	 * add a command that moves a node's first output port to a Port-Address
+	 * @param address IP address of node
+	 * @param bindIndex bind index of node, 1 for the root device
+	 * @param pa 15 bit Port-Address
+	 * @return the command
+	 */
+	public LXArtNetAddressCommand addPortAddress(InetAddress address, int bindIndex, int pa) {
+		LXArtNetAddressCommand c = new LXArtNetAddressCommand(address, bindIndex);
+		c.setPortAddress(pa);
+		add(c);
+		return c;
+	}
+	
+	/**
+	 * remove every command
+	 */
+	public synchronized void clear() {
+		_commands.clear();
+	}
+	
+	/**
+	 * @return copy of the list of commands
+	 */
+	public synchronized Vector<LXArtNetAddressCommand> getCommands() {
+		return new Vector<LXArtNetAddressCommand>(_commands);
+	}
+	
+	/**
+	 * confirm commands shown by replies, send new commands and retry unconfirmed ones
+	 * @return number of commands still pending
+	 */
+	public synchronized int update() {
+		long now = LXDMXMerge.currentTime();
+		LXArtNetNodeTable table = _artnet.getNodeTable();
+		int pending = 0;
+		for (int i=0; i<_commands.size(); i++) {
+			LXArtNetAddressCommand c = _commands.elementAt(i);
+			if ( c._state != LXArtNetAddressCommand.STATE_PENDING ) {
+				continue;
+			}
+			if ( c._attempts > 0 ) {
+				synchronized ( table ) {
+					LXArtNetNode node = table.getNode(c._address, c._bind_index);
+					if (( node != null ) && ( node.getLastSeen() >= c._last_sent ) && c.matches(node)) {
+						c._state = LXArtNetAddressCommand.STATE_CONFIRMED;
+						continue;
+					}
+				}
+			}
+			if (( c._attempts == 0 ) || ( now - c._last_sent >= _retry_interval )) {
+				if ( c._attempts >= _max_attempts ) {
+					c._state = LXArtNetAddressCommand.STATE_FAILED;
+					continue;
+				}
+				c.send(_socket);
+				c._attempts++;
+				c._last_sent = now;
+			}
+			pending++;
+		}
+		return pending;
+	}
+	
+	/**
+	 * send the batch and wait until every command is confirmed or has failed
+	 * @param timeout maximum milliseconds to wait
+	 * @return number of confirmed commands
+	 */
+	public int program(int timeout) {
+		long end = LXDMXMerge.currentTime() + timeout;
+		int saved_timeout = -1;
+		if ( _receiving && ( _socket != null )) {
+			try {
+				saved_timeout = _socket.getSoTimeout();
+				_socket.setSoTimeout(RECEIVE_TIMEOUT);
+			} catch (Exception e) {
+			}
+		}
+		try {
+			while (( update() > 0 ) && ( LXDMXMerge.currentTime() < end )) {
+				if ( _receiving && ( _socket != null )) {
+					_artnet.readArtNetPacket(_socket);
+				} else {
+					LockSupport.parkNanos(RECEIVE_TIMEOUT * 1000000L);
+				}
+			}
+		} finally {
+			if ( saved_timeout >= 0 ) {
+				try {
+					_socket.setSoTimeout(saved_timeout);
+				} catch (Exception e) {
+				}
+			}
+		}
+		return getConfirmedCount();
+	}
+	
+	/**
+	 * @return number of commands confirmed
+	 */
+	public int getConfirmedCount() {
+		return countState(LXArtNetAddressCommand.STATE_CONFIRMED);
+	}
+	
+	/**
+	 * @return number of commands that were not confirmed after the maximum attempts
+	 */
+	public int getFailedCount() {
+		return countState(LXArtNetAddressCommand.STATE_FAILED);
+	}
+	
+	/**
+	 * @return number of commands still pending
+	 */
+	public int getPendingCount() {
+		return countState(LXArtNetAddressCommand.STATE_PENDING);
+	}
+	
+	synchronized int countState(int state) {
+		int n = 0;
+		for (int i=0; i<_commands.size(); i++) {
+			if ( _commands.elementAt(i)._state == state ) {
+				n++;
+			}
+		}
+		return n;
+	}
+}
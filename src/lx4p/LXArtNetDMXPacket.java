@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2016 by Claude Heintz Design
+ *
+ * This file is part of a library called LXforProcessing - https://github.com/claudeheintz/LXforProcessing
+ *
+ * LXforProcessing is free software: you can redistribute it and/or modify
+ * it under the terms of a BSD style license that should have been included with this file.
+ * If not, see https://www.claudeheintzdesign.com/lx/opensource.html.
+ *
+*/
+
+package lx4p;
+
+import java.net.*;
+import java.util.*;
+
+/** LXArtNetDMXPacket
+ *
+ * <p>LXArtNetDMXPacket is a pre-built ArtDMX packet for sending one universe.<BR>
+ * The static part of the header is written once when the packet is created.
+ * Each frame only the sequence, length and slot data are changed.
+ * A DatagramPacket is kept for each destination so that sending does not allocate.</p>
+ *
+ * <p>Art-Net(TM) Designed by and Copyright Artistic Licence Holdings Ltd.</p>
+*/
+
+public class LXArtNetDMXPacket  {
+
+	/**
+	 * Art-Net packet ID including null terminator
+	 */
+	public static final byte[] ARTNET_ID = {'A', 'r', 't', '-', 'N', 'e', 't', 0};
+	public static final int ARTNET_DMX_HEADER_SIZE = 18;
+
+	/**
+	 * holds the complete ArtDMX packet
+	 */
+	byte[] _packet_buffer = new byte[LXArtNet.ARTNET_BUFFER_MAX];
+	/**
+	 * number of slots in the last frame copied into the packet
+	 */
+	int _dmx_slots = LXDMXInterface.DMX_UNIVERSE_MAX;
+	/**
+	 * packet sequence number
+	 */
+	byte _sequence = 0;
+	/**
+	 * reusable DatagramPackets wrapping _packet_buffer, one for each destination
+	 */
+	HashMap<InetAddress, DatagramPacket> _destination_packets = new HashMap<InetAddress, DatagramPacket>();
+
+	/**
+	 * construct packet and write header
+	 * @param pa 15 bit Port-Address
+	 */
+	public LXArtNetDMXPacket(int pa) {
+		System.arraycopy(ARTNET_ID, 0, _packet_buffer, 0, ARTNET_ID.length);
+		_packet_buffer[8] = 0;			//op code lo-hi
+		_packet_buffer[9] = 0x50;
+		_packet_buffer[10] = 0;
+		_packet_buffer[11] = 14;		//protocol version
+		_packet_buffer[13] = 0;			//physical
+		setPortAddress(pa);
+		setLength(_dmx_slots);
+	}
+
+	/**
+	 * @param pa 15 bit Port-Address written into the packet header
+	 */
+	public void setPortAddress(int pa) {
+		_packet_buffer[14] = (byte) (pa & 0xff);
+		_packet_buffer[15] = (byte) ((pa >> 8) & 0x7f);
+	}
+
+	/**
+	 * @return 15 bit Port-Address from packet header
+	 */
+	public int getPortAddress() {
+		return ((_packet_buffer[15] & 0x7f) << 8) | (_packet_buffer[14] & 0xff);
+	}
+
+	/**
+	 * @return number of slots in the packet
+	 */
+	public int getNumberOfSlots() {
+		return _dmx_slots;
+	}
+
+	/**
+	 * sets the length field if it has changed
+	 * @param slots number of slots
+	 */
+	void setLength(int slots) {
+		_dmx_slots = slots;
+		_packet_buffer[16] = (byte)(slots >> 8);
+		_packet_buffer[17] = (byte)(slots & 0xFF);
+	}
+
+	/**
+	 * copy a frame of levels into the packet and advance the sequence number
+	 * @param data source of dmx levels
+	 * @param offset index of first slot in data
+	 * @param slots number of slots to copy
+	 */
+	public void setDMX(byte[] data, int offset, int slots) {
+		if ( slots != _dmx_slots ) {
+			setLength(slots);
+		}
+		System.arraycopy(data, offset, _packet_buffer, ARTNET_DMX_HEADER_SIZE, slots);
+		_sequence = (byte) (( _sequence & 0xff ) % 255 + 1);	// 1-255, zero means sequencing is disabled
+		_packet_buffer[12] = _sequence;
+	}
+
+	/**
+	 * finds or creates the DatagramPacket used to send to an address
+	 * @param to_ip destination
+	 * @return DatagramPacket with length set for the current frame
+	 */
+	DatagramPacket packetForDestination(InetAddress to_ip) {
+		DatagramPacket dp = _destination_packets.get(to_ip);
+		if ( dp == null ) {
+			dp = new DatagramPacket(_packet_buffer, _packet_buffer.length, to_ip, LXArtNet.ARTNET_PORT);
+			_destination_packets.put(to_ip, dp);
+		}
+		dp.setLength(ARTNET_DMX_HEADER_SIZE + _dmx_slots);
+		return dp;
+	}
+
+	/**
+	 * send the current frame
+	 * @param socket Open and configured socket used to send the packet.
+	 * @param to_ip address to which packet is sent
+	 */
+	public void send(DatagramSocket socket, InetAddress to_ip) {
+		try {
+			socket.send(packetForDestination(to_ip));
+		} catch ( Exception e) {
+			System.out.println("send dmx exception " + e);
+		}
+	}
+
+	/**
+	 * forget cached DatagramPackets
+	 */
+	public void clearDestinations() {
+		_destination_packets.clear();
+	}
+}
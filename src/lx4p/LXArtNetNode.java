@@ -0,0 +1,235 @@
+/**
+ * Copyright (c) 2016 by Claude Heintz Design
+ *
+ * This file is part of a library called LXforProcessing - https://github.com/claudeheintz/LXforProcessing
+ * 
+ * LXforProcessing is free software: you can redistribute it and/or modify
+ * it under the terms of a BSD style license that should have been included with this file.
+ * If not, see https://www.claudeheintzdesign.com/lx/opensource.html.
+ * 
+*/
+
+package lx4p;
+
+import java.net.*;
+import java.util.Arrays;
+
+/** LXArtNetNode
+ * 
+ * <p>LXArtNetNode is an entry in an LXArtNetNodeTable: the ports of one node (IP address and bind index)
+ * as described by its most recent ArtPollReply.</p>
+ * 
+ * <p>Art-Net(TM) Designed by and Copyright Artistic Licence Holdings Ltd.</p>
+*/
+
+public class LXArtNetNode  {
+	
+	/**
+	 * IP address of node
+	 */
+	InetAddress _address;
+	/**
+	 * bind index, 1 for the root device
+	 */
+	int _bind_index;
+	/**
+	 * short name of node
+	 */
+	String _short_name = "";
+	/**
+	 * long name of node
+	 */
+	String _long_name = "";
+	/**
+	 * Port-Addresses of ports that output dmx received from the network
+	 */
+	int[] _output_ports = new int[0];
+	/**
+	 * Port-Addresses of ports that input dmx to the network
+	 */
+	int[] _input_ports = new int[0];
+	/**
+	 * time of last reply in milliseconds, see LXDMXMerge.currentTime
+	 */
+	long _last_seen = 0;
+	/**
+	 * bytes 18-19 and 172-193 of the last reply, used to tell if the ports have changed
+	 */
+	byte[] _port_bytes = new byte[24];
+	/**
+	 * bytes 26-107 of the last reply, used to tell if the names have changed
+	 */
+	byte[] _name_bytes = new byte[82];
+	
+	/**
+	 * construct node
+	 * @param address IP address of node
+	 * @param bindIndex bind index of node
+	 */
+	LXArtNetNode(InetAddress address, int bindIndex) {
+		_address = address;
+		_bind_index = bindIndex;
+		_port_bytes[0] = (byte)0xff;		// never matches a reply, so the first update reads the ports
+	}
+	
+	/**
+	 * @return IP address of node
+	 */
+	public InetAddress getAddress() {
+		return _address;
+	}
+	
+	/**
+	 * @return bind index of node, 1 for the root device
+	 */
+	public int getBindIndex() {
+		return _bind_index;
+	}
+	
+	/**
+	 * @return short name of node
+	 */
+	public String getShortName() {
+		return _short_name;
+	}
+	
+	/**
+	 * @return long name of node
+	 */
+	public String getLongName() {
+		return _long_name;
+	}
+	
+	/**
+	 * @return copy of the Port-Addresses this node outputs
+	 */
+	public int[] getOutputPortAddresses() {
+		return _output_ports.clone();
+	}
+	
+	/**
+	 * @return copy of the Port-Addresses this node inputs
+	 */
+	public int[] getInputPortAddresses() {
+		return _input_ports.clone();
+	}
+	
+	/**
+	 * @param pa 15 bit Port-Address
+	 * @return true if the node outputs the Port-Address
+	 */
+	public boolean outputsPortAddress(int pa) {
+		for (int i=0; i<_output_ports.length; i++) {
+			if ( _output_ports[i] == pa ) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * @return net switch from the last reply 0-127
+	 */
+	public int getNet() {
+		return _port_bytes[0] & 0x7f;
+	}
+	
+	/**
+	 * @return subnet switch from the last reply 0-15
+	 */
+	public int getSubnet() {
+		return _port_bytes[1] & 0x0f;
+	}
+	
+	/**
+	 * @param port port 0-3
+	 * @return universe switch of output port from the last reply 0-15
+	 */
+	public int getOutputUniverse(int port) {
+		return _port_bytes[20+port] & 0x0f;		// SwOut[190+port]
+	}
+	
+	/**
+	 * @param port port 0-3
+	 * @return true if the last reply shows the output port merging in LTP mode
+	 */
+	public boolean isMergeModeLTP(int port) {
+		return ( _port_bytes[12+port] & 0x02 ) != 0;	// GoodOutput[182+port]
+	}
+	
+	/**
+	 * @return time of last reply in milliseconds, see LXDMXMerge.currentTime
+	 */
+	public long getLastSeen() {
+		return _last_seen;
+	}
+	
+	/**
+	 * update from an ArtPollReply, only parsing the fields that have changed
+	 * @param reply ArtPollReply zero padded to LXArtNet.ARTNET_REPLY_SIZE
+	 * @param now current time in milliseconds
+	 * @return true if the node's ports changed
+	 */
+	boolean update(byte[] reply, long now) {
+		_last_seen = now;
+		if ( ! regionMatches(reply, 26, _name_bytes) ) {
+			System.arraycopy(reply, 26, _name_bytes, 0, _name_bytes.length);
+			_short_name = stringAt(reply, 26, 18);
+			_long_name = stringAt(reply, 44, 64);
+		}
+		if (( reply[18] == _port_bytes[0] ) && ( reply[19] == _port_bytes[1] ) && regionMatches(reply, 172, 2, _port_bytes)) {
+			return false;
+		}
+		_port_bytes[0] = reply[18];
+		_port_bytes[1] = reply[19];
+		System.arraycopy(reply, 172, _port_bytes, 2, 22);
+		
+		int netsub = ((reply[18] & 0x7f) << 8) | ((reply[19] & 0x0f) << 4);
+		int ports = Math.min(reply[173] & 0xff, LXArtNet.ARTNET_PORTS_PER_REPLY);
+		int outputs = 0;
+		int inputs = 0;
+		int[] out = new int[ports];
+		int[] in = new int[ports];
+		for (int i=0; i<ports; i++) {
+			int type = reply[174+i] & 0xff;
+			if (( type & 0x3f ) == 0 ) {			// DMX512 protocol
+				if (( type & 0x80 ) != 0 ) {
+					out[outputs++] = netsub | (reply[190+i] & 0x0f);
+				}
+				if (( type & 0x40 ) != 0 ) {
+					in[inputs++] = netsub | (reply[186+i] & 0x0f);
+				}
+			}
+		}
+		_output_ports = Arrays.copyOf(out, outputs);
+		_input_ports = Arrays.copyOf(in, inputs);
+		return true;
+	}
+	
+	static boolean regionMatches(byte[] a, int index, byte[] b) {
+		return regionMatches(a, index, 0, b);
+	}
+	
+	/**
+	 * @return true if a starting at index equals b from offset to its end
+	 */
+	static boolean regionMatches(byte[] a, int index, int offset, byte[] b) {
+		for (int i=offset; i<b.length; i++) {
+			if ( a[index+i-offset] != b[i] ) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * @return null terminated string of at most max bytes
+	 */
+	static String stringAt(byte[] a, int index, int max) {
+		int z = index;
+		while (( z < index+max ) && ( a[z] != 0 )) {
+			z++;
+		}
+		return new String(a, index, z-index);
+	}
+}
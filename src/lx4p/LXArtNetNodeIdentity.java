@@ -0,0 +1,340 @@
+/**
+ * Copyright (c) 2016 by Claude Heintz Design
+ *
+ * This file is part of a library called LXforProcessing - https://github.com/claudeheintz/LXforProcessing
+ * 
+ * LXforProcessing is free software: you can redistribute it and/or modify
+ * it under the terms of a BSD style license that should have been included with this file.
+ * If not, see https://www.claudeheintzdesign.com/lx/opensource.html.
+ * 
+*/
+
+package lx4p;
+
+import java.net.*;
+
+/** LXArtNetNodeIdentity
+ * 
+ * <p>LXArtNetNodeIdentity describes the node advertised in ArtPollReply.<BR>
+ * Names, OEM and ESTA codes, firmware version, status, style, port type and MAC address are set here.
+ * The Port-Addresses come from the LXArtNet object that sends the reply.</p>
+ * 
+ * <p>Strings are converted to bytes when they are set.  Every setter advances a version number;
+ * LXArtNet keeps its encoded replies until the version changes, so answering a poll does not allocate.</p>
+ * 
+ * <p>Art-Net(TM) Designed by and Copyright Artistic Licence Holdings Ltd.</p>
+ * 
+ * @author Claude Heintz
+*/
+
+public class LXArtNetNodeIdentity  {
+	
+	public static final int SHORT_NAME_LENGTH = 18;
+	public static final int LONG_NAME_LENGTH = 64;
+	public static final int NODE_REPORT_LENGTH = 64;
+	public static final int MAC_ADDRESS_LENGTH = 6;
+	
+	public static final int STYLE_NODE = 0x00;
+	public static final int STYLE_CONTROLLER = 0x01;
+	public static final int STYLE_MEDIA = 0x02;
+	public static final int STYLE_VISUALIZER = 0x04;
+	
+	/**
+	 * port type of a port that outputs DMX512 from the network
+	 */
+	public static final int PORT_TYPE_DMX_OUTPUT = 0x80;
+	/**
+	 * port type of a port that inputs DMX512 to the network
+	 */
+	public static final int PORT_TYPE_DMX_INPUT = 0x40;
+	/**
+	 * Status2 bit set when 15 bit Port-Addresses are supported, always advertised
+	 */
+	public static final int STATUS2_PORT_ADDRESS_15_BIT = 0x08;
+	
+	/**
+	 * null padded names and node report
+	 */
+	byte[] _short_name = new byte[SHORT_NAME_LENGTH];
+	byte[] _long_name = new byte[LONG_NAME_LENGTH];
+	byte[] _node_report = new byte[NODE_REPORT_LENGTH];
+	/**
+	 * OEM code [20] hi [21] lo
+	 */
+	int _oem = 0;
+	/**
+	 * ESTA manufacturer code [24] lo [25] hi
+	 */
+	int _esta = 0x1250;
+	/**
+	 * firmware version [16] hi [17] lo
+	 */
+	int _firmware = 0;
+	/**
+	 * UBEA version [22]
+	 */
+	int _ubea = 0;
+	/**
+	 * Status1 [23]
+	 */
+	int _status1 = 0;
+	/**
+	 * Status2 [212], STATUS2_PORT_ADDRESS_15_BIT is added when encoded
+	 */
+	int _status2 = 0;
+	/**
+	 * Style [200]
+	 */
+	int _style = STYLE_NODE;
+	/**
+	 * port type [174-177] of each advertised port
+	 */
+	int _port_type = PORT_TYPE_DMX_OUTPUT;
+	/**
+	 * if true, GoodOutput [182-185] shows LTP merge
+	 */
+	boolean _merge_ltp = false;
+	/**
+	 * MAC address [201-206]
+	 */
+	byte[] _mac = new byte[MAC_ADDRESS_LENGTH];
+	/**
+	 * advanced by every change
+	 */
+	volatile int _version = 0;
+	
+	/**
+	 * construct identity with the library's default names
+	 */
+	public LXArtNetNodeIdentity() {
+		setShortName("LXforProcessing");
+		setLongName("LXforProcessing");
+	}
+	
+	/**
+	 * @return number that changes whenever the identity is changed
+	 */
+	public int getVersion() {
+		return _version;
+	}
+	
+	/**
+	 * @param name short name, truncated to 17 bytes
+	 */
+	public synchronized void setShortName(String name) {
+		setField(_short_name, 0, _short_name.length, name);
+		_version++;
+	}
+	
+	/**
+	 * @return short name
+	 */
+	public synchronized String getShortName() {
+		return fieldString(_short_name, 0, _short_name.length);
+	}
+	
+	/**
+	 * @param name long name, truncated to 63 bytes
+	 */
+	public synchronized void setLongName(String name) {
+		setField(_long_name, 0, _long_name.length, name);
+		_version++;
+	}
+	
+	/**
+	 * @return long name
+	 */
+	public synchronized String getLongName() {
+		return fieldString(_long_name, 0, _long_name.length);
+	}
+	
+	/**
+	 * @param report node report, for example "#0001 [0000] OK", truncated to 63 bytes
+	 */
+	public synchronized void setNodeReport(String report) {
+		setField(_node_report, 0, _node_report.length, report);
+		_version++;
+	}
+	
+	/**
+	 * @param oem OEM code 0-0xffff
+	 */
+	public synchronized void setOEMCode(int oem) {
+		_oem = oem & 0xffff;
+		_version++;
+	}
+	
+	/**
+	 * @param esta ESTA manufacturer code 0-0xffff
+	 */
+	public synchronized void setESTACode(int esta) {
+		_esta = esta & 0xffff;
+		_version++;
+	}
+	
+	/**
+	 * @param v firmware revision 0-0xffff
+	 */
+	public synchronized void setFirmwareVersion(int v) {
+		_firmware = v & 0xffff;
+		_version++;
+	}
+	
+	/**
+	 * @param v UBEA version, zero if not programmed
+	 */
+	public synchronized void setUBEAVersion(int v) {
+		_ubea = v & 0xff;
+		_version++;
+	}
+	
+	/**
+	 * @param s Status1 field, see Art-Net specification
+	 */
+	public synchronized void setStatus1(int s) {
+		_status1 = s & 0xff;
+		_version++;
+	}
+	
+	/**
+	 * @param s Status2 field, see Art-Net specification (15 bit Port-Address support is always advertised)
+	 */
+	public synchronized void setStatus2(int s) {
+		_status2 = s & 0xff;
+		_version++;
+	}
+	
+	/**
+	 * @param s style code, for example STYLE_NODE or STYLE_CONTROLLER
+	 */
+	public synchronized void setStyle(int s) {
+		_style = s & 0xff;
+		_version++;
+	}
+	
+	/**
+	 * @param t port type advertised for every port, default PORT_TYPE_DMX_OUTPUT
+	 */
+	public synchronized void setPortType(int t) {
+		_port_type = t & 0xff;
+		_version++;
+	}
+	
+	/**
+	 * @param ltp true if output ports merge latest takes precedence, set by LXArtNet.setMergeMode
+	 */
+	public synchronized void setMergeModeLTP(boolean ltp) {
+		if ( ltp != _merge_ltp ) {
+			_merge_ltp = ltp;
+			_version++;
+		}
+	}
+	
+	/**
+	 * @param mac six byte MAC address or null for zeros
+	 */
+	public synchronized void setMACAddress(byte[] mac) {
+		for (int i=0; i<MAC_ADDRESS_LENGTH; i++) {
+			_mac[i] = ( mac != null ) && ( i < mac.length ) ? mac[i] : 0;
+		}
+		_version++;
+	}
+	
+	/**
+	 * set the MAC address from the network interface that has an address
+	 * @param address IP address of the interface
+	 */
+	public void setMACAddress(InetAddress address) {
+		try {
+			NetworkInterface ni = NetworkInterface.getByInetAddress(address);
+			if ( ni != null ) {
+				setMACAddress(ni.getHardwareAddress());
+			}
+		} catch (Exception e) {
+			System.out.println("Can't read MAC address " + e);
+		}
+	}
+	
+	/**
+	 * @return copy of MAC address
+	 */
+	public synchronized byte[] getMACAddress() {
+		return _mac.clone();
+	}
+	
+	/**
+	 * writes an ArtPollReply describing up to four ports that share a net and subnet
+	 * @param replyBuffer buffer of at least ARTNET_REPLY_SIZE bytes, every byte of the reply is written
+	 * @param address IPv4 address of the node
+	 * @param bindIndex 1 for the first reply of this node
+	 * @param ports sorted Port-Addresses
+	 * @param first index in ports of first port in this reply
+	 * @param count number of ports in this reply 1-4
+	 */
+	public synchronized void encode(byte[] replyBuffer, InetAddress address, int bindIndex, int[] ports, int first, int count) {
+		for (int i=0; i<LXArtNet.ARTNET_REPLY_SIZE; i++) {
+			replyBuffer[i] = 0;
+		}
+		System.arraycopy(LXArtNetDMXPacket.ARTNET_ID, 0, replyBuffer, 0, LXArtNetDMXPacket.ARTNET_ID.length);
+		replyBuffer[8] = 0;        // op code lo-hi
+		replyBuffer[9] = 0x21;
+		byte[] raw = address.getAddress();
+		System.arraycopy(raw, 0, replyBuffer, 10, 4);	// ip address
+		replyBuffer[14] = 0x36;    // port lo first always 0x1936
+		replyBuffer[15] = 0x19;
+		replyBuffer[16] = (byte)(_firmware >> 8);       // firmware hi-lo
+		replyBuffer[17] = (byte)_firmware;
+		replyBuffer[18] = (byte)((ports[first] >> 8) & 0x7f);    // net switch
+		replyBuffer[19] = (byte)((ports[first] >> 4) & 0x0f);    // subnet switch
+		replyBuffer[20] = (byte)(_oem >> 8);            // oem hi-lo
+		replyBuffer[21] = (byte)_oem;
+		replyBuffer[22] = (byte)_ubea;
+		replyBuffer[23] = (byte)_status1;
+		replyBuffer[24] = (byte)_esta;                  // esta manufacturer lo-hi
+		replyBuffer[25] = (byte)(_esta >> 8);
+		System.arraycopy(_short_name, 0, replyBuffer, 26, SHORT_NAME_LENGTH);
+		System.arraycopy(_long_name, 0, replyBuffer, 44, LONG_NAME_LENGTH);
+		System.arraycopy(_node_report, 0, replyBuffer, 108, NODE_REPORT_LENGTH);
+		
+		replyBuffer[173] = (byte)count;    // number of ports
+		for (int i=0; i<count; i++) {
+			replyBuffer[174+i] = (byte)_port_type;
+			if (( _port_type & PORT_TYPE_DMX_OUTPUT ) != 0 ) {
+				replyBuffer[182+i] = (byte)( _merge_ltp ? 0x82 : 0x80 );  //  good output... change if error
+			}
+			if (( _port_type & PORT_TYPE_DMX_INPUT ) != 0 ) {
+				replyBuffer[186+i] = (byte)(ports[first+i] & 0x0f);	// universe of input port
+			}
+			replyBuffer[190+i] = (byte)(ports[first+i] & 0x0f);	// universe of output port
+		}
+		replyBuffer[200] = (byte)_style;
+		System.arraycopy(_mac, 0, replyBuffer, 201, MAC_ADDRESS_LENGTH);
+		System.arraycopy(raw, 0, replyBuffer, 207, 4);	// bind ip address
+		replyBuffer[211] = (byte)bindIndex;
+		replyBuffer[212] = (byte)(_status2 | STATUS2_PORT_ADDRESS_15_BIT);
+	}
+	
+	/**
+	 * copy a string into a null padded field, truncated to leave a null terminator
+	 */
+	static void setField(byte[] buffer, int index, int length, String s) {
+		for (int i=0; i<length; i++) {
+			buffer[index+i] = 0;
+		}
+		if ( s != null ) {
+			byte[] sb = s.getBytes();
+			System.arraycopy(sb, 0, buffer, index, Math.min(sb.length, length-1));
+		}
+	}
+	
+	/**
+	 * @return string from a null terminated field
+	 */
+	static String fieldString(byte[] buffer, int index, int length) {
+		int n = 0;
+		while (( n < length ) && ( buffer[index+n] != 0 )) {
+			n++;
+		}
+		return new String(buffer, index, n);
+	}
+}
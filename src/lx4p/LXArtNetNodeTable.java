@@ -0,0 +1,214 @@
+/**
+ * Copyright (c) 2016 by Claude Heintz Design
+ *
+ * This file is part of a library called LXforProcessing - https://github.com/claudeheintz/LXforProcessing
+ * 
+ * LXforProcessing is free software: you can redistribute it and/or modify
+ * it under the terms of a BSD style license that should have been included with this file.
+ * If not, see https://www.claudeheintzdesign.com/lx/opensource.html.
+ * 
+*/
+
+package lx4p;
+
+import java.net.*;
+import java.util.*;
+
+/** LXArtNetNodeTable
+ * 
+ * <p>LXArtNetNodeTable is a registry of the Art-Net nodes that have replied to ArtPoll.<BR>
+ * Nodes are keyed by IP address and bind index.  Each reply updates its node in place; the ports
+ * are only parsed again when they have changed.  A node that has not replied within the node timeout is removed.</p>
+ * 
+ * <p>The table maps each Port-Address to the addresses of the nodes that output it, so that ArtDMX
+ * can be unicast only to the nodes subscribed to a universe, as Art-Net 4 recommends, rather than broadcast.
+ * The map is rebuilt when the table changes and replaced as a whole, so the sending thread can read it
+ * without locking.</p>
+ * 
+ * <p>Art-Net(TM) Designed by and Copyright Artistic Licence Holdings Ltd.</p>
+*/
+
+public class LXArtNetNodeTable  {
+	
+	/**
+	 * default milliseconds without a reply before a node is removed (about three ArtPoll intervals)
+	 */
+	public static final int DEFAULT_NODE_TIMEOUT = 10000;
+	
+	static final InetAddress[] NO_ADDRESSES = new InetAddress[0];
+	
+	/**
+	 * nodes keyed by IPv4 address and bind index, see nodeKey
+	 */
+	HashMap<Long, LXArtNetNode> _nodes = new HashMap<Long, LXArtNetNode>();
+	/**
+	 * unique node addresses by Port-Address, replaced (never modified) when the table changes
+	 */
+	volatile HashMap<Integer, InetAddress[]> _routes = new HashMap<Integer, InetAddress[]>();
+	/**
+	 * milliseconds without a reply before a node is removed
+	 */
+	int _node_timeout = DEFAULT_NODE_TIMEOUT;
+	/**
+	 * counts changes to the nodes or their ports
+	 */
+	volatile long _changes = 0;
+	
+	/**
+	 * @param ms milliseconds without a reply before a node is removed
+	 */
+	public void setNodeTimeout(int ms) {
+		_node_timeout = ms;
+	}
+	
+	/**
+	 * @return milliseconds without a reply before a node is removed
+	 */
+	public int getNodeTimeout() {
+		return _node_timeout;
+	}
+	
+	/**
+	 * @return key combining IPv4 address and bind index
+	 */
+	static long nodeKey(InetAddress address, int bindIndex) {
+		byte[] raw = address.getAddress();
+		long key = 0;
+		for (int i=0; i<raw.length; i++) {
+			key = ( key << 8 ) | ( raw[i] & 0xff );
+		}
+		return ( key << 8 ) | ( bindIndex & 0xff );
+	}
+	
+	/**
+	 * update the table from a received ArtPollReply
+	 * @param reply ArtPollReply zero padded to LXArtNet.ARTNET_REPLY_SIZE
+	 * @param sender address of node
+	 * @return the node
+	 */
+	public synchronized LXArtNetNode pollReplyReceived(byte[] reply, InetAddress sender) {
+		int bind_index = reply[211] & 0xff;
+		if ( bind_index == 0 ) {
+			bind_index = 1;			// nodes before Art-Net 3 do not send a bind index
+		}
+		Long key = nodeKey(sender, bind_index);
+		LXArtNetNode node = _nodes.get(key);
+		if ( node == null ) {
+			node = new LXArtNetNode(sender, bind_index);
+			_nodes.put(key, node);		// update always reads the ports of a new node, so routes are rebuilt
+		}
+		if ( node.update(reply, LXDMXMerge.currentTime()) ) {
+			rebuildRoutes();
+		}
+		return node;
+	}
+	
+	/**
+	 * remove nodes that have not replied within the node timeout
+	 * @param now current time in milliseconds, see LXDMXMerge.currentTime
+	 * @return number of nodes removed
+	 */
+	public synchronized int removeExpiredNodes(long now) {
+		int removed = 0;
+		Iterator<LXArtNetNode> it = _nodes.values().iterator();
+		while ( it.hasNext() ) {
+			if ( now - it.next()._last_seen > _node_timeout ) {
+				it.remove();
+				removed++;
+			}
+		}
+		if ( removed > 0 ) {
+			rebuildRoutes();
+		}
+		return removed;
+	}
+	
+	/**
+	 * remove every node
+	 */
+	public synchronized void clear() {
+		_nodes.clear();
+		rebuildRoutes();
+	}
+	
+	/**
+	 * rebuild the map of Port-Address to node addresses
+	 */
+	void rebuildRoutes() {
+		HashMap<Integer, LinkedHashSet<InetAddress>> sets = new HashMap<Integer, LinkedHashSet<InetAddress>>();
+		for (LXArtNetNode node : _nodes.values()) {
+			int[] ports = node._output_ports;
+			for (int i=0; i<ports.length; i++) {
+				LinkedHashSet<InetAddress> s = sets.get(ports[i]);
+				if ( s == null ) {
+					s = new LinkedHashSet<InetAddress>();
+					sets.put(ports[i], s);
+				}
+				s.add(node._address);		// one packet per address even if several bind indexes output the universe
+			}
+		}
+		HashMap<Integer, InetAddress[]> routes = new HashMap<Integer, InetAddress[]>();
+		for (Map.Entry<Integer, LinkedHashSet<InetAddress>> e : sets.entrySet()) {
+			routes.put(e.getKey(), e.getValue().toArray(NO_ADDRESSES));
+		}
+		_routes = routes;
+		_changes++;
+	}
+	
+	/**
+	 * @return number of times a node has been added, removed or had its ports change
+	 */
+	public long getChangeCount() {
+		return _changes;
+	}
+	
+	/**
+	 * addresses of the nodes that output a Port-Address
+	 * @param pa 15 bit Port-Address
+	 * @return addresses (not a copy, do not modify), empty if no node outputs the Port-Address
+	 */
+	public InetAddress[] addressesForPortAddress(int pa) {
+		InetAddress[] a = _routes.get(pa);
+		if ( a == null ) {
+			return NO_ADDRESSES;
+		}
+		return a;
+	}
+	
+	/**
+	 * @param pa 15 bit Port-Address
+	 * @return nodes that output the Port-Address
+	 */
+	public synchronized Vector<LXArtNetNode> nodesForPortAddress(int pa) {
+		Vector<LXArtNetNode> v = new Vector<LXArtNetNode>();
+		for (LXArtNetNode node : _nodes.values()) {
+			if ( node.outputsPortAddress(pa) ) {
+				v.addElement(node);
+			}
+		}
+		return v;
+	}
+	
+	/**
+	 * @param address IP address of node
+	 * @param bindIndex bind index, 1 for the root device
+	 * @return node or null
+	 */
+	public synchronized LXArtNetNode getNode(InetAddress address, int bindIndex) {
+		return _nodes.get(nodeKey(address, bindIndex));
+	}
+	
+	/**
+	 * @return copy of the list of nodes
+	 */
+	public synchronized Vector<LXArtNetNode> getNodes() {
+		return new Vector<LXArtNetNode>(_nodes.values());
+	}
+	
+	/**
+	 * @return number of nodes (IP address and bind index pairs)
+	 */
+	public synchronized int size() {
+		return _nodes.size();
+	}
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright (c) 2016 by Claude Heintz Design
+ *
+ * This file is part of a library called LXforProcessing - https://github.com/claudeheintz/LXforProcessing
+ * 
+ * LXforProcessing is free software: you can redistribute it and/or modify
+ * it under the terms of a BSD style license that should have been included with this file.
+ * If not, see https://www.claudeheintzdesign.com/lx/opensource.html.
+ * 
+*/
+
+package lx4p;
+
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/** LXArtNetOutputGroup
+ * 
+ * <p>LXArtNetOutputGroup sends many Art-Net universes from a single DatagramChannel and follows them with one ArtSync.<BR>
+ * Each universe is an LXArtNetOutputUniverse with its own pre-built ArtDMX packet.  When a universe's
+ * frame changes, commitSlots places it on a lock-free queue.  flush takes every queued universe,
+ * plus any unchanged universe whose keep-alive interval has passed, copies their frames into their
+ * packets and sends the packets back to back.  A single ArtSync then tells receivers to output
+ * every universe of the frame at once, so that pixel output spanning many universes does not tear.</p>
+ * 
+ * <p>A universe is sent to its own destination if one is set, otherwise to the nodes that the node table
+ * reports for its Port-Address, otherwise to the broadcast address.
+ * The ArtSync is sent to the broadcast address.</p>
+ * 
+ * <p>The queue, flush loop and statistics are shared with LXSACNOutputGroup, see LXDMXOutputGroup.</p>
+ * 
+ * <p>Art-Net(TM) Designed by and Copyright Artistic Licence Holdings Ltd.</p>
+ * 
+ * @author Claude Heintz
+*/
+
+public class LXArtNetOutputGroup extends LXDMXOutputGroup  {
+	
+	/**
+	 * broadcast destination, used for ArtSync and for universes without nodes or their own destination
+	 */
+	volatile InetSocketAddress _broadcast_destination = null;
+	/**
+	 * node table used for unicast routing, or null to broadcast
+	 */
+	volatile LXArtNetNodeTable _node_table = null;
+	/**
+	 * if true, an ArtSync is sent after the ArtDMX packets of each flush
+	 */
+	volatile boolean _sync_enabled = true;
+	/**
+	 * ArtSync packet, written once
+	 */
+	byte[] _sync_buffer = new byte[LXArtNet.ARTNET_SYNC_SIZE];
+	ByteBuffer _sync_view = ByteBuffer.wrap(_sync_buffer);
+	/**
+	 * number of ArtSync packets sent
+	 */
+	volatile long _syncs = 0;
+	
+	/**
+	 * construct group
+	 * @param channel open channel with broadcast enabled, used to send all universes
+	 * @param broadcastAddress broadcast address of the Art-Net network or null
+	 */
+	public LXArtNetOutputGroup(DatagramChannel channel, InetAddress broadcastAddress) {
+		super(channel, 0, LXArtNet.ARTNET_PORT_ADDRESS_MAX);
+		setBroadcastAddress(broadcastAddress);
+		LXArtNet.encodeArtSync(_sync_buffer);
+	}
+	
+	/**
+	 * Factory method to create a group with a blocking channel bound to one network interface
+	 * @param networkAddress address of network interface, "0.0.0.0" or null for default
+	 * @param broadcastAddress broadcast address of the Art-Net network, for example "2.255.255.255"
+	 * @return group or null if the channel could not be opened
+	 */
+	public static LXArtNetOutputGroup createOutputGroup(String networkAddress, String broadcastAddress) {
+		DatagramChannel channel = null;
+		InetAddress baddr = null;
+		try {
+			channel = DatagramChannel.open(StandardProtocolFamily.INET);
+			channel.setOption(StandardSocketOptions.SO_SNDBUF, SEND_BUFFER_SIZE);
+			channel.setOption(StandardSocketOptions.SO_BROADCAST, true);
+			if ( ( networkAddress == null ) || networkAddress.equals("0.0.0.0") ) {
+				channel.bind(new InetSocketAddress(0));
+			} else {
+				channel.bind(new InetSocketAddress(InetAddress.getByName(networkAddress), 0));
+			}
+			channel.configureBlocking(true);
+			if ( broadcastAddress != null ) {
+				baddr = InetAddress.getByName(broadcastAddress);
+			}
+		} catch (Exception e) {
+			System.out.println("Can't open Art-Net output channel " + e);
+			LXUDPReactor.closeChannel(channel);
+			return null;
+		}
+		return new LXArtNetOutputGroup(channel, baddr);
+	}
+	
+	/**
+	 * @param baddr broadcast address used for ArtSync and unrouted universes, or null
+	 */
+	public void setBroadcastAddress(InetAddress baddr) {
+		if ( baddr != null ) {
+			_broadcast_destination = new InetSocketAddress(baddr, LXArtNet.ARTNET_PORT);
+		} else {
+			_broadcast_destination = null;
+		}
+	}
+	
+	/**
+	 * send each universe only to the nodes that output its Port-Address
+	 * <p>Universes with no node in the table are broadcast.</p>
+	 * @param table node table kept current by ArtPoll, see LXArtNet.getNodeTable, or null to always broadcast
+	 */
+	public void setNodeTable(LXArtNetNodeTable table) {
+		_node_table = table;
+	}
+	
+	/**
+	 * @param en if true (default) each flush that sends ArtDMX ends with an ArtSync
+	 */
+	public void setSyncEnabled(boolean en) {
+		_sync_enabled = en;
+	}
+	
+	/**
+	 * add a universe to the group
+	 * @param pa 15 bit Port-Address
+	 * @return the universe, existing if already added, or null if pa is out of range
+	 */
+	public LXArtNetOutputUniverse addUniverse(int pa) {
+		return (LXArtNetOutputUniverse)addOutputUniverse(pa);
+	}
+	
+	/**
+	 * @param pa 15 bit Port-Address
+	 * @return the universe or null if it is not in the group
+	 */
+	public LXArtNetOutputUniverse getUniverse(int pa) {
+		return (LXArtNetOutputUniverse)outputUniverse(pa);
+	}
+	
+	/**
+	 * @param pa 15 bit Port-Address
+	 * @return new Art-Net universe
+	 */
+	LXDMXOutputUniverse createUniverse(int pa) {
+		return new LXArtNetOutputUniverse(this, pa);
+	}
+	
+	/**
+	 * sends ArtSync after the ArtDMX packets so receivers output every universe of the flush together
+	 */
+	void flushed(int packets) {
+		InetSocketAddress broadcast = _broadcast_destination;
+		if ( _sync_enabled && ( broadcast != null )) {
+			_sync_view.clear();
+			send(_sync_view, broadcast);
+			_syncs++;
+		}
+	}
+	
+	/**
+	 * @return number of ArtSync packets sent since creation or resetStatistics
+	 */
+	public long getSyncCount() {
+		return _syncs;
+	}
+	
+	/**
+	 * zero the flush statistics
+	 * <p>Call from the sending thread.</p>
+	 */
+	public void resetStatistics() {
+		super.resetStatistics();
+		_syncs = 0;
+	}
+}
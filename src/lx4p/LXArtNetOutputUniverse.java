@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2016 by Claude Heintz Design
+ *
+ * This file is part of a library called LXforProcessing - https://github.com/claudeheintz/LXforProcessing
+ * 
+ * LXforProcessing is free software: you can redistribute it and/or modify
+ * it under the terms of a BSD style license that should have been included with this file.
+ * If not, see https://www.claudeheintzdesign.com/lx/opensource.html.
+ * 
+*/
+
+package lx4p;
+
+import java.net.*;
+import java.nio.ByteBuffer;
+
+/** LXArtNetOutputUniverse
+ * 
+ * <p>LXArtNetOutputUniverse is one Port-Address sent by an LXArtNetOutputGroup.<BR>
+ * The sketch sets levels and calls commitSlots when the frame is complete.  A changed frame
+ * is published to the universe's LXDMXUniverseBuffer and the universe is queued to be sent
+ * by the group's next flush.</p>
+ * 
+ * <p>Levels are set from one writer thread.  The frame and packet belong to the thread calling flush.</p>
+ * 
+ * <p>Art-Net(TM) Designed by and Copyright Artistic Licence Holdings Ltd.</p>
+ * 
+ * @author Claude Heintz
+*/
+
+public class LXArtNetOutputUniverse extends LXDMXOutputUniverse  {
+	
+	/**
+	 * group that sends this universe
+	 */
+	LXArtNetOutputGroup _artnet_group;
+	/**
+	 * pre-built ArtDMX packet (sending thread)
+	 */
+	LXArtNetDMXPacket _packet;
+	/**
+	 * unicast destination, null to use the group's routing or broadcast address
+	 */
+	volatile InetSocketAddress _destination = null;
+	/**
+	 * routed node addresses the cached destinations were made from (sending thread)
+	 */
+	InetAddress[] _routed = null;
+	/**
+	 * socket addresses of routed nodes (sending thread)
+	 */
+	InetSocketAddress[] _routed_destinations = null;
+	
+	/**
+	 * construct output universe
+	 * @param group the group sending the universe
+	 * @param pa 15 bit Port-Address
+	 */
+	LXArtNetOutputUniverse(LXArtNetOutputGroup group, int pa) {
+		super(group, pa, false);
+		_artnet_group = group;
+		_packet = new LXArtNetDMXPacket(pa);
+		_packet_view = ByteBuffer.wrap(_packet._packet_buffer);
+	}
+	
+	/**
+	 * @return 15 bit Port-Address
+	 */
+	public int getPortAddress() {
+		return _number;
+	}
+	
+	/**
+	 * send to a unicast address instead of the group's routed nodes or broadcast address
+	 * @param to_ip destination address or null to use the group's destinations
+	 */
+	public void setDestination(InetAddress to_ip) {
+		if ( to_ip != null ) {
+			_destination = new InetSocketAddress(to_ip, LXArtNet.ARTNET_PORT);
+		} else {
+			_destination = null;
+		}
+	}
+	
+	/**
+	 * @param slots number of slots 2-512 (Art-Net requires an even length)
+	 */
+	public void setNumberOfSlots(int slots) {
+		slots = Math.max(2, Math.min(slots, LXDMXInterface.DMX_UNIVERSE_MAX));
+		_slots = slots + ( slots & 1 );
+	}
+	
+	/**
+	 * copy the latest committed frame into the packet and advance its sequence (sending thread)
+	 */
+	void encode() {
+		byte[] frame = _frames.snapshot();
+		_packet.setDMX(frame, 0, _frames.snapshotLength());
+		_packet_view.clear();
+		_packet_view.limit(LXArtNetDMXPacket.ARTNET_DMX_HEADER_SIZE + _packet.getNumberOfSlots());
+	}
+	
+	/**
+	 * send to this universe's destination, the nodes that output its Port-Address or broadcast (sending thread)
+	 */
+	int transmit() {
+		InetSocketAddress to = _destination;
+		if ( to != null ) {
+			return _group.send(_packet_view, to);
+		}
+		LXArtNetNodeTable table = _artnet_group._node_table;
+		InetAddress[] nodes = ( table != null ) ? table.addressesForPortAddress(_number) : LXArtNetNodeTable.NO_ADDRESSES;
+		if ( nodes.length > 0 ) {
+			InetSocketAddress[] d = routedDestinations(nodes);
+			int packets = 0;
+			for (int n=0; n<d.length; n++) {
+				packets += _group.send(_packet_view, d[n]);
+			}
+			return packets;
+		}
+		InetSocketAddress broadcast = _artnet_group._broadcast_destination;
+		if ( broadcast != null ) {
+			return _group.send(_packet_view, broadcast);
+		}
+		return 0;
+	}
+	
+	/**
+	 * socket addresses of the nodes that output this universe (sending thread)
+	 * <p>Cached until the node table rebuilds its routes.</p>
+	 * @param nodes current route from the node table
+	 * @return destinations matching nodes
+	 */
+	InetSocketAddress[] routedDestinations(InetAddress[] nodes) {
+		if ( nodes != _routed ) {
+			InetSocketAddress[] d = new InetSocketAddress[nodes.length];
+			for (int i=0; i<nodes.length; i++) {
+				d[i] = new InetSocketAddress(nodes[i], LXArtNet.ARTNET_PORT);
+			}
+			_routed_destinations = d;
+			_routed = nodes;
+		}
+		return _routed_destinations;
+	}
+}
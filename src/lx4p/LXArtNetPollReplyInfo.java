@@ -48,6 +48,18 @@ public class LXArtNetPollReplyInfo  {
 	 * can output DMX from port 1
 	 */
 	boolean port1CanOutput;
+	/**
+	 * 15 bit Port-Address of each output port, net and subnet are shared by the ports of one reply
+	 */
+	int[] portAddresses;
+	/**
+	 * port types (bit 7 can output from network)
+	 */
+	int[] portTypes;
+	/**
+	 * bind index, 1 for the root device, identifies replies describing different ports of one node
+	 */
+	int bindIndex;
 	
 	/**
 	 * construct LXArtNetPollReplyInfo using ArtPollReply packet bytes
@@ -70,9 +82,21 @@ public class LXArtNetPollReplyInfo  {
 			z++;
 		}
 		nodeNameLong = new String(Arrays.copyOfRange(packet_buffer, 44, z));
-		ports = packet_buffer[173];
+		ports = Math.min(packet_buffer[173] & 0xff, LXArtNet.ARTNET_PORTS_PER_REPLY);
 		port1Universe = packet_buffer[190];
 		port1CanOutput = ( ( (packet_buffer[174]&0x80) == 0x80 ) && ( (packet_buffer[174]&0x3f) == 0 ) );
+		
+		int netsub = ((packet_buffer[18] & 0x7f) << 8) | ((packet_buffer[19] & 0x0f) << 4);
+		portAddresses = new int[ports];
+		portTypes = new int[ports];
+		for (int i=0; i<ports; i++) {
+			portAddresses[i] = netsub | (packet_buffer[190+i] & 0x0f);
+			portTypes[i] = packet_buffer[174+i] & 0xff;
+		}
+		bindIndex = packet_buffer[211] & 0xff;
+		if ( bindIndex == 0 ) {
+			bindIndex = 1;		// nodes before Art-Net 3 do not send a bind index
+		}
 	}
 	
 	/**
@@ -113,4 +137,27 @@ public class LXArtNetPollReplyInfo  {
 	public boolean canOutputDMXFromPortOne() {
 		return port1CanOutput;
 	}
+	
+	/**
+	 * @param port index of port 0 to numberOfPorts()-1
+	 * @return 15 bit Port-Address of port
+	 */
+	public int portAddress(int port) {
+		return portAddresses[port];
+	}
+	
+	/**
+	 * @param port index of port 0 to numberOfPorts()-1
+	 * @return port can output DMX received from the network
+	 */
+	public boolean canOutputDMX(int port) {
+		return ( (portTypes[port]&0x80) == 0x80 ) && ( (portTypes[port]&0x3f) == 0 );
+	}
+	
+	/**
+	 * @return bind index of the reply, 1 for the root device
+	 */
+	public int bindIndex() {
+		return bindIndex;
+	}
 }
\ No newline at end of file
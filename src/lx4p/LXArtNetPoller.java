@@ -0,0 +1,246 @@
+/**
+ * Copyright (c) 2016 by Claude Heintz Design
+ *
+ * This file is part of a library called LXforProcessing - https://github.com/claudeheintz/LXforProcessing
+ * 
+ * LXforProcessing is free software: you can redistribute it and/or modify
+ * it under the terms of a BSD style license that should have been included with this file.
+ * If not, see https://www.claudeheintzdesign.com/lx/opensource.html.
+ * 
+*/
+
+package lx4p;
+
+import java.net.*;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ *  LXArtNetPoller sends ArtPoll in the background to keep an LXArtNet's node table current.
+ *
+ *  <p>Polls are sent from the poller's own thread so that discovery never blocks the sketch.
+ *  Polls are sent at the configured interval (Art-Net suggests 2.5 to 3 seconds).  When the node table
+ *  has changed since the previous poll, one early poll follows after EARLY_POLL_DELAY so that the replies of
+ *  nodes that were just found or changed are confirmed quickly.  The next poll then returns to the interval.</p>
+ *
+ *  <p>Replies update the node table wherever the LXArtNet object reads its packets (readPacket or an LXUDPReactor).
+ *  If nothing else reads the socket, setReceiving(true) makes the poller thread read it, with a short
+ *  timeout, and process every packet received.  Received ArtDMX is then merged on the poller thread.
+ *  The socket's original timeout is restored when receiving is turned off or the poller stops.</p>
+ *
+ *  <p>Art-Net(TM) Designed by and Copyright Artistic Licence Holdings Ltd.</p>
+ *
+ *  @author Claude Heintz
+ */
+
+public class LXArtNetPoller extends Object implements Runnable  {
+	
+	public static final int DEFAULT_POLL_INTERVAL = 2500;
+	/**
+	 * milliseconds before the single early poll that follows a change to the node table
+	 */
+	public static final int EARLY_POLL_DELAY = 500;
+	/**
+	 * receive timeout used when the poller reads the socket
+	 */
+	public static final int RECEIVE_TIMEOUT = 50;
+	
+	/**
+	 * interface whose node table is updated
+	 */
+	LXArtNet _artnet;
+	/**
+	 * socket used to send polls (and to receive if _receiving)
+	 */
+	DatagramSocket _socket;
+	/**
+	 * milliseconds between polls
+	 */
+	volatile int _poll_interval = DEFAULT_POLL_INTERVAL;
+	/**
+	 * if true, the poller thread reads the socket
+	 */
+	volatile boolean _receiving = false;
+	/**
+	 * set while poll thread is running
+	 */
+	volatile boolean _running = false;
+	/**
+	 * poll thread
+	 */
+	Thread _thread = null;
+	/**
+	 * number of polls sent
+	 */
+	volatile long _polls = 0;
+	/**
+	 * interval used for the most recent poll
+	 */
+	volatile int _current_interval = DEFAULT_POLL_INTERVAL;
+	
+	/**
+	 * construct poller
+	 * @param artnet interface whose node table is updated, its broadcast address must be set
+	 * @param socket socket configured for broadcast, normally artnet's socket
+	 */
+	public LXArtNetPoller(LXArtNet artnet, DatagramSocket socket) {
+		_artnet = artnet;
+		_socket = socket;
+	}
+	
+	/**
+	 * construct poller using the interface's socket
+	 * @param artnet interface whose node table is updated, its broadcast address must be set
+	 */
+	public LXArtNetPoller(LXArtNet artnet) {
+		this(artnet, artnet.dmxsocket);
+	}
+	
+	/**
+	 * @param ms milliseconds between polls
+	 */
+	public void setPollInterval(int ms) {
+		if ( ms > 0 ) {
+			_poll_interval = ms;
+		}
+	}
+	
+	/**
+	 * @return milliseconds between polls
+	 */
+	public int getPollInterval() {
+		return _poll_interval;
+	}
+	
+	/**
+	 * @param r if true, the poller thread reads and processes packets from the socket
+	 */
+	public void setReceiving(boolean r) {
+		_receiving = r;
+	}
+	
+	/**
+	 * start the poll thread
+	 */
+	public synchronized void start() {
+		if ( _thread == null ) {
+			_running = true;
+			_thread = new Thread(this, "LXArtNetPoller");
+			_thread.setDaemon(true);
+			_thread.start();
+		}
+	}
+	
+	/**
+	 * stop the poll thread and wait for it to exit
+	 */
+	public void stop() {
+		Thread t;
+		synchronized ( this ) {
+			_running = false;
+			t = _thread;
+			_thread = null;
+		}
+		if ( t != null ) {
+			LockSupport.unpark(t);
+			try {
+				t.join(1000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * @return true if poll thread is running
+	 */
+	public boolean isRunning() {
+		return _running;
+	}
+	
+	/**
+	 * @return number of polls sent
+	 */
+	public long getPollCount() {
+		return _polls;
+	}
+	
+	/**
+	 * @return milliseconds between the most recent poll and the next, shorter than the poll interval before an early poll
+	 */
+	public int getCurrentInterval() {
+		return _current_interval;
+	}
+	
+	/**
+	 * @return the node table updated by replies
+	 */
+	public LXArtNetNodeTable getNodeTable() {
+		return _artnet.getNodeTable();
+	}
+	
+	/**
+	 * poll loop
+	 */
+	public void run() {
+		LXArtNetNodeTable table = _artnet.getNodeTable();
+		long next_poll = 0;
+		long last_changes = table.getChangeCount();
+		boolean early_poll = false;
+		int saved_timeout = -1;
+		while ( _running ) {
+			long now = LXDMXMerge.currentTime();
+			if ( now >= next_poll ) {
+				long changes = table.getChangeCount();
+				int interval = _poll_interval;
+				if (( changes != last_changes ) && ( ! early_poll )) {
+					interval = Math.min(EARLY_POLL_DELAY, interval);
+					early_poll = true;
+				} else {
+					early_poll = false;
+				}
+				last_changes = changes;
+				_current_interval = interval;
+				try {
+					_artnet.sendArtPoll(_socket);
+					_polls++;
+				} catch (Exception e) {
+					System.out.println("poll exception " + e);
+				}
+				next_poll = now + interval;
+			}
+			
+			if ( _receiving && ( _socket != null )) {
+				if ( saved_timeout < 0 ) {
+					try {
+						saved_timeout = _socket.getSoTimeout();
+						_socket.setSoTimeout(RECEIVE_TIMEOUT);
+					} catch (Exception e) {
+					}
+				}
+				_artnet.readArtNetPacket(_socket);		// also expires nodes and sends a delayed reply
+			} else {
+				saved_timeout = restoreTimeout(saved_timeout);
+				long wait = next_poll - LXDMXMerge.currentTime();
+				if ( wait > 0 ) {
+					LockSupport.parkNanos(Math.min(wait, 100) * 1000000L);
+				}
+			}
+		}
+		restoreTimeout(saved_timeout);
+	}
+	
+	/**
+	 * sets the socket's timeout back to the value it had before the poller read it
+	 * @param saved_timeout original timeout or -1 if it was not changed
+	 * @return -1
+	 */
+	int restoreTimeout(int saved_timeout) {
+		if (( saved_timeout >= 0 ) && ( _socket != null )) {
+			try {
+				_socket.setSoTimeout(saved_timeout);
+			} catch (Exception e) {
+			}
+		}
+		return -1;
+	}
+}
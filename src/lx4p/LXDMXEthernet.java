@@ -42,6 +42,26 @@ public abstract class LXDMXEthernet extends LXDMXInterface  {
 	 * holds Socket for network communication
 	 */
 	DatagramSocket dmxsocket = null;
+	/**
+	 * object notified when dmx is received from an LXUDPReactor
+	 */
+	LXDMXReceiveListener _receive_listener = null;
+	/**
+	 * packets with a sequence number 1 to SEQUENCE_REJECT_WINDOW behind the last accepted packet
+	 */
+	public static final int SEQUENCE_REJECT_WINDOW = 20;
+	/**
+	 * packets rejected because they repeated the sequence number of the last accepted packet
+	 */
+	long _duplicate_packets = 0;
+	/**
+	 * packets rejected because they arrived after a newer packet from the same source
+	 */
+	long _reordered_packets = 0;
+	/**
+	 * packets never received, counted from gaps in sequence numbers
+	 */
+	long _lost_packets = 0;
 
 	/**
 	 * port for protocol subclass
@@ -66,6 +86,81 @@ public abstract class LXDMXEthernet extends LXDMXInterface  {
 		return false;
 	}
 	
+	/**
+	 * sets the object notified when a dmx frame is received by way of an LXUDPReactor
+	 * @param l listener, called on the reactor thread
+	 */
+	public void setReceiveListener(LXDMXReceiveListener l) {
+		_receive_listener = l;
+	}
+	
+	/**
+	 * E1.31 sequence check, applied to the packets of each source
+	 * <p>A packet whose sequence number is 0 to SEQUENCE_REJECT_WINDOW behind the last
+	 * accepted packet from the source is a duplicate or arrived out of order and is rejected.
+	 * Anything else is accepted, a packet further behind is taken as the source restarting.</p>
+	 * @param s source of packet
+	 * @param sequence sequence number of packet
+	 * @param modulus number of sequence values before wrapping (256 for sACN, 255 for Art-Net which skips zero)
+	 * @return true if the packet should be used
+	 */
+	boolean checkSequence(LXDMXMergeSource s, int sequence, int modulus) {
+		int last = s._sequence;
+		s._sequence = sequence;
+		if ( last < 0 ) {
+			return true;		// first packet from source
+		}
+		int d = sequence - last;
+		if ( d > 127 ) {
+			d -= modulus;
+		} else if ( d < -128 ) {
+			d += modulus;
+		}
+		if ( d == 0 ) {
+			_duplicate_packets++;
+			return false;
+		}
+		if (( d < 0 ) && ( d >= -SEQUENCE_REJECT_WINDOW )) {
+			s._sequence = last;				// keep the newer sequence
+			_reordered_packets++;
+			return false;
+		}
+		if ( d > 1 ) {
+			_lost_packets += d - 1;
+		}
+		return true;
+	}
+	
+	/**
+	 * @return number of packets rejected for repeating a sequence number
+	 */
+	public long getDuplicatePacketCount() {
+		return _duplicate_packets;
+	}
+	
+	/**
+	 * @return number of packets rejected for arriving after a newer packet
+	 */
+	public long getReorderedPacketCount() {
+		return _reordered_packets;
+	}
+	
+	/**
+	 * @return number of packets dropped by the network, from gaps in sequence numbers
+	 */
+	public long getLostPacketCount() {
+		return _lost_packets;
+	}
+	
+	/**
+	 * zero the duplicate, reordered and lost packet counts
+	 */
+	public void resetSequenceStatistics() {
+		_duplicate_packets = 0;
+		_reordered_packets = 0;
+		_lost_packets = 0;
+	}
+	
 	/**
 	 * send a dmx packet containing level data stored in the data buffer
 	 * <p>Assumes that the socket is already setup for the type of address unicast/broadcast/multicast.</p>
@@ -183,7 +278,7 @@ public abstract class LXDMXEthernet extends LXDMXInterface  {
 		         dmx.dmxsocket.setSoTimeout(1000);
 		         NetworkInterface nic = NetworkInterface.getByInetAddress(nicAddress);
 		         ((MulticastSocket)dmx.dmxsocket).joinGroup(new InetSocketAddress(maddr, dmx.getPort()), nic);
-		         ((LXSACN)dmx).setCIDwithMACAddress(nic.getHardwareAddress());
+		         ((LXSACN)dmx).setMulticastInterface(nic);		// addUniverse joins further groups on this socket
 	
 		         if ( dmx != null ) {
 		  		   System.out.println("Created dmx interface using: " + myNetworkAddress + " multicast: " + targetAddress);
@@ -11,6 +11,8 @@
 
 package lx4p;
 
+import java.nio.ByteBuffer;
+
 /**
  * LXDMXInterface
  * 
@@ -28,6 +30,38 @@ public abstract class LXDMXInterface extends Object  {
 	
 	public static final int DMX_UNIVERSE_MAX = 512;
 	public static final int DMX_MIN_SLOTS = 24;
+	
+	/**
+	 * send policy where every call to sendDMX sends a packet
+	 */
+	public static final int SEND_ALWAYS = 0;
+	/**
+	 * send policy where sendDMX only sends a packet when levels have changed
+	 * or when the keep-alive interval has passed
+	 */
+	public static final int SEND_CHANGES_ONLY = 1;
+	/**
+	 * default maximum milliseconds between packets for an unchanged universe
+	 */
+	public static final int DMX_KEEP_ALIVE_INTERVAL = 1000;
+	
+	/**
+	 * SEND_ALWAYS or SEND_CHANGES_ONLY
+	 */
+	int _send_policy = SEND_ALWAYS;
+	/**
+	 * milliseconds between keep-alive packets for unchanged universe
+	 */
+	int _keep_alive_interval = DMX_KEEP_ALIVE_INTERVAL;
+	/**
+	 * time last packet was sent (System.nanoTime)
+	 */
+	long _last_send_time = 0;
+	
+	/**
+	 * when true, sendDMX publishes the current levels before sending if it is called by the thread setting them
+	 */
+	boolean _auto_commit = true;
 
 	/**
 	 * dmx level data byte
@@ -37,6 +71,8 @@ public abstract class LXDMXInterface extends Object  {
 	public abstract int getSlot(int slot);
 	/**
 	 * set byte dmx level data in slot
+	 * <p>If levels are set from a thread other than the one calling sendDMX, call commitSlots after each complete frame.
+	 * sendDMX only commits automatically when it is called from the thread that set the levels.</p>
 	 * @param slot aka the address or channel of the level data (1-512)
 	 * @param value the level 0-255 for the slot (aka address or channel)
 	 */
@@ -50,6 +86,107 @@ public abstract class LXDMXInterface extends Object  {
 		setSlot(slot, (byte)value);
 	}
 	
+	/**
+	 * copy a range of levels into consecutive slots
+	 * <p>Subclasses override this to copy directly into their data buffer.</p>
+	 * @param slot first slot to set (1-512)
+	 * @param data levels 0-255
+	 * @param offset index of first level in data
+	 * @param length number of slots to set
+	 */
+	public void setSlots(int slot, byte[] data, int offset, int length) {
+		for (int i=0; i<length; i++) {
+			setSlot(slot+i, data[offset+i]);
+		}
+	}
+	
+	/**
+	 * copy a range of int levels into consecutive slots
+	 * @param slot first slot to set (1-512)
+	 * @param data levels 0-255
+	 * @param offset index of first level in data
+	 * @param length number of slots to set
+	 */
+	public void setSlots(int slot, int[] data, int offset, int length) {
+		for (int i=0; i<length; i++) {
+			setSlot(slot+i, (byte)data[offset+i]);
+		}
+	}
+	
+	/**
+	 * copy levels from the current position of a ByteBuffer into consecutive slots
+	 * <p>The position of data is advanced by length.</p>
+	 * @param slot first slot to set (1-512)
+	 * @param data levels 0-255
+	 * @param length number of slots to set
+	 */
+	public void setSlots(int slot, ByteBuffer data, int length) {
+		for (int i=0; i<length; i++) {
+			setSlot(slot+i, data.get());
+		}
+	}
+	
+	/**
+	 * set a range of consecutive slots to the same level
+	 * @param slot first slot to set (1-512)
+	 * @param length number of slots to set
+	 * @param value the level 0-255
+	 */
+	public void fillSlots(int slot, int length, byte value) {
+		for (int i=0; i<length; i++) {
+			setSlot(slot+i, value);
+		}
+	}
+	
+	/**
+	 * set a range of consecutive slots to the same int level
+	 * @param slot first slot to set (1-512)
+	 * @param length number of slots to set
+	 * @param value the level 0-255
+	 */
+	public void fillSlots(int slot, int length, int value) {
+		fillSlots(slot, length, (byte)value);
+	}
+	
+	/**
+	 * copy the levels of consecutive slots into a byte array
+	 * @param slot first slot to read (1-512)
+	 * @param data receives levels
+	 * @param offset index in data for first level
+	 * @param length number of slots to read
+	 */
+	public void getSlots(int slot, byte[] data, int offset, int length) {
+		for (int i=0; i<length; i++) {
+			data[offset+i] = (byte)getSlot(slot+i);
+		}
+	}
+	
+	/**
+	 * copy the levels of consecutive slots into an int array
+	 * @param slot first slot to read (1-512)
+	 * @param data receives levels 0-255
+	 * @param offset index in data for first level
+	 * @param length number of slots to read
+	 */
+	public void getSlots(int slot, int[] data, int offset, int length) {
+		for (int i=0; i<length; i++) {
+			data[offset+i] = getSlot(slot+i);
+		}
+	}
+	
+	/**
+	 * put the levels of consecutive slots into a ByteBuffer at its current position
+	 * <p>The position of data is advanced by length.</p>
+	 * @param slot first slot to read (1-512)
+	 * @param data receives levels
+	 * @param length number of slots to read
+	 */
+	public void getSlots(int slot, ByteBuffer data, int length) {
+		for (int i=0; i<length; i++) {
+			data.put((byte)getSlot(slot+i));
+		}
+	}
+	
 	/**
 	 * dmx has variable number of addresses ~24min to 512max
 	 * @return number of slots slot (aka addresses or channels)
@@ -79,6 +216,81 @@ public abstract class LXDMXInterface extends Object  {
 	 */
 	public abstract void setUniverse(int u);
 	
+	/**
+	 * publish the levels set with setSlot as a complete frame for sending
+	 * <p>sendDMX always sends the most recently committed frame.  When levels are set
+	 * from a thread other than the one sending, call commitSlots after each complete frame
+	 * so that a partially updated frame is never sent.  Auto commit does not apply in that case.</p>
+	 */
+	public void commitSlots() {
+	}
+	
+	/**
+	 * @param ac if true (the default) sendDMX commits the current levels before sending,
+	 * provided sendDMX is called from the thread that set the levels
+	 */
+	public void setAutoCommit(boolean ac) {
+		_auto_commit = ac;
+	}
+	
+	/**
+	 * @return true if sendDMX commits the current levels before sending
+	 */
+	public boolean isAutoCommit() {
+		return _auto_commit;
+	}
+	
+	/**
+	 * @param frames output frames of the interface
+	 * @return true if sendDMX should commit the current levels, auto commit is on and the sending thread set them
+	 */
+	boolean autoCommit(LXDMXUniverseBuffer frames) {
+		return _auto_commit && frames.isWriterThread();
+	}
+	
+	/**
+	 * @param p SEND_ALWAYS (default) or SEND_CHANGES_ONLY
+	 */
+	public void setSendPolicy(int p) {
+		_send_policy = p;
+	}
+	
+	/**
+	 * @return SEND_ALWAYS or SEND_CHANGES_ONLY
+	 */
+	public int getSendPolicy() {
+		return _send_policy;
+	}
+	
+	/**
+	 * @param ms maximum milliseconds between packets when levels are unchanged and policy is SEND_CHANGES_ONLY
+	 */
+	public void setKeepAliveInterval(int ms) {
+		_keep_alive_interval = ms;
+	}
+	
+	/**
+	 * @return maximum milliseconds between packets when levels are unchanged
+	 */
+	public int getKeepAliveInterval() {
+		return _keep_alive_interval;
+	}
+	
+	/**
+	 * applies the send policy
+	 * <p>If a packet should be sent, the send time is recorded.</p>
+	 * @param changed true if the frame to send is different from the last one sent
+	 * @return true if a packet should be sent now
+	 */
+	boolean sendRequired(boolean changed) {
+		long now = System.nanoTime();
+		if ( ( _send_policy == SEND_ALWAYS ) || changed || ( (now - _last_send_time) >= _keep_alive_interval * 1000000L ) ) {
+			_last_send_time = now;
+			return true;
+		}
+		return false;
+	}
+	
 	/**
 	 * attempt to read a protocol packet
 	 * @return true if packet contained dmx output
@@ -87,9 +299,18 @@ public abstract class LXDMXInterface extends Object  {
 	
 	/**
 	 * attempt to send a dmx packet
+	 * <p>Sends the most recently committed frame.  With auto commit on, levels set by the calling thread are committed first.
+	 * Levels set by another thread are sent only after that thread calls commitSlots.</p>
 	 */
 	public abstract void sendDMX();
 	
+	/**
+	 * send a synchronization packet telling receivers to output the frames sent since the last one
+	 * <p>Does nothing unless the protocol supports synchronization (E1.31 Universe Sync, ArtSync).</p>
+	 */
+	public void sendSynchronization() {
+	}
+	
 	/**
 	 * closes the connection
 	 */
@@ -0,0 +1,792 @@
+/**
+ * Copyright (c) 2016 by Claude Heintz Design
+ *
+ * This file is part of a library called LXforProcessing - https://github.com/claudeheintz/LXforProcessing
+ *
+ * LXforProcessing is free software: you can redistribute it and/or modify
+ * it under the terms of a BSD style license that should have been included with this file.
+ * If not, see https://www.claudeheintzdesign.com/lx/opensource.html.
+ *
+*/
+
+package lx4p;
+
+import java.net.*;
+import java.nio.ByteBuffer;
+
+/** LXDMXMerge
+ *
+ * <p>LXDMXMerge merges frames received from a configurable number of sources into one output buffer.<BR>
+ * Only the sources with the highest priority take part in the merge.
+ * Their levels are combined HTP (highest takes precedence) or LTP (latest takes precedence).
+ * LTP is decided per slot: each slot takes the level of the source that changed it most recently.</p>
+ *
+ * <p>The merged buffer is updated incrementally when a source's frame changes,
+ * so reading a merged level is a plain array access.  The merged levels are held
+ * when the last source is removed.</p>
+ *
+ * <p>A source that has not sent a frame within the source timeout is removed
+ * by removeExpiredSources and the loss listener is notified.</p>
+ *
+ * <p>A source may also send per slot priorities (sACN alternate start code 0xDD).  While any source
+ * has per slot priorities, the winner is chosen for each slot rather than for the whole universe:
+ * only the sources with the highest priority for a slot are merged into it, and a slot priority of zero
+ * means the source does not control that slot.  Sources without per slot priorities use their
+ * universe priority for every slot.  The per slot HTP merge is computed with branch-free passes over the frames.
+ * Per slot priorities that are not refreshed within the source timeout are dropped.</p>
+ *
+ * <p>For synchronized output (E1.31 Universe Sync or ArtSync) a received frame can be staged
+ * with stageSource.  It is merged when applySync is called for its synchronization address.</p>
+ *
+ * @author Claude Heintz
+*/
+
+public class LXDMXMerge  {
+
+	public static final int MERGE_HTP = 0;
+	public static final int MERGE_LTP = 1;
+	public static final int DEFAULT_MAX_SOURCES = 4;
+	public static final int DEFAULT_PRIORITY = 100;
+	/**
+	 * E1.31 network data loss time in milliseconds
+	 */
+	public static final int DEFAULT_SOURCE_TIMEOUT = 2500;
+	/**
+	 * milliseconds without a synchronization packet after which frames are merged immediately (E1.31)
+	 */
+	public static final int SYNC_TIMEOUT = 2500;
+
+	/**
+	 * MERGE_HTP or MERGE_LTP
+	 */
+	int _mode = MERGE_HTP;
+	/**
+	 * sources, the first _source_count entries are in use
+	 */
+	LXDMXMergeSource[] _sources;
+	/**
+	 * number of sources
+	 */
+	int _source_count = 0;
+	/**
+	 * length of frames
+	 */
+	int _size;
+	/**
+	 * merged output levels
+	 */
+	byte[] _merged;
+	/**
+	 * number of slots in merged output
+	 */
+	int _merged_slots = 0;
+	/**
+	 * highest priority of any source
+	 */
+	int _top_priority = 0;
+	/**
+	 * true if any source has per slot priorities
+	 */
+	boolean _per_slot = false;
+	/**
+	 * highest priority of each slot when merging per slot, allocated when first needed
+	 */
+	int[] _slot_top = null;
+	/**
+	 * stamp of the level chosen for each slot while rebuilding LTP output, allocated when first needed
+	 */
+	long[] _slot_best = null;
+	/**
+	 * true once a frame has been merged, until clear
+	 */
+	boolean _active = false;
+	/**
+	 * counts updates, stamps the slots each update changes for LTP
+	 */
+	long _update_count = 0;
+	/**
+	 * milliseconds without a frame before a source is removed, zero for never
+	 */
+	int _source_timeout = DEFAULT_SOURCE_TIMEOUT;
+	/**
+	 * object notified when a source is removed after timing out
+	 */
+	LXDMXSourceLossListener _loss_listener = null;
+
+	/**
+	 * construct merge engine
+	 * @param size length of frames
+	 * @param maxSources maximum number of sources
+	 */
+	public LXDMXMerge(int size, int maxSources) {
+		_size = size;
+		_merged = new byte[size];
+		_sources = new LXDMXMergeSource[maxSources];
+	}
+
+	/**
+	 * construct merge engine for DEFAULT_MAX_SOURCES
+	 * @param size length of frames
+	 */
+	public LXDMXMerge(int size) {
+		this(size, DEFAULT_MAX_SOURCES);
+	}
+
+	/**
+	 * @param m MERGE_HTP or MERGE_LTP
+	 */
+	public void setMergeMode(int m) {
+		if ( m != _mode ) {
+			_mode = m;
+			recompute();
+		}
+	}
+
+	/**
+	 * @return MERGE_HTP or MERGE_LTP
+	 */
+	public int getMergeMode() {
+		return _mode;
+	}
+
+	/**
+	 * sets the maximum number of sources, removing any in excess
+	 * @param max number of sources
+	 */
+	public void setMaxSources(int max) {
+		LXDMXMergeSource[] ns = new LXDMXMergeSource[max];
+		int n = Math.min(max, _source_count);
+		System.arraycopy(_sources, 0, ns, 0, n);
+		_sources = ns;
+		if ( n != _source_count ) {
+			_source_count = n;
+			recompute();
+		}
+	}
+
+	/**
+	 * @param ms milliseconds without a frame before a source is removed, zero to never remove sources
+	 */
+	public void setSourceTimeout(int ms) {
+		_source_timeout = ms;
+	}
+
+	/**
+	 * @return milliseconds without a frame before a source is removed
+	 */
+	public int getSourceTimeout() {
+		return _source_timeout;
+	}
+
+	/**
+	 * @param l object notified when a source is removed after timing out
+	 */
+	public void setSourceLossListener(LXDMXSourceLossListener l) {
+		_loss_listener = l;
+	}
+
+	/**
+	 * @return maximum number of sources
+	 */
+	public int getMaxSources() {
+		return _sources.length;
+	}
+
+	/**
+	 * @return number of sources currently merged
+	 */
+	public int getSourceCount() {
+		return _source_count;
+	}
+
+	/**
+	 * @param i index of source 0 to getSourceCount()-1
+	 * @return source
+	 */
+	public LXDMXMergeSource getSource(int i) {
+		return _sources[i];
+	}
+
+	/**
+	 * @return true if a frame has been merged since the merge was last cleared
+	 */
+	public boolean isActive() {
+		return _active;
+	}
+
+	/**
+	 * merged level
+	 * @param index index of slot in frame
+	 * @return the level 0-255
+	 */
+	public int getLevel(int index) {
+		return LXDMXInterface.byte2int(_merged[index]);
+	}
+
+	/**
+	 * priority that won a slot
+	 * @param index index of slot in frame
+	 * @return highest priority of any source for the slot, zero if no source controls it
+	 */
+	public int getSlotPriority(int index) {
+		if ( _per_slot ) {
+			return _slot_top[index];
+		}
+		return _top_priority;
+	}
+
+	/**
+	 * @return true if any source has per slot priorities
+	 */
+	public boolean isMergingPerSlot() {
+		return _per_slot;
+	}
+
+	/**
+	 * @return array holding merged levels (not a copy)
+	 */
+	public byte[] mergedData() {
+		return _merged;
+	}
+
+	/**
+	 * @return number of slots in merged output
+	 */
+	public int getNumberOfSlots() {
+		return _merged_slots;
+	}
+
+	/**
+	 * find the source identified by an IP address
+	 * @param address IP address of sender
+	 * @param add if true, add a new source if one does not exist and there is room
+	 * @return source or null
+	 */
+	public LXDMXMergeSource sourceForAddress(InetAddress address, boolean add) {
+		for (int i=0; i<_source_count; i++) {
+			if ( _sources[i].matchesAddress(address) ) {
+				return _sources[i];
+			}
+		}
+		if ( add && ( _source_count < _sources.length ) ) {
+			return addSource(new LXDMXMergeSource(address, _size));
+		}
+		return null;
+	}
+
+	/**
+	 * find the source identified by a CID
+	 * @param cid array containing CID
+	 * @param offset index of CID in array
+	 * @param add if true, add a new source if one does not exist and there is room
+	 * @return source or null
+	 */
+	public LXDMXMergeSource sourceForCID(byte[] cid, int offset, boolean add) {
+		for (int i=0; i<_source_count; i++) {
+			if ( _sources[i].matchesCID(cid, offset) ) {
+				return _sources[i];
+			}
+		}
+		if ( add && ( _source_count < _sources.length ) ) {
+			return addSource(new LXDMXMergeSource(cid, offset, _size));
+		}
+		return null;
+	}
+
+	/**
+	 * find the source identified by a CID in a received packet
+	 * @param packet buffer containing CID
+	 * @param index absolute index of CID in packet
+	 * @param add if true, add a new source if one does not exist and there is room
+	 * @return source or null
+	 */
+	public LXDMXMergeSource sourceForCID(ByteBuffer packet, int index, boolean add) {
+		long hi = packet.getLong(index);
+		long lo = packet.getLong(index+8);
+		for (int i=0; i<_source_count; i++) {
+			if ( _sources[i].matchesCID(hi, lo) ) {
+				return _sources[i];
+			}
+		}
+		if ( add && ( _source_count < _sources.length ) ) {
+			return addSource(new LXDMXMergeSource(hi, lo, _size));
+		}
+		return null;
+	}
+
+	/**
+	 * add a source, which has an empty frame so merged output is unchanged
+	 * <p>The source is seen now so that it does not time out before its first frame is merged.</p>
+	 * @param s new source
+	 * @return s
+	 */
+	LXDMXMergeSource addSource(LXDMXMergeSource s) {
+		s._last_seen = currentTime();
+		_sources[_source_count] = s;
+		_source_count++;
+		return s;
+	}
+
+	/**
+	 * remove a source and recompute the merged output
+	 * <p>When the last source is removed the merged levels are held and the next source of any priority is accepted.</p>
+	 * @param s source to remove
+	 */
+	public void removeSource(LXDMXMergeSource s) {
+		for (int i=0; i<_source_count; i++) {
+			if ( _sources[i] == s ) {
+				System.arraycopy(_sources, i+1, _sources, i, _source_count-i-1);
+				_source_count--;
+				_sources[_source_count] = null;
+				if ( _source_count > 0 ) {
+					recompute();
+				} else {
+					_top_priority = 0;		// merged levels are held, as in removeAllSources
+					_per_slot = false;
+				}
+				return;
+			}
+		}
+	}
+
+	/**
+	 * remove a source that has stopped sending on its own (sACN stream terminated)
+	 * <p>The loss listener is notified as if the source had timed out.</p>
+	 * @param s source to remove
+	 */
+	public void terminateSource(LXDMXMergeSource s) {
+		removeSource(s);
+		if ( _loss_listener != null ) {
+			_loss_listener.sourceLost(this, s);
+		}
+	}
+
+	/**
+	 * remove sources that have not sent a frame within the source timeout
+	 * @param now current time in milliseconds, see currentTime
+	 * @return number of sources removed
+	 */
+	public int removeExpiredSources(long now) {
+		int removed = 0;
+		if ( _source_timeout > 0 ) {
+			for (int i=_source_count-1; i>=0; i--) {
+				LXDMXMergeSource s = _sources[i];
+				if ( now - s._last_seen > _source_timeout ) {
+					removeSource(s);
+					removed++;
+					if ( _loss_listener != null ) {
+						_loss_listener.sourceLost(this, s);
+					}
+				} else if (( s._slot_priority != null ) && ( now - s._slot_priority_time > _source_timeout )) {
+					s._slot_priority = null;		// revert to universe priority
+					recompute();
+				}
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * monotonic clock used for source time stamps
+	 * @return milliseconds
+	 */
+	public static long currentTime() {
+		return System.nanoTime() / 1000000L;
+	}
+
+	/**
+	 * remove every source, merged levels are held
+	 */
+	public void removeAllSources() {
+		for (int i=0; i<_source_count; i++) {
+			_sources[i] = null;
+		}
+		_source_count = 0;
+		_top_priority = 0;
+		_per_slot = false;
+	}
+
+	/**
+	 * remove every source and zero the merged levels
+	 */
+	public void clear() {
+		removeAllSources();
+		for (int j=0; j<_size; j++) {
+			_merged[j] = 0;
+		}
+		_merged_slots = 0;
+		_active = false;
+	}
+
+	/**
+	 * change the priority of a source
+	 * <p>The merged output is recomputed if the set of sources with the highest priority changes.</p>
+	 * @param s source
+	 * @param p priority
+	 */
+	public void setSourcePriority(LXDMXMergeSource s, int p) {
+		if ( s._priority != p ) {
+			s._priority = p;
+			recompute();
+		}
+	}
+
+	/**
+	 * store a new frame from a source and update the merged output for slots that changed
+	 * <p>Slots beyond length are treated as zero.</p>
+	 * @param s source of frame
+	 * @param data array containing levels
+	 * @param offset index of first level in data
+	 * @param length number of levels
+	 */
+	public void updateSource(LXDMXMergeSource s, byte[] data, int offset, int length) {
+		updateSource(s, ByteBuffer.wrap(data), offset, length);
+	}
+
+	/**
+	 * store a new frame from a source and update the merged output for slots that changed
+	 * <p>Levels are read with absolute gets so the frame can be copied directly from
+	 * a received packet without an intermediate array.  Slots beyond length are treated as zero.</p>
+	 * @param s source of frame
+	 * @param data buffer containing levels, position is not changed
+	 * @param index absolute index of first level in data
+	 * @param length number of levels
+	 */
+	public void updateSource(LXDMXMergeSource s, ByteBuffer data, int index, int length) {
+		s._has_staged = false;							// a newer frame replaces a staged one
+		_update_count++;
+		s._last_seen = currentTime();
+		int n = Math.max(length, s._slots);
+		s._slots = length;
+		if ( length > _merged_slots ) {
+			_merged_slots = length;
+		}
+		_active = true;
+
+		byte[] sd = s._data;
+		if ( _per_slot ) {
+			storeFrame(s, data, index, length, n);
+			recomputePerSlot();
+			return;
+		}
+		if ( s._priority < _top_priority ) {				// not merged, just remember the frame
+			storeFrame(s, data, index, length, n);
+			return;
+		}
+		if ( s._priority > _top_priority ) {				// first frame at a new highest priority
+			storeFrame(s, data, index, length, n);
+			recompute();
+			return;
+		}
+
+		if ( _source_count == 1 ) {
+			storeFrame(s, data, index, length, n);
+			System.arraycopy(sd, 0, _merged, 0, n);
+			return;
+		}
+
+		long[] st = s._slot_stamp;
+		for (int j=0; j<n; j++) {
+			byte nv = 0;
+			if ( j < length ) {
+				nv = data.get(index+j);
+			}
+			byte ov = sd[j];
+			if ( nv != ov ) {
+				sd[j] = nv;
+				st[j] = _update_count;
+				if ( _mode == MERGE_LTP ) {
+					_merged[j] = nv;
+				} else {
+					int m = _merged[j] & 0xff;
+					if ( (nv & 0xff) > m ) {
+						_merged[j] = nv;
+					} else if ( (ov & 0xff) == m ) {		// this source may have held the maximum
+						_merged[j] = (byte)maximumForSlot(j);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * store per slot priorities from a source (sACN alternate start code 0xDD)
+	 * <p>Slots before first and beyond the priorities received are given priority zero,
+	 * meaning the source does not control them.</p>
+	 * @param s source of priorities
+	 * @param data buffer containing priorities, position is not changed
+	 * @param index absolute index of first priority in data
+	 * @param length number of priorities
+	 * @param first index in frame of the slot of the first priority (1 if frames include the start code)
+	 */
+	public void updateSourcePriorities(LXDMXMergeSource s, ByteBuffer data, int index, int length, int first) {
+		if ( s._slot_priority == null ) {
+			s._slot_priority = new byte[_size];
+		}
+		byte[] sp = s._slot_priority;
+		int n = Math.max(0, Math.min(length, _size - first));
+		if ( data.hasArray() ) {
+			System.arraycopy(data.array(), data.arrayOffset()+index, sp, first, n);
+		} else {
+			int p = data.position();
+			data.position(index);
+			data.get(sp, first, n);
+			data.position(p);
+		}
+		for (int j=0; j<first; j++) {
+			sp[j] = 0;
+		}
+		for (int j=first+n; j<_size; j++) {
+			sp[j] = 0;
+		}
+		long now = currentTime();
+		s._slot_priority_time = now;
+		s._last_seen = now;
+		recompute();
+	}
+
+	/**
+	 * hold a frame from a source until a synchronization packet is received
+	 * @param s source of frame, its sync address identifies the synchronization packet
+	 * @param data buffer containing levels, position is not changed
+	 * @param index absolute index of first level in data
+	 * @param length number of levels
+	 * @param priority priority of frame
+	 */
+	public void stageSource(LXDMXMergeSource s, ByteBuffer data, int index, int length, int priority) {
+		if ( s._staged == null ) {
+			s._staged = new byte[_size];
+			s._staged_view = ByteBuffer.wrap(s._staged);
+		}
+		copyFrame(s._staged, data, index, length, 0);
+		s._staged_slots = length;
+		s._staged_priority = priority;
+		s._has_staged = true;
+		s._last_seen = currentTime();
+	}
+
+	/**
+	 * merge the staged frames of sources using a synchronization address
+	 * @param syncAddress synchronization address (zero for ArtSync)
+	 * @param now current time in milliseconds, recorded as the source's last sync time
+	 * @return true if a staged frame was merged
+	 */
+	public boolean applySync(int syncAddress, long now) {
+		boolean applied = false;
+		for (int i=0; i<_source_count; i++) {
+			LXDMXMergeSource s = _sources[i];
+			if ( s._sync_address == syncAddress ) {
+				s._last_sync_time = now;
+				s._sync_received = true;
+				if ( s._has_staged ) {
+					setSourcePriority(s, s._staged_priority);
+					updateSource(s, s._staged_view, 0, s._staged_slots);
+					applied = true;
+				}
+			}
+		}
+		return applied;
+	}
+
+	/**
+	 * copy a frame into a source's array, stamping the slots whose level changes
+	 * <p>Slots from length to n are no longer sent and become zero.</p>
+	 * @param s source of frame
+	 * @param data buffer containing levels, position is not changed
+	 * @param index absolute index of first level in data
+	 * @param length number of levels
+	 * @param n previous number of slots if greater than length
+	 */
+	void storeFrame(LXDMXMergeSource s, ByteBuffer data, int index, int length, int n) {
+		byte[] sd = s._data;
+		long[] st = s._slot_stamp;
+		long u = _update_count;
+		for (int j=0; j<n; j++) {
+			byte nv = 0;
+			if ( j < length ) {
+				nv = data.get(index+j);
+			}
+			if ( nv != sd[j] ) {
+				sd[j] = nv;
+				st[j] = u;
+			}
+		}
+	}
+
+	/**
+	 * bulk copy of a frame into a source's array, zeroing slots no longer sent
+	 * @param sd source's frame
+	 * @param data buffer containing levels, position is not changed
+	 * @param index absolute index of first level in data
+	 * @param length number of levels
+	 * @param n previous number of slots if greater than length
+	 */
+	static void copyFrame(byte[] sd, ByteBuffer data, int index, int length, int n) {
+		if ( data.hasArray() ) {
+			System.arraycopy(data.array(), data.arrayOffset()+index, sd, 0, length);
+		} else {
+			int p = data.position();				// relative bulk get, then restore position
+			data.position(index);
+			data.get(sd, 0, length);
+			data.position(p);
+		}
+		for (int j=length; j<n; j++) {
+			sd[j] = 0;
+		}
+	}
+
+	/**
+	 * @param j index of slot
+	 * @return highest level of merged sources
+	 */
+	int maximumForSlot(int j) {
+		int m = 0;
+		for (int i=0; i<_source_count; i++) {
+			LXDMXMergeSource s = _sources[i];
+			if ( s._priority == _top_priority ) {
+				m = Math.max(m, s._data[j] & 0xff);
+			}
+		}
+		return m;
+	}
+
+	/**
+	 * rebuild the merged output from every source with the highest priority
+	 */
+	void recompute() {
+		_top_priority = 0;
+		_per_slot = false;
+		for (int i=0; i<_source_count; i++) {
+			_top_priority = Math.max(_top_priority, _sources[i]._priority);
+			_per_slot |= ( _sources[i]._slot_priority != null );
+		}
+		if ( _source_count == 0 ) {
+			return;
+		}
+		if ( _per_slot ) {
+			recomputePerSlot();
+			return;
+		}
+
+		if ( _mode == MERGE_LTP ) {
+			recomputeLTP(null);
+		} else {
+			for (int j=0; j<_size; j++) {
+				_merged[j] = 0;
+			}
+			for (int i=0; i<_source_count; i++) {
+				LXDMXMergeSource s = _sources[i];
+				if ( s._priority == _top_priority ) {
+					byte[] sd = s._data;
+					for (int j=0; j<_size; j++) {
+						if ( (sd[j] & 0xff) > (_merged[j] & 0xff) ) {
+							_merged[j] = sd[j];
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * rebuild the merged output choosing the winning sources of each slot
+	 * <p>The first pass finds the highest priority of each slot.  The second merges
+	 * the levels of sources whose priority for the slot equals it.  HTP uses masks rather
+	 * than branches so the inner loops have no data dependent jumps.  LTP uses the slot stamps, see recomputeLTP.</p>
+	 */
+	void recomputePerSlot() {
+		if ( _slot_top == null ) {
+			_slot_top = new int[_size];
+		}
+		int[] top = _slot_top;
+		for (int j=0; j<_size; j++) {
+			top[j] = 0;
+		}
+		for (int i=0; i<_source_count; i++) {
+			LXDMXMergeSource s = _sources[i];
+			byte[] sp = s._slot_priority;
+			if ( sp != null ) {
+				for (int j=0; j<_size; j++) {
+					int t = top[j];
+					int p = sp[j] & 0xff;
+					top[j] = t + ((p - t) & ((t - p) >> 31));		// max(t, p)
+				}
+			} else {
+				int p = s._priority;
+				for (int j=0; j<_size; j++) {
+					int t = top[j];
+					top[j] = t + ((p - t) & ((t - p) >> 31));
+				}
+			}
+		}
+
+		if ( _mode == MERGE_LTP ) {
+			recomputeLTP(top);
+		} else {
+			for (int j=0; j<_size; j++) {
+				_merged[j] = 0;
+			}
+			for (int i=0; i<_source_count; i++) {
+				LXDMXMergeSource s = _sources[i];
+				mergeSlotsHTP(s._data, s._slot_priority, s._priority, top);
+			}
+		}
+	}
+
+	/**
+	 * HTP merge of the slots a source wins into the merged output
+	 * @param sd source's frame
+	 * @param sp source's per slot priorities or null
+	 * @param up source's universe priority, used if sp is null
+	 * @param top highest priority of each slot
+	 */
+	void mergeSlotsHTP(byte[] sd, byte[] sp, int up, int[] top) {
+		for (int j=0; j<_size; j++) {
+			int p = ( sp != null ) ? ( sp[j] & 0xff ) : up;
+			int mask = (((p ^ top[j]) - 1) & -p) >> 31;		// -1 if p == top[j] and p > 0
+			int v = ( sd[j] & 0xff ) & mask;
+			int m = _merged[j] & 0xff;
+			_merged[j] = (byte)( m + ((v - m) & ((m - v) >> 31)) );	// max(m, v)
+		}
+	}
+
+	/**
+	 * rebuild LTP output, each slot takes the level of the winning source that changed it most recently
+	 * <p>This gives the same levels as the incremental LTP merge in updateSource.</p>
+	 * @param top highest priority of each slot, or null to merge the sources at the universe's highest priority
+	 */
+	void recomputeLTP(int[] top) {
+		if ( _slot_best == null ) {
+			_slot_best = new long[_size];
+		}
+		long[] best = _slot_best;
+		for (int j=0; j<_size; j++) {
+			best[j] = -1;
+			_merged[j] = 0;
+		}
+		for (int i=0; i<_source_count; i++) {
+			LXDMXMergeSource s = _sources[i];
+			byte[] sd = s._data;
+			long[] st = s._slot_stamp;
+			if ( top == null ) {
+				if ( s._priority == _top_priority ) {
+					for (int j=0; j<_size; j++) {
+						if ( st[j] > best[j] ) {
+							best[j] = st[j];
+							_merged[j] = sd[j];
+						}
+					}
+				}
+			} else {
+				byte[] sp = s._slot_priority;
+				for (int j=0; j<_size; j++) {
+					int p = ( sp != null ) ? ( sp[j] & 0xff ) : s._priority;
+					if (( p > 0 ) && ( p == top[j] ) && ( st[j] > best[j] )) {
+						best[j] = st[j];
+						_merged[j] = sd[j];
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,263 @@
+/**
+ * Copyright (c) 2016 by Claude Heintz Design
+ *
+ * This file is part of a library called LXforProcessing - https://github.com/claudeheintz/LXforProcessing
+ *
+ * LXforProcessing is free software: you can redistribute it and/or modify
+ * it under the terms of a BSD style license that should have been included with this file.
+ * If not, see https://www.claudeheintzdesign.com/lx/opensource.html.
+ *
+*/
+
+package lx4p;
+
+import java.net.*;
+import java.nio.ByteBuffer;
+
+/** LXDMXMergeSource
+ *
+ * <p>LXDMXMergeSource holds the most recent frame received from one source of a merged universe.<BR>
+ * A source is identified either by its IP address (Art-Net) or by its CID (sACN).</p>
+ *
+ * @author Claude Heintz
+*/
+
+public class LXDMXMergeSource  {
+
+	/**
+	 * IP address of source, null if identified by CID
+	 */
+	InetAddress _address = null;
+	/**
+	 * CID of source, null if identified by IP address
+	 */
+	byte[] _cid = null;
+	/**
+	 * first and last eight bytes of CID, compared with two long reads from a packet
+	 */
+	long _cid_hi = 0;
+	long _cid_lo = 0;
+	/**
+	 * last frame received from this source
+	 */
+	byte[] _data;
+	/**
+	 * number of slots in the last frame
+	 */
+	int _slots = 0;
+	/**
+	 * priority of source, only sources with the highest priority are merged
+	 */
+	int _priority = LXDMXMerge.DEFAULT_PRIORITY;
+	/**
+	 * update count of the frame in which each slot last changed, used by LTP merge
+	 */
+	long[] _slot_stamp;
+	/**
+	 * time of last frame in milliseconds, see LXDMXMerge.currentTime
+	 */
+	long _last_seen = 0;
+	/**
+	 * sequence number of the last packet accepted from this source, -1 before the first
+	 */
+	int _sequence = -1;
+	/**
+	 * synchronization address of the last frame (sACN), zero if not synchronized
+	 */
+	int _sync_address = 0;
+	/**
+	 * time the last synchronization packet applying to this source was received, valid if _sync_received
+	 */
+	long _last_sync_time = 0;
+	/**
+	 * true once a synchronization packet applying to this source has been received
+	 * <p>currentTime has an arbitrary origin, so _last_sync_time alone cannot mean "never".</p>
+	 */
+	boolean _sync_received = false;
+	/**
+	 * frame held until a synchronization packet is received, allocated when first needed
+	 */
+	byte[] _staged = null;
+	/**
+	 * view of _staged used to merge it
+	 */
+	ByteBuffer _staged_view = null;
+	/**
+	 * number of slots in staged frame
+	 */
+	int _staged_slots = 0;
+	/**
+	 * priority of staged frame
+	 */
+	int _staged_priority = LXDMXMerge.DEFAULT_PRIORITY;
+	/**
+	 * true if a staged frame is waiting for synchronization
+	 */
+	boolean _has_staged = false;
+	/**
+	 * per slot priorities from the last 0xDD packet, null if the source uses one priority for every slot
+	 */
+	byte[] _slot_priority = null;
+	/**
+	 * time of last per slot priority packet
+	 */
+	long _slot_priority_time = 0;
+
+	/**
+	 * construct a source identified by IP address
+	 * @param address IP address of sender
+	 * @param size length of frame
+	 */
+	LXDMXMergeSource(InetAddress address, int size) {
+		_address = address;
+		_data = new byte[size];
+		_slot_stamp = new long[size];
+	}
+
+	/**
+	 * construct a source identified by CID
+	 * @param cid array containing CID
+	 * @param offset index of CID in array
+	 * @param size length of frame
+	 */
+	LXDMXMergeSource(byte[] cid, int offset, int size) {
+		_cid = new byte[LXSACN.SACN_CID_LENGTH];
+		System.arraycopy(cid, offset, _cid, 0, LXSACN.SACN_CID_LENGTH);
+		ByteBuffer b = ByteBuffer.wrap(_cid);
+		_cid_hi = b.getLong(0);
+		_cid_lo = b.getLong(8);
+		_data = new byte[size];
+		_slot_stamp = new long[size];
+	}
+
+	/**
+	 * construct a source identified by a CID read as two longs (big endian)
+	 * @param hi first eight bytes of CID
+	 * @param lo last eight bytes of CID
+	 * @param size length of frame
+	 */
+	LXDMXMergeSource(long hi, long lo, int size) {
+		_cid = new byte[LXSACN.SACN_CID_LENGTH];
+		ByteBuffer b = ByteBuffer.wrap(_cid);
+		b.putLong(0, hi);
+		b.putLong(8, lo);
+		_cid_hi = hi;
+		_cid_lo = lo;
+		_data = new byte[size];
+		_slot_stamp = new long[size];
+	}
+
+	/**
+	 * @return IP address of source or null
+	 */
+	public InetAddress getAddress() {
+		return _address;
+	}
+
+	/**
+	 * @return copy of CID of source or null
+	 */
+	public byte[] getCID() {
+		if ( _cid != null ) {
+			return _cid.clone();
+		}
+		return null;
+	}
+
+	/**
+	 * @return priority of source
+	 */
+	public int getPriority() {
+		return _priority;
+	}
+
+	/**
+	 * @return time of last frame in milliseconds, see LXDMXMerge.currentTime
+	 */
+	public long getLastSeen() {
+		return _last_seen;
+	}
+
+	/**
+	 * @return synchronization address of last frame, zero if not synchronized
+	 */
+	public int getSyncAddress() {
+		return _sync_address;
+	}
+
+	/**
+	 * @return true if a frame is being held until a synchronization packet is received
+	 */
+	public boolean hasStagedFrame() {
+		return _has_staged;
+	}
+
+	/**
+	 * @return true if the source has sent per slot priorities (0xDD start code)
+	 */
+	public boolean hasSlotPriorities() {
+		return _slot_priority != null;
+	}
+
+	/**
+	 * priority of one slot from this source
+	 * @param index index of slot in frame
+	 * @return per slot priority if sent, otherwise the source's priority.  Zero means the source does not control the slot.
+	 */
+	public int getSlotPriority(int index) {
+		if ( _slot_priority != null ) {
+			return _slot_priority[index] & 0xff;
+		}
+		return _priority;
+	}
+
+	/**
+	 * @return number of slots in last frame
+	 */
+	public int getNumberOfSlots() {
+		return _slots;
+	}
+
+	/**
+	 * level from the last frame received from this source
+	 * @param index index of slot in frame
+	 * @return level 0-255
+	 */
+	public int getLevel(int index) {
+		return LXDMXInterface.byte2int(_data[index]);
+	}
+
+	/**
+	 * @param address IP address
+	 * @return true if this source is identified by address
+	 */
+	boolean matchesAddress(InetAddress address) {
+		return ( _address != null ) && _address.equals(address);
+	}
+
+	/**
+	 * @param hi first eight bytes of CID
+	 * @param lo last eight bytes of CID
+	 * @return true if this source is identified by the CID
+	 */
+	boolean matchesCID(long hi, long lo) {
+		return ( _cid != null ) && ( _cid_hi == hi ) && ( _cid_lo == lo );
+	}
+
+	/**
+	 * @param ca array containing CID
+	 * @param ci index of CID in ca
+	 * @return true if this source is identified by the CID
+	 */
+	boolean matchesCID(byte[] ca, int ci) {
+		if ( _cid == null ) {
+			return false;
+		}
+		for (int i=0; i<LXSACN.SACN_CID_LENGTH; i++) {
+			if ( _cid[i] != ca[ci+i] ) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
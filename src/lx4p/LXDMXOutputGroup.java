@@ -0,0 +1,372 @@
+/**
+ * Copyright (c) 2016 by Claude Heintz Design
+ *
+ * This file is part of a library called LXforProcessing - https://github.com/claudeheintz/LXforProcessing
+ * 
+ * LXforProcessing is free software: you can redistribute it and/or modify
+ * it under the terms of a BSD style license that should have been included with this file.
+ * If not, see https://www.claudeheintzdesign.com/lx/opensource.html.
+ * 
+*/
+
+package lx4p;
+
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/** LXDMXOutputGroup
+ * 
+ * <p>LXDMXOutputGroup sends many universes from a single DatagramChannel.<BR>
+ * It holds what LXSACNOutputGroup and LXArtNetOutputGroup share:  the universe table and list, the queue
+ * of committed universes, keep-alive, the flush loop and its statistics.  Each protocol supplies its universes,
+ * which encode their own packets and choose their destinations, and may send a synchronization packet after each flush.</p>
+ * 
+ * <p>When a universe's frame changes, commitSlots places it on a lock-free queue.  flush takes every queued universe,
+ * plus any unchanged universe whose keep-alive interval has passed, copies their frames into their
+ * packets and then sends the packets back to back.</p>
+ * 
+ * <p>flush is called from one sending thread, for example once per frame in draw or from a timer thread.
+ * It measures its own wall time so that the cost of a frame can be monitored as universes are added.</p>
+ * 
+ * <p>Java has no equivalent of sendmmsg, so each packet is still one send call.  The flush loop
+ * does no allocation or locking so those calls run back to back.</p>
+ * 
+ * @author Claude Heintz
+*/
+
+abstract class LXDMXOutputGroup  {
+	
+	/**
+	 * send buffer size requested for the channel, large enough for a burst of a few hundred universes
+	 */
+	public static final int SEND_BUFFER_SIZE = 1 << 20;
+	
+	/**
+	 * channel used to send every universe
+	 */
+	DatagramChannel _channel;
+	/**
+	 * lowest and highest universe number of the protocol
+	 */
+	int _universe_min;
+	int _universe_max;
+	/**
+	 * universes of the group indexed by universe number, allocated when the first universe is added
+	 */
+	LXDMXOutputUniverse[] _universe_table = null;
+	/**
+	 * universes of the group in the order they were added, replaced (never modified) when universes are added or removed
+	 */
+	volatile LXDMXOutputUniverse[] _universe_list = new LXDMXOutputUniverse[0];
+	/**
+	 * universes with a committed frame waiting to be sent
+	 */
+	ConcurrentLinkedQueue<LXDMXOutputUniverse> _dirty = new ConcurrentLinkedQueue<LXDMXOutputUniverse>();
+	/**
+	 * universes sent by the current flush (sending thread)
+	 */
+	LXDMXOutputUniverse[] _batch = new LXDMXOutputUniverse[0];
+	/**
+	 * identifies the current flush so that a universe is only added to the batch once (sending thread)
+	 */
+	long _flush_serial = 0;
+	/**
+	 * milliseconds between packets for an unchanged universe
+	 */
+	int _keep_alive_interval = LXDMXInterface.DMX_KEEP_ALIVE_INTERVAL;
+	
+	/**
+	 * number of flushes
+	 */
+	volatile long _flushes = 0;
+	/**
+	 * wall time of the most recent flush in nanoseconds
+	 */
+	volatile long _last_flush_time = 0;
+	/**
+	 * longest flush in nanoseconds
+	 */
+	volatile long _max_flush_time = 0;
+	/**
+	 * sum of flush times in nanoseconds, used for average
+	 */
+	volatile long _total_flush_time = 0;
+	/**
+	 * data packets sent by the most recent flush
+	 */
+	volatile int _last_flush_packets = 0;
+	/**
+	 * packets that could not be sent
+	 */
+	volatile long _send_failures = 0;
+	
+	/**
+	 * construct group
+	 * @param channel open channel used to send all universes
+	 * @param min lowest universe number
+	 * @param max highest universe number
+	 */
+	LXDMXOutputGroup(DatagramChannel channel, int min, int max) {
+		_channel = channel;
+		_universe_min = min;
+		_universe_max = max;
+	}
+	
+	/**
+	 * @param n universe number
+	 * @return new universe belonging to this group
+	 */
+	abstract LXDMXOutputUniverse createUniverse(int n);
+	
+	/**
+	 * called at the end of a flush that sent data packets, for example to send a synchronization packet
+	 * @param packets number of data packets sent
+	 */
+	void flushed(int packets) {
+	}
+	
+	/**
+	 * add a universe to the group
+	 * @param n universe number
+	 * @return the universe, existing if already added, or null if n is out of range
+	 */
+	synchronized LXDMXOutputUniverse addOutputUniverse(int n) {
+		if (( n < _universe_min ) || ( n > _universe_max )) {
+			return null;
+		}
+		if ( _universe_table == null ) {
+			_universe_table = new LXDMXOutputUniverse[_universe_max+1];
+		}
+		LXDMXOutputUniverse ou = _universe_table[n];
+		if ( ou == null ) {
+			ou = createUniverse(n);
+			_universe_table[n] = ou;
+			LXDMXOutputUniverse[] current = _universe_list;
+			LXDMXOutputUniverse[] next = new LXDMXOutputUniverse[current.length+1];
+			System.arraycopy(current, 0, next, 0, current.length);
+			next[current.length] = ou;
+			_universe_list = next;
+		}
+		return ou;
+	}
+	
+	/**
+	 * stop sending a universe
+	 * @param n universe number
+	 */
+	public synchronized void removeUniverse(int n) {
+		LXDMXOutputUniverse ou = outputUniverse(n);
+		if ( ou != null ) {
+			_universe_table[n] = null;
+			LXDMXOutputUniverse[] current = _universe_list;
+			for (int i=0; i<current.length; i++) {
+				if ( current[i] == ou ) {
+					LXDMXOutputUniverse[] next = new LXDMXOutputUniverse[current.length-1];
+					System.arraycopy(current, 0, next, 0, i);
+					System.arraycopy(current, i+1, next, i, current.length-i-1);
+					_universe_list = next;
+					break;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @param n universe number
+	 * @return the universe or null if it is not in the group
+	 */
+	LXDMXOutputUniverse outputUniverse(int n) {
+		LXDMXOutputUniverse[] table = _universe_table;
+		if (( table != null ) && ( n >= 0 ) && ( n <= _universe_max )) {
+			return table[n];
+		}
+		return null;
+	}
+	
+	/**
+	 * @return number of universes in the group
+	 */
+	public int getUniverseCount() {
+		return _universe_list.length;
+	}
+	
+	/**
+	 * @param ms maximum milliseconds between packets of an unchanged universe
+	 */
+	public void setKeepAliveInterval(int ms) {
+		_keep_alive_interval = ms;
+	}
+	
+	/**
+	 * called by a universe when its frame is committed
+	 */
+	void queue(LXDMXOutputUniverse ou) {
+		_dirty.add(ou);
+	}
+	
+	/**
+	 * send every changed universe and every universe due for keep-alive
+	 * @return number of data packets sent
+	 */
+	public int flush() {
+		long start = System.nanoTime();
+		LXDMXOutputUniverse[] list = _universe_list;
+		if ( _batch.length < list.length ) {
+			_batch = new LXDMXOutputUniverse[list.length];
+		}
+		LXDMXOutputUniverse[] batch = _batch;
+		long mark = ++_flush_serial;
+		int count = 0;
+		
+		LXDMXOutputUniverse ou;
+		while ( ( ou = _dirty.poll() ) != null ) {
+			ou._queued.set(false);				// a commit after this queues it again
+			if (( ou._flush_mark != mark ) && ( outputUniverse(ou._number) == ou )) {	// skip universes removed after they were queued
+				if ( count == batch.length ) {
+					batch = growBatch();		// queued universe added after list was read
+				}
+				ou._flush_mark = mark;
+				batch[count++] = ou;
+			}
+		}
+		long keep_alive = _keep_alive_interval * 1000000L;
+		for (int i=0; i<list.length; i++) {
+			ou = list[i];
+			if (( ou._flush_mark != mark ) && (( ou._last_sent == 0 ) || ( start - ou._last_sent >= keep_alive ))) {
+				if ( count == batch.length ) {
+					batch = growBatch();
+				}
+				ou._flush_mark = mark;
+				batch[count++] = ou;
+			}
+		}
+		
+		for (int i=0; i<count; i++) {			// copy frames into packets
+			batch[i].encode();
+		}
+		int packets = 0;
+		for (int i=0; i<count; i++) {			// then send them back to back
+			ou = batch[i];
+			packets += ou.transmit();
+			ou._last_sent = start;
+			batch[i] = null;
+		}
+		if ( packets > 0 ) {
+			flushed(packets);
+		}
+		
+		long elapsed = System.nanoTime() - start;
+		_last_flush_time = elapsed;
+		_total_flush_time += elapsed;
+		if ( elapsed > _max_flush_time ) {
+			_max_flush_time = elapsed;
+		}
+		_last_flush_packets = packets;
+		_flushes++;
+		return packets;
+	}
+	
+	/**
+	 * enlarge the batch when more universes are due than the list held when the flush started
+	 * @return the new batch
+	 */
+	LXDMXOutputUniverse[] growBatch() {
+		LXDMXOutputUniverse[] nb = new LXDMXOutputUniverse[_batch.length + 16];
+		System.arraycopy(_batch, 0, nb, 0, _batch.length);
+		_batch = nb;
+		return nb;
+	}
+	
+	/**
+	 * send one packet, counting failures
+	 * <p>The packet's position is restored so that it can be sent again to another destination.</p>
+	 * @return 1 if sent, 0 if not
+	 */
+	int send(ByteBuffer packet, InetSocketAddress to) {
+		int p = packet.position();
+		try {
+			if ( _channel.send(packet, to) == 0 ) {
+				_send_failures++;
+				packet.position(p);
+				return 0;
+			}
+		} catch (Exception e) {
+			_send_failures++;
+			packet.position(p);
+			return 0;
+		}
+		packet.position(p);
+		return 1;
+	}
+	
+	/**
+	 * closes the channel
+	 */
+	public void close() {
+		if ( _channel != null ) {
+			LXUDPReactor.closeChannel(_channel);
+			_channel = null;
+		}
+	}
+	
+	/**
+	 * @return number of flushes since creation or resetStatistics
+	 */
+	public long getFlushCount() {
+		return _flushes;
+	}
+	
+	/**
+	 * @return wall time of the most recent flush in microseconds
+	 */
+	public double getLastFlushTime() {
+		return _last_flush_time / 1000.0;
+	}
+	
+	/**
+	 * @return longest flush in microseconds
+	 */
+	public double getMaxFlushTime() {
+		return _max_flush_time / 1000.0;
+	}
+	
+	/**
+	 * @return average flush time in microseconds
+	 */
+	public double getAverageFlushTime() {
+		long flushes = _flushes;
+		if ( flushes > 0 ) {
+			return ( _total_flush_time / (double)flushes ) / 1000.0;
+		}
+		return 0;
+	}
+	
+	/**
+	 * @return number of data packets sent by the most recent flush
+	 */
+	public int getLastFlushPacketCount() {
+		return _last_flush_packets;
+	}
+	
+	/**
+	 * @return number of packets that could not be sent
+	 */
+	public long getSendFailureCount() {
+		return _send_failures;
+	}
+	
+	/**
+	 * zero the flush statistics
+	 * <p>Call from the sending thread.</p>
+	 */
+	public void resetStatistics() {
+		_flushes = 0;
+		_last_flush_time = 0;
+		_max_flush_time = 0;
+		_total_flush_time = 0;
+		_last_flush_packets = 0;
+		_send_failures = 0;
+	}
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2016 by Claude Heintz Design
+ *
+ * This file is part of a library called LXforProcessing - https://github.com/claudeheintz/LXforProcessing
+ * 
+ * LXforProcessing is free software: you can redistribute it and/or modify
+ * it under the terms of a BSD style license that should have been included with this file.
+ * If not, see https://www.claudeheintzdesign.com/lx/opensource.html.
+ * 
+*/
+
+package lx4p;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/** LXDMXOutputUniverse
+ * 
+ * <p>LXDMXOutputUniverse is one universe sent by an LXDMXOutputGroup.<BR>
+ * The sketch sets levels and calls commitSlots when the frame is complete.  A changed frame
+ * is published to the universe's LXDMXUniverseBuffer and the universe is queued to be sent
+ * by the group's next flush.  Each protocol encodes the frame into its own packet and sends it.</p>
+ * 
+ * <p>Levels are set from one writer thread.  The frame and packet belong to the thread calling flush.</p>
+ * 
+ * @author Claude Heintz
+*/
+
+abstract class LXDMXOutputUniverse  {
+	
+	/**
+	 * universe number, for Art-Net the 15 bit Port-Address
+	 */
+	int _number;
+	/**
+	 * group that sends this universe
+	 */
+	LXDMXOutputGroup _group;
+	/**
+	 * index in frame of slot 1 (1 if frame includes start code)
+	 */
+	int _first_slot_index;
+	/**
+	 * levels being set by the writer
+	 */
+	byte[] _working;
+	/**
+	 * number of slots not including the start code
+	 */
+	int _slots = LXDMXInterface.DMX_UNIVERSE_MAX;
+	/**
+	 * committed frames passed to the sending thread
+	 */
+	LXDMXUniverseBuffer _frames;
+	/**
+	 * set while the universe is waiting in the group's queue
+	 */
+	AtomicBoolean _queued = new AtomicBoolean(false);
+	/**
+	 * view of the encoded packet for sending with a DatagramChannel
+	 */
+	ByteBuffer _packet_view;
+	/**
+	 * time the last packet was sent, System.nanoTime, zero before the first (sending thread)
+	 */
+	long _last_sent = 0;
+	/**
+	 * number of the flush this universe was last added to (sending thread)
+	 */
+	long _flush_mark = -1;
+	
+	/**
+	 * construct output universe
+	 * @param group the group sending the universe
+	 * @param n universe number
+	 * @param includeStartCode if true, frames include the dmx start code before slot 1
+	 */
+	LXDMXOutputUniverse(LXDMXOutputGroup group, int n, boolean includeStartCode) {
+		_group = group;
+		_number = n;
+		_first_slot_index = includeStartCode ? 1 : 0;
+		_working = new byte[LXDMXInterface.DMX_UNIVERSE_MAX+_first_slot_index];
+		_frames = new LXDMXUniverseBuffer(LXDMXInterface.DMX_UNIVERSE_MAX+_first_slot_index);
+	}
+	
+	/**
+	 * copy the latest committed frame into the packet and set the limit of _packet_view (sending thread)
+	 */
+	abstract void encode();
+	
+	/**
+	 * send the encoded packet (sending thread)
+	 * @return number of packets sent
+	 */
+	abstract int transmit();
+	
+	/**
+	 * @return number of slots not including the start code
+	 */
+	public int getNumberOfSlots() {
+		return _slots;
+	}
+	
+	/**
+	 * @param slots number of slots 1-512
+	 */
+	public void setNumberOfSlots(int slots) {
+		_slots = Math.max(1, Math.min(slots, LXDMXInterface.DMX_UNIVERSE_MAX));
+	}
+	
+	/**
+	 * @param slot the address or channel of the data (1-512)
+	 * @return the level 0-255 set for the slot
+	 */
+	public int getSlot(int slot) {
+		return LXDMXInterface.byte2int(_working[slot - 1 + _first_slot_index]);
+	}
+	
+	/**
+	 * @param slot the address or channel of the data (1-512)
+	 * @param value level 0-255
+	 */
+	public void setSlot(int slot, int value) {
+		int index = slot - 1 + _first_slot_index;
+		byte b = (byte)value;
+		if ( _working[index] != b ) {
+			_working[index] = b;
+			_frames.markChanged(index);
+		}
+	}
+	
+	/**
+	 * set consecutive slots
+	 * @param slot first slot (1-512)
+	 * @param data levels
+	 * @param offset index in data of first level
+	 * @param length number of slots
+	 */
+	public void setSlots(int slot, byte[] data, int offset, int length) {
+		_frames.update(_working, slot - 1 + _first_slot_index, data, offset, length);
+	}
+	
+	/**
+	 * set consecutive slots
+	 * @param slot first slot (1-512)
+	 * @param data levels 0-255
+	 * @param offset index in data of first level
+	 * @param length number of slots
+	 */
+	public void setSlots(int slot, int[] data, int offset, int length) {
+		_frames.update(_working, slot - 1 + _first_slot_index, data, offset, length);
+	}
+	
+	/**
+	 * publish the frame if it has changed and queue the universe to be sent
+	 */
+	public void commitSlots() {
+		if ( _frames.commit(_working, 0, _slots + _first_slot_index) ) {
+			if ( _queued.compareAndSet(false, true) ) {
+				_group.queue(this);
+			}
+		}
+	}
+}
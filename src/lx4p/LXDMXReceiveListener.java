@@ -0,0 +1,32 @@
+/**
+ * Copyright (c) 2016 by Claude Heintz Design
+ *
+ * This file is part of a library called LXforProcessing - https://github.com/claudeheintz/LXforProcessing
+ * 
+ * LXforProcessing is free software: you can redistribute it and/or modify
+ * it under the terms of a BSD style license that should have been included with this file.
+ * If not, see https://www.claudeheintzdesign.com/lx/opensource.html.
+ * 
+*/
+
+package lx4p;
+
+/** LXDMXReceiveListener
+ * 
+ * <p>LXDMXReceiveListener is an interface for objects that want to be informed when
+ * an LXDMXEthernet object receiving from an LXUDPReactor has merged a new dmx frame.</p>
+ * 
+ * <p>dmxReceived is called on the reactor's thread.</p>
+*/
+
+
+public interface LXDMXReceiveListener  {
+
+	/**
+	 * called after a received dmx frame has been merged
+	 * @param dmx LXArtNet or LXSACN object that received the frame
+	 * @param universe universe of the frame (for Art-Net the 15 bit Port-Address)
+	 */
+	public void dmxReceived(LXDMXEthernet dmx, int universe);
+
+}
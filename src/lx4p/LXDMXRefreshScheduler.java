@@ -0,0 +1,317 @@
+/**
+ * Copyright (c) 2016 by Claude Heintz Design
+ *
+ * This file is part of a library called LXforProcessing - https://github.com/claudeheintz/LXforProcessing
+ *
+ * LXforProcessing is free software: you can redistribute it and/or modify
+ * it under the terms of a BSD style license that should have been included with this file.
+ * If not, see https://www.claudeheintzdesign.com/lx/opensource.html.
+ *
+*/
+
+package lx4p;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ *  LXDMXRefreshScheduler sends dmx from a set of LXDMXInterface objects at a fixed rate.
+ *
+ *  <p>Output runs on its own high priority thread so that the refresh rate does not depend
+ *  on the frame rate of the Processing sketch.  Every interface is asked to send on every refresh.
+ *  With the default SEND_ALWAYS policy this also satisfies the keep-alive requirement for frames
+ *  that have not changed.  Interfaces set to SEND_CHANGES_ONLY skip unchanged frames
+ *  until their keep-alive interval has passed.</p>
+ *
+ *  <p>The scheduler measures the actual period between refreshes.  Jitter is the difference
+ *  between the measured and the requested period.  An overrun is counted when a refresh starts
+ *  more than one full period late, in which case the missed refreshes are skipped.</p>
+ *
+ *  <p>If a synchronization sender is set, it sends a synchronization packet (E1.31 Universe Sync or ArtSync)
+ *  after every interface has been sent, so that receivers output all universes of the refresh at once.</p>
+ *
+ *  <p>Because levels are sent from the scheduler thread, auto commit does not apply to levels set by the sketch.
+ *  The sketch calls commitSlots after setting a complete frame.</p>
+ *
+ *  @author Claude Heintz
+ */
+
+public class LXDMXRefreshScheduler extends Object implements Runnable  {
+
+	public static final float DEFAULT_REFRESH_RATE = 40;
+	public static final float MAX_REFRESH_RATE = 44;
+
+	/**
+	 * interfaces to send, replaced (never modified) when interfaces are added or removed
+	 */
+	volatile LXDMXInterface[] _interfaces = new LXDMXInterface[0];
+	/**
+	 * interface that sends a synchronization packet after each refresh, or null
+	 */
+	volatile LXDMXInterface _sync_sender = null;
+	/**
+	 * nanoseconds between refreshes
+	 */
+	volatile long _period = (long)(1000000000L / DEFAULT_REFRESH_RATE);
+	/**
+	 * set while refresh thread is running
+	 */
+	volatile boolean _running = false;
+	/**
+	 * refresh thread
+	 */
+	Thread _thread = null;
+
+	/**
+	 * number of refreshes sent
+	 */
+	volatile long _frames = 0;
+	/**
+	 * number of times a refresh started more than one period late
+	 */
+	volatile long _overruns = 0;
+	/**
+	 * jitter of the most recent refresh in nanoseconds
+	 */
+	volatile long _last_jitter = 0;
+	/**
+	 * largest jitter measured in nanoseconds
+	 */
+	volatile long _max_jitter = 0;
+	/**
+	 * sum of measured jitter in nanoseconds, used for average
+	 */
+	volatile long _total_jitter = 0;
+	/**
+	 * number of jitter measurements in _total_jitter
+	 */
+	volatile long _jitter_samples = 0;
+
+	/**
+	 * construct scheduler with default refresh rate
+	 */
+	public LXDMXRefreshScheduler() {
+	}
+
+	/**
+	 * construct scheduler
+	 * @param hz refreshes per second
+	 */
+	public LXDMXRefreshScheduler(float hz) {
+		setRefreshRate(hz);
+	}
+
+	/**
+	 * @param hz refreshes per second, limited to MAX_REFRESH_RATE
+	 */
+	public void setRefreshRate(float hz) {
+		if ( hz > MAX_REFRESH_RATE ) {
+			hz = MAX_REFRESH_RATE;
+		}
+		if ( hz > 0 ) {
+			_period = (long)(1000000000L / hz);
+		}
+	}
+
+	/**
+	 * @return refreshes per second
+	 */
+	public float getRefreshRate() {
+		return 1000000000f / _period;
+	}
+
+	/**
+	 * add an interface to be sent on each refresh
+	 * @param dmx interface
+	 */
+	public synchronized void addInterface(LXDMXInterface dmx) {
+		LXDMXInterface[] current = _interfaces;
+		for (int i=0; i<current.length; i++) {
+			if ( current[i] == dmx ) {
+				return;
+			}
+		}
+		LXDMXInterface[] next = new LXDMXInterface[current.length+1];
+		System.arraycopy(current, 0, next, 0, current.length);
+		next[current.length] = dmx;
+		_interfaces = next;
+	}
+
+	/**
+	 * stop sending an interface
+	 * @param dmx interface
+	 */
+	public synchronized void removeInterface(LXDMXInterface dmx) {
+		LXDMXInterface[] current = _interfaces;
+		for (int i=0; i<current.length; i++) {
+			if ( current[i] == dmx ) {
+				LXDMXInterface[] next = new LXDMXInterface[current.length-1];
+				System.arraycopy(current, 0, next, 0, i);
+				System.arraycopy(current, i+1, next, i, current.length-i-1);
+				_interfaces = next;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * set the interface used to send a synchronization packet after each refresh
+	 * <p>For sACN the interface's sync address must match the sync address of the interfaces sent.</p>
+	 * @param dmx interface or null for no synchronization
+	 */
+	public void setSynchronizationSender(LXDMXInterface dmx) {
+		_sync_sender = dmx;
+	}
+
+	/**
+	 * start the refresh thread
+	 */
+	public synchronized void start() {
+		if ( _thread == null ) {
+			_running = true;
+			_thread = new Thread(this, "LXDMXRefreshScheduler");
+			_thread.setDaemon(true);
+			_thread.setPriority(Thread.MAX_PRIORITY);
+			_thread.start();
+		}
+	}
+
+	/**
+	 * stop the refresh thread and wait for it to exit
+	 */
+	public void stop() {
+		Thread t;
+		synchronized ( this ) {
+			_running = false;
+			t = _thread;
+			_thread = null;
+		}
+		if ( t != null ) {
+			LockSupport.unpark(t);
+			try {
+				t.join(1000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * @return true if refresh thread is running
+	 */
+	public boolean isRunning() {
+		return _running;
+	}
+
+	/**
+	 * refresh loop
+	 */
+	public void run() {
+		long next = System.nanoTime();
+		long last = 0;
+		while ( _running ) {
+			long now = System.nanoTime();
+			while ( _running && ( now < next ) ) {
+				LockSupport.parkNanos(next - now);
+				now = System.nanoTime();
+			}
+			if ( ! _running ) {
+				break;
+			}
+
+			long period = _period;
+			if ( last != 0 ) {
+				long jitter = Math.abs((now - last) - period);
+				_last_jitter = jitter;
+				_total_jitter += jitter;
+				_jitter_samples++;
+				if ( jitter > _max_jitter ) {
+					_max_jitter = jitter;
+				}
+			}
+			last = now;
+
+			refresh();
+			_frames++;
+
+			next += period;
+			if ( System.nanoTime() - next > period ) {	// more than a full period behind, skip missed refreshes
+				_overruns++;
+				next = System.nanoTime() + period;
+				last = 0;								// the skipped interval is an overrun, not jitter
+			}
+		}
+	}
+
+	/**
+	 * send every interface once
+	 */
+	void refresh() {
+		LXDMXInterface[] outputs = _interfaces;
+		for (int i=0; i<outputs.length; i++) {
+			try {
+				outputs[i].sendDMX();
+			} catch (Exception e) {
+				System.out.println("refresh exception " + e);
+			}
+		}
+		LXDMXInterface sync = _sync_sender;
+		if ( sync != null ) {
+			try {
+				sync.sendSynchronization();
+			} catch (Exception e) {
+				System.out.println("refresh sync exception " + e);
+			}
+		}
+	}
+
+	/**
+	 * @return number of refreshes sent since start or resetStatistics
+	 */
+	public long getFrameCount() {
+		return _frames;
+	}
+
+	/**
+	 * @return number of refreshes that started more than one period late
+	 */
+	public long getOverrunCount() {
+		return _overruns;
+	}
+
+	/**
+	 * @return jitter of the most recent refresh in microseconds
+	 */
+	public double getLastJitter() {
+		return _last_jitter / 1000.0;
+	}
+
+	/**
+	 * @return largest jitter measured in microseconds
+	 */
+	public double getMaxJitter() {
+		return _max_jitter / 1000.0;
+	}
+
+	/**
+	 * @return average jitter in microseconds, intervals following an overrun are not measured
+	 */
+	public double getAverageJitter() {
+		long samples = _jitter_samples;
+		if ( samples > 0 ) {
+			return ( _total_jitter / (double)samples ) / 1000.0;
+		}
+		return 0;
+	}
+
+	/**
+	 * zero the frame, overrun and jitter statistics
+	 */
+	public void resetStatistics() {
+		_frames = 0;
+		_overruns = 0;
+		_last_jitter = 0;
+		_max_jitter = 0;
+		_total_jitter = 0;
+		_jitter_samples = 0;
+	}
+}
@@ -0,0 +1,31 @@
+/**
+ * Copyright (c) 2016 by Claude Heintz Design
+ *
+ * This file is part of a library called LXforProcessing - https://github.com/claudeheintz/LXforProcessing
+ * 
+ * LXforProcessing is free software: you can redistribute it and/or modify
+ * it under the terms of a BSD style license that should have been included with this file.
+ * If not, see https://www.claudeheintzdesign.com/lx/opensource.html.
+ * 
+*/
+
+package lx4p;
+
+/** LXDMXSourceLossListener
+ * 
+ * <p>LXDMXSourceLossListener is an interface for objects that want to be informed when
+ * a source is removed from an LXDMXMerge because it has stopped sending
+ * or has signalled that its stream is terminated.</p>
+*/
+
+
+public interface LXDMXSourceLossListener  {
+
+	/**
+	 * called after a source has been removed from the merge
+	 * @param merge LXDMXMerge that the source was removed from (an LXDMXUniverse in multi-universe mode)
+	 * @param source the removed source
+	 */
+	public void sourceLost(LXDMXMerge merge, LXDMXMergeSource source);
+
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2016 by Claude Heintz Design
+ *
+ * This file is part of a library called LXforProcessing - https://github.com/claudeheintz/LXforProcessing
+ *
+ * LXforProcessing is free software: you can redistribute it and/or modify
+ * it under the terms of a BSD style license that should have been included with this file.
+ * If not, see https://www.claudeheintzdesign.com/lx/opensource.html.
+ *
+*/
+
+package lx4p;
+
+import java.net.*;
+import java.nio.ByteBuffer;
+
+/** LXDMXUniverse
+ *
+ * <p>LXDMXUniverse holds the received state of a single universe of dmx.<BR>
+ * It is used by network interfaces that receive more than one universe on a single socket.
+ * Each universe merges its own sources.</p>
+ *
+ * @author Claude Heintz
+*/
+
+public class LXDMXUniverse extends LXDMXMerge  {
+
+	/**
+	 * universe number (for Art-Net this is the 15 bit Port-Address)
+	 */
+	int _universe;
+	/**
+	 * index in frame of slot 1 (1 if frame includes start code)
+	 */
+	int _first_slot_index;
+
+	/**
+	 * construct universe state for frames without a start code
+	 * @param u the universe number
+	 */
+	public LXDMXUniverse(int u) {
+		this(u, false);
+	}
+
+	/**
+	 * construct universe state
+	 * @param u the universe number
+	 * @param includeStartCode if true, frames include the dmx start code before slot 1
+	 */
+	public LXDMXUniverse(int u, boolean includeStartCode) {
+		super(includeStartCode ? LXDMXInterface.DMX_UNIVERSE_MAX+1 : LXDMXInterface.DMX_UNIVERSE_MAX);
+		_universe = u;
+		_first_slot_index = includeStartCode ? 1 : 0;
+	}
+
+	/**
+	 * @return the universe number
+	 */
+	public int getUniverse() {
+		return _universe;
+	}
+
+	/**
+	 * merged dmx level data in slot
+	 * @param slot the address or channel of the data (1-512)
+	 * @return the level 0-255 for the slot (aka address or channel)
+	 */
+	public int getSlot(int slot) {
+		return LXDMXInterface.byte2int( _merged[slot - 1 + _first_slot_index] );
+	}
+
+	/**
+	 * merges dmx levels from a received packet with the frames of other sources
+	 * @param source address of sender
+	 * @param data packet bytes
+	 * @param offset index of first level in data
+	 * @param length number of levels in data
+	 * @return true if the data was accepted, false if there is no room for another source
+	 */
+	public boolean readDMXFromSource(InetAddress source, byte[] data, int offset, int length) {
+		LXDMXMergeSource s = sourceForAddress(source, true);
+		if ( s == null ) {
+			return false;
+		}
+		updateSource(s, data, offset, length);
+		return true;
+	}
+
+	/**
+	 * merges dmx levels directly from a received packet buffer with the frames of other sources
+	 * @param source address of sender
+	 * @param packet received packet, position is not changed
+	 * @param index absolute index of first level in packet
+	 * @param length number of levels in packet
+	 * @return true if the data was accepted, false if there is no room for another source
+	 */
+	public boolean readDMXFromSource(InetAddress source, ByteBuffer packet, int index, int length) {
+		LXDMXMergeSource s = sourceForAddress(source, true);
+		if ( s == null ) {
+			return false;
+		}
+		updateSource(s, packet, index, length);
+		return true;
+	}
+
+	/**
+	 * forget sources so that new senders will be accepted
+	 */
+	public void cancelMerge() {
+		removeAllSources();
+	}
+
+	/**
+	 * removes all sources and clears the merged levels
+	 */
+	public void clearSlots() {
+		clear();
+	}
+}
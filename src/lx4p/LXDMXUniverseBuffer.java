@@ -0,0 +1,300 @@
+/**
+ * Copyright (c) 2016 by Claude Heintz Design
+ *
+ * This file is part of a library called LXforProcessing - https://github.com/claudeheintz/LXforProcessing
+ *
+ * LXforProcessing is free software: you can redistribute it and/or modify
+ * it under the terms of a BSD style license that should have been included with this file.
+ * If not, see https://www.claudeheintzdesign.com/lx/opensource.html.
+ *
+*/
+
+package lx4p;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** LXDMXUniverseBuffer
+ *
+ * <p>LXDMXUniverseBuffer passes complete frames of dmx levels from writers to a sender.<BR>
+ * It is a triple buffer:  the writer fills one frame, the sender reads another and the third
+ * holds the most recently published frame.  Publishing and taking a snapshot each swap an index
+ * with a single atomic operation so the sender never sees a partially written frame and never waits on a lock.</p>
+ *
+ * <p>Levels are set and frames are published by one writer thread.  snapshot must only be called by the sending thread.
+ * Neither side takes a lock.  The buffer remembers the thread that last changed a slot so that
+ * an interface can tell whether the sending thread is also the writer, see isWriterThread.</p>
+ *
+ * <p>Writers also record which slots have changed since the last commit.  commit only publishes
+ * a frame when something has changed, so the sender can tell an unchanged universe
+ * from a new frame with hasNewFrame.</p>
+ *
+ * @author Claude Heintz
+*/
+
+public class LXDMXUniverseBuffer  {
+
+	static final int INDEX_MASK = 0x03;
+	static final int FRESH_FRAME = 0x04;
+
+	/**
+	 * three frames of dmx levels
+	 */
+	byte[][] _frames;
+	/**
+	 * number of slots in each frame
+	 */
+	int[] _lengths = new int[3];
+	/**
+	 * index of frame owned by writers
+	 */
+	int _write_index = 0;
+	/**
+	 * index of frame owned by the sender
+	 */
+	int _read_index = 1;
+	/**
+	 * index of the published frame, with FRESH_FRAME set if the sender has not yet taken it
+	 */
+	AtomicInteger _published = new AtomicInteger(2);
+	/**
+	 * bitset of slot indexes changed since the last commit (writer side)
+	 */
+	long[] _changed_slots;
+	/**
+	 * true if any slot or the number of slots has changed since the last commit (writer side)
+	 */
+	boolean _frame_changed = true;
+	/**
+	 * number of slots in the last published frame
+	 */
+	int _committed_length = -1;
+	/**
+	 * thread that last marked a slot as changed, null before the first change
+	 */
+	volatile Thread _writer = null;
+	/**
+	 * holds levels read from a ByteBuffer without a backing array (writer side)
+	 */
+	byte[] _scratch = null;
+
+	/**
+	 * construct buffer
+	 * @param size maximum number of slots in a frame
+	 */
+	public LXDMXUniverseBuffer(int size) {
+		_frames = new byte[3][size];
+		_changed_slots = new long[(size+63) >> 6];
+		for (int i=0; i<3; i++) {
+			_lengths[i] = size;
+		}
+	}
+
+	/**
+	 * copy a complete frame and make it available to the sender
+	 * @param data source of dmx levels
+	 * @param offset index of first slot in data
+	 * @param length number of slots in frame
+	 */
+	public void publish(byte[] data, int offset, int length) {
+		System.arraycopy(data, offset, _frames[_write_index], 0, length);
+		_lengths[_write_index] = length;
+		_committed_length = length;
+		_write_index = _published.getAndSet(_write_index | FRESH_FRAME) & INDEX_MASK;
+	}
+
+	/**
+	 * publish a frame if any slot has been marked as changed since the last commit
+	 * @param data source of dmx levels
+	 * @param offset index of first slot in data
+	 * @param length number of slots in frame
+	 * @return true if a new frame was published
+	 */
+	public boolean commit(byte[] data, int offset, int length) {
+		if ( _frame_changed || ( length != _committed_length ) ) {
+			publish(data, offset, length);
+			for (int i=0; i<_changed_slots.length; i++) {
+				_changed_slots[i] = 0;
+			}
+			_frame_changed = false;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * record that the slot at index has changed
+	 * @param index zero based index of slot in frame
+	 */
+	public void markChanged(int index) {
+		_changed_slots[index >> 6] |= 1L << index;
+		_frame_changed = true;
+		Thread t = Thread.currentThread();
+		if ( _writer != t ) {
+			_writer = t;
+		}
+	}
+
+	/**
+	 * record that a range of slots has changed
+	 * @param index zero based index of first changed slot
+	 * @param count number of changed slots
+	 */
+	public void markChanged(int index, int count) {
+		if ( count <= 0 ) {
+			return;
+		}
+		int last = index + count - 1;
+		int first_word = index >> 6;
+		int last_word = last >> 6;
+		long first_mask = -1L << index;
+		long last_mask = -1L >>> (63 - (last & 63));
+		if ( first_word == last_word ) {
+			_changed_slots[first_word] |= first_mask & last_mask;
+		} else {
+			_changed_slots[first_word] |= first_mask;
+			for (int i=first_word+1; i<last_word; i++) {
+				_changed_slots[i] = -1L;
+			}
+			_changed_slots[last_word] |= last_mask;
+		}
+		_frame_changed = true;
+		Thread t = Thread.currentThread();
+		if ( _writer != t ) {
+			_writer = t;
+		}
+	}
+
+	/**
+	 * copy a range of levels into a writer's working array, marking the changed slots
+	 * <p>Only the span between the first and last differing level is copied and marked.</p>
+	 * @param working array of levels belonging to the writer, indexed like the frame
+	 * @param index index in working of first level
+	 * @param data new levels
+	 * @param offset index of first level in data
+	 * @param length number of levels
+	 */
+	public void update(byte[] working, int index, byte[] data, int offset, int length) {
+		int first = 0;
+		while ( ( first < length ) && ( working[index+first] == data[offset+first] ) ) {
+			first++;
+		}
+		if ( first == length ) {
+			return;			// nothing changed
+		}
+		int last = length - 1;
+		while ( working[index+last] == data[offset+last] ) {
+			last--;
+		}
+		System.arraycopy(data, offset+first, working, index+first, last-first+1);
+		markChanged(index+first, last-first+1);
+	}
+
+	/**
+	 * copy a range of levels from the current position of a ByteBuffer into a writer's working array
+	 * @param working array of levels belonging to the writer, indexed like the frame
+	 * @param index index in working of first level
+	 * @param data new levels, position is advanced by length
+	 * @param length number of levels
+	 */
+	public void update(byte[] working, int index, ByteBuffer data, int length) {
+		if ( data.hasArray() ) {
+			int p = data.position();
+			update(working, index, data.array(), data.arrayOffset()+p, length);
+			data.position(p+length);
+		} else {
+			if ( _scratch == null ) {
+				_scratch = new byte[_frames[0].length];
+			}
+			data.get(_scratch, 0, length);
+			update(working, index, _scratch, 0, length);
+		}
+	}
+
+	/**
+	 * copy a range of int levels into a writer's working array, marking the changed slots
+	 * @param working array of levels belonging to the writer, indexed like the frame
+	 * @param index index in working of first level
+	 * @param data new levels 0-255
+	 * @param offset index of first level in data
+	 * @param length number of levels
+	 */
+	public void update(byte[] working, int index, int[] data, int offset, int length) {
+		for (int i=0; i<length; i++) {
+			byte b = (byte)data[offset+i];
+			if ( working[index+i] != b ) {
+				working[index+i] = b;
+				markChanged(index+i);
+			}
+		}
+	}
+
+	/**
+	 * set a range of a writer's working array to one level, marking the range as changed
+	 * @param working array of levels belonging to the writer, indexed like the frame
+	 * @param index index in working of first level
+	 * @param length number of levels
+	 * @param value the level
+	 */
+	public void fill(byte[] working, int index, int length, byte value) {
+		Arrays.fill(working, index, index+length, value);
+		markChanged(index, length);
+	}
+
+	/**
+	 * record that the whole frame has changed
+	 */
+	public void markFrameChanged() {
+		markChanged(0, _frames[0].length);
+	}
+
+	/**
+	 * @param index zero based index of slot in frame
+	 * @return true if the slot has changed since the last commit
+	 */
+	public boolean isSlotChanged(int index) {
+		return ( _changed_slots[index >> 6] & (1L << index) ) != 0;
+	}
+
+	/**
+	 * @return true if any slot has changed since the last commit
+	 */
+	public boolean isFrameChanged() {
+		return _frame_changed;
+	}
+
+	/**
+	 * @return true if no slot has been changed yet or the current thread made the last change
+	 */
+	public boolean isWriterThread() {
+		Thread w = _writer;
+		return ( w == null ) || ( w == Thread.currentThread() );
+	}
+	
+	/**
+	 * @return true if a frame has been published since the last snapshot
+	 */
+	public boolean hasNewFrame() {
+		return ( _published.get() & FRESH_FRAME ) != 0;
+	}
+
+	/**
+	 * latest published frame
+	 * <p>The returned array belongs to the sender until the next call to snapshot.</p>
+	 * @return dmx levels of the frame
+	 */
+	public byte[] snapshot() {
+		if ( ( _published.get() & FRESH_FRAME ) != 0 ) {
+			_read_index = _published.getAndSet(_read_index) & INDEX_MASK;
+		}
+		return _frames[_read_index];
+	}
+
+	/**
+	 * @return number of slots in the frame returned by the last snapshot
+	 */
+	public int snapshotLength() {
+		return _lengths[_read_index];
+	}
+}
@@ -11,6 +11,7 @@
 
 package lx4p;
 
+import java.nio.ByteBuffer;
 import processing.serial.*;
 import processing.core.*;
 
@@ -44,6 +45,10 @@ public class LXENTTEC extends LXDMXInterface  {
 	 * <p>Includes dmx start code.</p>
 	 */
 	byte[] _dmx_buffer = new byte[DMX_UNIVERSE_MAX+1];
+	/**
+	 * frames committed from dmx buffer for sending
+	 */
+	LXDMXUniverseBuffer _output_frames = new LXDMXUniverseBuffer(DMX_UNIVERSE_MAX+1);
 	/**
 	 * number of slots aka addresses or channels
 	 */
@@ -71,6 +76,40 @@ public class LXENTTEC extends LXDMXInterface  {
 	public int getSlot(int slot) {
 		return LXDMXEthernet.byte2int( _dmx_buffer[slot] );
 	}
+	
+	/**
+	 * copy the levels of consecutive slots into a byte array
+	 * @param slot first slot to read (1-512, 0 is start code)
+	 * @param data receives levels
+	 * @param offset index in data for first level
+	 * @param length number of slots to read
+	 */
+	public void getSlots(int slot, byte[] data, int offset, int length) {
+		System.arraycopy(_dmx_buffer, slot, data, offset, length);
+	}
+	
+	/**
+	 * copy the levels of consecutive slots into an int array
+	 * @param slot first slot to read (1-512, 0 is start code)
+	 * @param data receives levels 0-255
+	 * @param offset index in data for first level
+	 * @param length number of slots to read
+	 */
+	public void getSlots(int slot, int[] data, int offset, int length) {
+		for (int j=0; j<length; j++) {
+			data[offset+j] = LXDMXEthernet.byte2int(_dmx_buffer[slot+j]);
+		}
+	}
+	
+	/**
+	 * put the levels of consecutive slots into a ByteBuffer at its current position
+	 * @param slot first slot to read (1-512, 0 is start code)
+	 * @param data receives levels, position is advanced by length
+	 * @param length number of slots to read
+	 */
+	public void getSlots(int slot, ByteBuffer data, int length) {
+		data.put(_dmx_buffer, slot, length);
+	}
 
 	/**
 	 * set byte dmx level data in slot
@@ -78,7 +117,52 @@ public class LXENTTEC extends LXDMXInterface  {
 	 * @param value the level 0-255 for the slot (aka address or channel)
 	 */
 	public void setSlot(int slot, byte value) {
-		_dmx_buffer[slot] = value;
+		if ( _dmx_buffer[slot] != value ) {
+			_dmx_buffer[slot] = value;
+			_output_frames.markChanged(slot);
+		}
+	}
+	
+	/**
+	 * copy a range of levels into consecutive slots
+	 * @param slot first slot to set (1-512, 0 is start code)
+	 * @param data levels 0-255
+	 * @param offset index of first level in data
+	 * @param length number of slots to set
+	 */
+	public void setSlots(int slot, byte[] data, int offset, int length) {
+		_output_frames.update(_dmx_buffer, slot, data, offset, length);
+	}
+	
+	/**
+	 * copy a range of int levels into consecutive slots
+	 * @param slot first slot to set (1-512, 0 is start code)
+	 * @param data levels 0-255
+	 * @param offset index of first level in data
+	 * @param length number of slots to set
+	 */
+	public void setSlots(int slot, int[] data, int offset, int length) {
+		_output_frames.update(_dmx_buffer, slot, data, offset, length);
+	}
+	
+	/**
+	 * copy levels from the current position of a ByteBuffer into consecutive slots
+	 * @param slot first slot to set (1-512, 0 is start code)
+	 * @param data levels 0-255, position is advanced by length
+	 * @param length number of slots to set
+	 */
+	public void setSlots(int slot, ByteBuffer data, int length) {
+		_output_frames.update(_dmx_buffer, slot, data, length);
+	}
+	
+	/**
+	 * set a range of consecutive slots to the same level
+	 * @param slot first slot to set (1-512, 0 is start code)
+	 * @param length number of slots to set
+	 * @param value the level 0-255
+	 */
+	public void fillSlots(int slot, int length, byte value) {
+		_output_frames.fill(_dmx_buffer, slot, length, value);
 	}
 	
 	/**
@@ -90,6 +174,13 @@ public class LXENTTEC extends LXDMXInterface  {
 		setSlot(slot, (byte)value);
 	}
 	
+	/**
+	 * publish the levels in dmx buffer (including start code) as a complete frame for sending
+	 */
+	public void commitSlots() {
+		_output_frames.commit(_dmx_buffer, 0, _dmx_slots+1);
+	}
+	
 	/**
 	 * clears dmx data buffer
 	 */
@@ -97,6 +188,7 @@ public class LXENTTEC extends LXDMXInterface  {
 		for(int j=0; j<DMX_UNIVERSE_MAX+1; j++) {
 			_dmx_buffer[j] = 0;
 		}
+		_output_frames.markFrameChanged();
 	}
 	
 	/**
@@ -199,15 +291,20 @@ public class LXENTTEC extends LXDMXInterface  {
 	 * @param sPort An open serial port 
 	 */
 	public void sendDMX ( Serial sPort ) {
-		int dlen = _dmx_slots + 1;
+		if ( autoCommit(_output_frames) ) {
+			commitSlots();
+		}
+		if ( ! sendRequired(_output_frames.hasNewFrame()) ) {
+			return;				// unchanged and keep-alive interval has not passed
+		}
+		byte[] frame = _output_frames.snapshot();
+		int dlen = _output_frames.snapshotLength();	// includes start code
 		byte[] _buffer = new byte[dlen+5];
 		_buffer[0] = (byte) ENTTEC_START_PACKET;
 		_buffer[1] = (byte) ENTTEC_LABEL_SEND_DMX;
 		_buffer[2] = (byte)(dlen & 0xFF);
 		_buffer[3] = (byte)(dlen >> 8);
-		for (int j=0; j<dlen; j++) {
-			_buffer[4+j] = _dmx_buffer[j];
-		}
+		System.arraycopy(frame, 0, _buffer, 4, dlen);
 		_buffer[4+dlen] = (byte) ENTTEC_END_PACKET;
 		sPort.write(_buffer);
 	}
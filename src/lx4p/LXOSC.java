@@ -12,6 +12,8 @@
 package lx4p;
 
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 import java.util.*;
 
 
@@ -19,10 +21,14 @@ import java.util.*;
  * 
  * <p>LXOSC provides an interface for sending and receiving OSC 1.1 packets.</p>
  * 
+ * <p>Instead of polling with readPacket, an LXOSC object can be registered with an LXUDPReactor.
+ * Received messages are passed to the message listener if one is set.  Otherwise they are
+ * queued and returned by the next call to readPacket, which then does not block.</p>
+ * 
 */
 
 
-public class LXOSC  {
+public class LXOSC implements LXUDPPacketHandler  {
 
 	public static final int OSC_BUFFER_MAX = 1024;
 
@@ -34,6 +40,27 @@ public class LXOSC  {
 	DatagramSocket oscsocket = null;
 	
 	public InetAddress receivedFrom = null;
+	
+	/**
+	 * channel registered with an LXUDPReactor, used for sending if there is no socket
+	 */
+	DatagramChannel _channel = null;
+	/**
+	 * buffer for packets received from an LXUDPReactor
+	 */
+	byte[] _receive_buffer = new byte[OSC_BUFFER_MAX];
+	/**
+	 * messages received from an LXUDPReactor waiting for readPacket
+	 */
+	Vector<LXOSCMessage> _received_messages = new Vector<LXOSCMessage>();
+	/**
+	 * sender of the most recent queued messages
+	 */
+	InetAddress _received_messages_from = null;
+	/**
+	 * object notified of messages received from an LXUDPReactor
+	 */
+	LXOSCMessageListener _message_listener = null;
 
 	/**
 	 * construct LXOSC interface
@@ -49,6 +76,49 @@ public class LXOSC  {
 		oscsocket = sk;
 	}
 	
+	/**
+	 * Set the DatagramChannel registered with an LXUDPReactor, used for sending when there is no socket
+	 * @param ch DatagramChannel
+	 */
+	public void setDatagramChannel(DatagramChannel ch) {
+		_channel = ch;
+	}
+	
+	/**
+	 * sets the object notified when messages are received by way of an LXUDPReactor
+	 * @param l listener, called on the reactor thread, null to queue messages for readPacket
+	 */
+	public void setMessageListener(LXOSCMessageListener l) {
+		_message_listener = l;
+	}
+	
+	/**
+	 * called by an LXUDPReactor when a packet is received on a channel registered with this object
+	 */
+	public void packetReceived(LXUDPReactor reactor, DatagramChannel channel, ByteBuffer packet, InetSocketAddress sender) {
+		_channel = channel;
+		int length = Math.min(packet.remaining(), _receive_buffer.length);
+		packet.get(_receive_buffer, 0, length);
+		LXOSCPacketReader pr = new LXOSCPacketReader();
+		pr.parseBuffer(_receive_buffer, length);
+		if ( pr.results().size() > 0 ) {
+			if ( _message_listener != null ) {
+				_message_listener.oscMessagesReceived(this, pr.results(), sender.getAddress());
+			} else {
+				synchronized ( _received_messages ) {
+					_received_messages.addAll(pr.results());
+					_received_messages_from = sender.getAddress();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * called periodically by an LXUDPReactor
+	 */
+	public void reactorPeriodic(LXUDPReactor reactor) {
+	}
+	
 	/**
 	 * close the socket
 	 */
@@ -125,7 +195,13 @@ public class LXOSC  {
 	public Vector<LXOSCMessage> readPacket() {
 		LXOSCPacketReader pr = new LXOSCPacketReader();
 		receivedFrom = null;
-		if ( oscsocket != null ) {
+		if (( oscsocket == null ) && ( _channel != null )) {	// receiving from an LXUDPReactor
+			synchronized ( _received_messages ) {
+				pr.results().addAll(_received_messages);
+				_received_messages.clear();
+				receivedFrom = _received_messages_from;
+			}
+		} else if ( oscsocket != null ) {
 			DatagramPacket receivePacket = new DatagramPacket(_packet_buffer, _packet_buffer.length);
 			try {
 				oscsocket.receive(receivePacket);
@@ -164,21 +240,35 @@ public class LXOSC  {
 	 * @param port port number for sending packet
 	 */
 	public void sendOSC ( LXOSCMessage msg, InetAddress to_ip, int port ) {
-		if ( oscsocket != null ) {
+		if (( oscsocket != null ) || ( _channel != null )) {
 			int osc_packet_length = msg.addOSCMessageToBytes(_packet_buffer);
 			if ( osc_packet_length <= 0 ) {
 				return; // addOSCMessageToBytes returned error
 			}
 	
 			try {
-		  		DatagramPacket sendPacket = new DatagramPacket(_packet_buffer, osc_packet_length, to_ip, port);
-				oscsocket.send(sendPacket);
+				sendPacket(osc_packet_length, to_ip, port);
 			} catch ( Exception e) {
 				System.out.println("send osc exception " + e);
 			}
 		}
 	}
 	
+	/**
+	 * sends the contents of the packet buffer using oscsocket or the LXUDPReactor channel
+	 * @param length length of packet
+	 * @param to_ip InetAddress to which packet is sent
+	 * @param port port number for sending packet
+	 */
+	void sendPacket(int length, InetAddress to_ip, int port) throws java.io.IOException {
+		if ( oscsocket != null ) {
+			DatagramPacket sendPacket = new DatagramPacket(_packet_buffer, length, to_ip, port);
+			oscsocket.send(sendPacket);
+		} else {
+			LXUDPReactor.send(_channel, _packet_buffer, length, new InetSocketAddress(to_ip, port));
+		}
+	}
+	
 /***
  * Converts Java time to 64-bit NTP time representation.
  * This method is from https://commons.apache.org/proper/commons-net/apidocs/src-html/org/apache/commons/net/ntp/TimeStamp.html
@@ -208,7 +298,7 @@ public class LXOSC  {
 	}
 	
 	public void sendOSCBundle(Vector<LXOSCMessage> msgs, InetAddress to_ip, int port ) {
-		if ( oscsocket != null ) {
+		if (( oscsocket != null ) || ( _channel != null )) {
 			LXOSCBundleMessage bmsg = new LXOSCBundleMessage(msgs);
 			int msgsize = bmsg.addOSCMessageToBytes(_packet_buffer, 0);
 			if ( msgsize <= 0 ) {
@@ -257,8 +347,7 @@ public class LXOSC  {
 		   }*/
 		
 		   try {
-		  		DatagramPacket sendPacket = new DatagramPacket(_packet_buffer, msgsize, to_ip, port);
-				oscsocket.send(sendPacket);
+				sendPacket(msgsize, to_ip, port);
 			} catch ( Exception e) {
 				System.out.println("send osc exception " + e);
 			}
@@ -0,0 +1,36 @@
+/**
+ * Copyright (c) 2016 by Claude Heintz Design
+ *
+ * This file is part of a library called LXforProcessing - https://github.com/claudeheintz/LXforProcessing
+ * 
+ * LXforProcessing is free software: you can redistribute it and/or modify
+ * it under the terms of a BSD style license that should have been included with this file.
+ * If not, see https://www.claudeheintzdesign.com/lx/opensource.html.
+ * 
+*/
+
+package lx4p;
+
+import java.net.*;
+import java.util.*;
+
+/** LXOSCMessageListener
+ * 
+ * <p>LXOSCMessageListener is an interface for objects that want to be informed when
+ * an LXOSC object receiving from an LXUDPReactor has parsed a packet.</p>
+ * 
+ * <p>oscMessagesReceived is called on the reactor's thread.</p>
+*/
+
+
+public interface LXOSCMessageListener  {
+
+	/**
+	 * called after a received OSC packet has been parsed
+	 * @param osc LXOSC object that received the packet
+	 * @param messages messages contained in the packet
+	 * @param sender address of sender
+	 */
+	public void oscMessagesReceived(LXOSC osc, Vector<LXOSCMessage> messages, InetAddress sender);
+
+}
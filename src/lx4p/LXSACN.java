@@ -10,7 +10,11 @@
 
 package lx4p;
 
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.MembershipKey;
 import java.net.*;
+import java.util.*;
 
 /**
  * LXSACN.java
@@ -20,62 +24,187 @@ import java.net.*;
  * 
  * <p>sACN E 1.31 is a public standard published by the PLASA technical standards program<BR>
  * http://tsp.plasa.org/tsp/documents/published_docs.php</p>
+ * 
+ * <p>Instead of calling readPacket, an LXSACN object can be registered with an LXUDPReactor
+ * which receives packets on its own thread.</p>
+ * 
+ * <p>Universes 1-63999 are supported.  Any number of universes can be received by a single LXSACN object
+ * by subscribing to them with addUniverse.  Each subscribed universe has its own merge buffers and,
+ * if a multicast socket or channel is available, its multicast group (239.255.hi.lo) is joined
+ * and left as universes are added and removed.  Note that operating systems limit the number of groups
+ * a socket can join (on Linux see net.ipv4.igmp_max_memberships).</p>
+ * 
+ * <p>E1.31 synchronization is supported.  When a sync address is set, sent data packets carry it
+ * and sendUniverseSync tells receivers to output them together.  Received data packets with a sync address
+ * are held until the matching Universe Sync packet arrives, or merged immediately if no sync packet
+ * has been received for that address within LXDMXMerge.SYNC_TIMEOUT.</p>
+ * 
+ * <p>Packets with start code 0xDD carry per slot priorities.  They are passed to the merge,
+ * which then chooses the winning source for each slot.  Other alternate start codes are ignored.</p>
+ * 
+ * <p>When a sender closes it sends three packets with the stream terminated option.
+ * A receiver removes a source as soon as it sees that option rather than waiting for the source to time out.
+ * Packets marked as preview data can optionally be ignored.</p>
 */
-public class LXSACN extends LXDMXEthernet  {
+public class LXSACN extends LXDMXEthernet implements LXUDPPacketHandler  {
 	
 	public static final int SACN_PORT = 0x15C0;
 	public static final int SACN_BUFFER_MAX = 638;
 	public static final int SACN_CID_LENGTH = 16;
+	public static final int SACN_UNIVERSE_MIN = 1;
+	public static final int SACN_UNIVERSE_MAX = 63999;
+	/**
+	 * preamble size 0x0010 and post-amble size 0x0000 read as a big endian int
+	 */
+	public static final int SACN_PREAMBLE_INT = 0x00100000;
+	/**
+	 * first eight bytes of ACN packet identifier "ASC-E1.17\0\0\0" read as a big endian long
+	 */
+	public static final long SACN_ACN_ID_LONG = 0x4153432D45312E31L;
+	/**
+	 * last four bytes of ACN packet identifier read as a big endian int
+	 */
+	public static final int SACN_ACN_ID_INT = 0x37000000;
+	public static final int SACN_VECTOR_ROOT_E131_DATA = 0x04;
+	public static final int SACN_VECTOR_E131_DATA_PACKET = 0x02;
+	public static final int SACN_VECTOR_ROOT_E131_EXTENDED = 0x08;
+	public static final int SACN_VECTOR_E131_EXTENDED_SYNCHRONIZATION = 0x01;
+	public static final int SACN_SYNC_PACKET_SIZE = 49;
+	/**
+	 * alternate start code of packets carrying per slot priorities
+	 */
+	public static final int SACN_START_CODE_PRIORITY = 0xDD;
+	/**
+	 * framing layer option: data is for preview (visualization) only, not live output
+	 */
+	public static final int SACN_OPTION_PREVIEW = 0x80;
+	/**
+	 * framing layer option: the source has stopped sending this universe
+	 */
+	public static final int SACN_OPTION_STREAM_TERMINATED = 0x40;
+	/**
+	 * number of stream terminated packets sent when closing
+	 */
+	public static final int SACN_TERMINATE_PACKET_COUNT = 3;
 	
 	/**
-	 * buffer for reading and sending packets
+	 * buffer for reading packets
 	 */
 	byte[] _packet_buffer = new byte[SACN_BUFFER_MAX];
 	/**
-	 * buffer for dmx data for sending and received from first source
+	 * view of _packet_buffer for parsing packets received by readPacket
+	 */
+	ByteBuffer _packet_view = ByteBuffer.wrap(_packet_buffer);
+	/**
+	 * reusable DatagramPacket receiving into _packet_buffer, its length is reset before each receive
+	 */
+	DatagramPacket _receive_packet = new DatagramPacket(_packet_buffer, _packet_buffer.length);
+	/**
+	 * pre-encoded data packet for sending, separate from _packet_buffer so that packets
+	 * can be received on an LXUDPReactor thread while sending
+	 */
+	LXSACNPacket _data_packet = new LXSACNPacket(new byte[SACN_CID_LENGTH], "LXSACN", 1);
+	/**
+	 * buffer for dmx data for sending
 	 * <p>Includes dmx start code.</p>
 	 */
 	byte[] _dmx_buffer1 = new byte[DMX_UNIVERSE_MAX+1];
 	/**
-	 * dmx data received from second dmx source
-	 * * <p>Includes dmx start code.</p>
+	 * merges dmx data received from sACN sources by priority
+	 * <p>Includes dmx start code.</p>
 	 */
-	byte[] _dmx_buffer2 = new byte[DMX_UNIVERSE_MAX+1];
+	LXDMXMerge _merge = new LXDMXMerge(DMX_UNIVERSE_MAX+1);
 	/**
-	 * number of slots aka addresses or channels
+	 * frames committed from dmx buffer #1 for sending
 	 */
-	int _dmx_slots = DMX_UNIVERSE_MAX;
+	LXDMXUniverseBuffer _output_frames = new LXDMXUniverseBuffer(DMX_UNIVERSE_MAX+1);
 	/**
-	 * dmx universe 1-32767
+	 * number of slots aka addresses or channels
 	 */
-	byte _universe = 1;
+	int _dmx_slots = DMX_UNIVERSE_MAX;
 	/**
-	 * packet sequence number for sending
+	 * dmx universe 1-63999
 	 */
-	byte _sequence = 0;
+	int _universe = 1;
 	/**
 	 * multicast IPv4 address for sending packets
 	 * <p>sending socket must be configured for multicast to use this address</p>
 	 */
 	InetAddress _multicast_address = null;
 	/**
-	 * IPv4 address of first received dmx source
+	 *   priority of sent packets, 100=normal
 	 */
-	byte[]  _dmx_source1 = new byte[SACN_CID_LENGTH];
+	byte _priority = 100;
 	/**
-	 *   priority of first received dmx source, 100=normal
+	 * framing layer options of sent packets
 	 */
-	byte _priority1 = 100;
+	byte _options = 0;
 	/**
-	 * IPv4 address of second received dmx source
+	 * true once a data packet has been sent, so that close sends stream terminated packets
 	 */
-	byte[]  _dmx_source2 = new byte[SACN_CID_LENGTH];
+	boolean _has_sent = false;
 	/**
-	 *   priority of second received dmx source, 100=normal
+	 * if true, received packets with the preview option are ignored
 	 */
-	byte _priority2 = 0;
+	boolean _ignore_preview = false;
+	/**
+	 * time of next check for sources that have stopped sending
+	 */
+	long _next_timeout_check = 0;
+	
 	/**
-	 *   array representing UUID for sending DMX (not persistent between launches)
+	 * synchronization address (universe) placed in sent data packets, zero for none
+	 */
+	int _sync_address = 0;
+	/**
+	 * sequence number for sending Universe Sync packets
+	 */
+	byte _sync_sequence = 0;
+	/**
+	 * buffer for sending Universe Sync packets
+	 */
+	byte[] _sync_buffer = new byte[SACN_SYNC_PACKET_SIZE];
+	/**
+	 * reusable DatagramPacket wrapping _sync_buffer, its address is set when the destination changes
+	 */
+	DatagramPacket _sync_packet = new DatagramPacket(_sync_buffer, SACN_SYNC_PACKET_SIZE);
+	/**
+	 * synchronization addresses whose multicast groups have been joined
+	 */
+	HashSet<Integer> _sync_groups = new HashSet<Integer>();
+	
+	/**
+	 * table of subscribed universes indexed by universe number
+	 * <p>null unless multi-universe receive mode is used</p>
+	 */
+	LXDMXUniverse[] _universe_table = null;
+	/**
+	 * the subscribed universes in the order they were added
+	 */
+	LXDMXUniverse[] _universe_list = new LXDMXUniverse[0];
+	/**
+	 * universe number of the last accepted dmx packet
+	 */
+	int _last_universe = -1;
+	/**
+	 * merge that accepted the last dmx packet (_merge or a subscribed universe)
+	 */
+	LXDMXMerge _last_merge = _merge;
+	/**
+	 * network interface used to join multicast groups of subscribed universes
+	 */
+	NetworkInterface _multicast_interface = null;
+	/**
+	 * channel used to join multicast groups, null if dmxsocket is used
+	 */
+	DatagramChannel _multicast_channel = null;
+	/**
+	 * memberships of _multicast_channel by universe number
+	 */
+	HashMap<Integer, MembershipKey> _memberships = new HashMap<Integer, MembershipKey>();
+	/**
+	 *   array representing UUID for sending DMX
+	 *   <p>random for each object unless set with setCID or setPersistentIdentity</p>
 	 */
 	byte[] my_cid = new byte[SACN_CID_LENGTH];
 	
@@ -85,12 +214,8 @@ public class LXSACN extends LXDMXEthernet  {
 	public LXSACN() {
 		for (int n=0; n<SACN_BUFFER_MAX; n++) {
 			_packet_buffer[n] = 0;
-			if ( n < SACN_CID_LENGTH ) {
-				_dmx_source1[n] = 0;
-				_dmx_source2[n] = 0;
-				my_cid[n] = 0;
-			}
 		}
+		setCID(LXSACNIdentityStore.randomCID());
 		clearSlots();
 	}
 	
@@ -103,12 +228,8 @@ public class LXSACN extends LXDMXEthernet  {
 	public LXSACN(InetAddress maddr) {
 		for (int n=0; n<SACN_BUFFER_MAX; n++) {
 			_packet_buffer[n] = 0;
-			if ( n < SACN_CID_LENGTH ) {
-				_dmx_source1[n] = 0;
-				_dmx_source2[n] = 0;
-				my_cid[n] = 0;
-			}
 		}
+		setCID(LXSACNIdentityStore.randomCID());
 		clearSlots();
 		setMulticastAddress(maddr);
 	}
@@ -121,27 +242,59 @@ public class LXSACN extends LXDMXEthernet  {
 		return SACN_PORT;
 	}
 	
+	/**
+	 * levels to read from
+	 * @return merged received levels once dmx has been received, otherwise dmx buffer #1
+	 */
+	byte[] inputLevels() {
+		if ( _merge.isActive() ) {
+			return _merge.mergedData();
+		}
+		return _dmx_buffer1;
+	}
+	
 	/**
 	 * dmx level data in slot
 	 * @param slot the address or channel of the data (1-512)
 	 * @return the level 0-255 for the slot (aka address or channel)
 	 */
 	public int getSlot(int slot) {
-		// decide which value to return if more than one source
-		if ( _priority2 != 0 ) {
-			// _dmx_source2 is set when a packet is received with a second, different source string
-			if ( _priority2 > _priority1 ) {				// return slot from dmx buffer #2 if _priority2 is greater
-				return byte2int( _dmx_buffer2[slot] );
-			} else if ( _priority2 == _priority1 ) {	    // merge output HTP if priorities are equal
-				int b1 = byte2int( _dmx_buffer1[slot] );
-				int b2 = byte2int( _dmx_buffer2[slot] );
-				if ( b1 > b2 ) {
-					return b1;
-				}
-				return b2;
-			}
+		return byte2int( inputLevels()[slot] );
+	}
+	
+	/**
+	 * copy the levels of consecutive slots into a byte array
+	 * @param slot first slot to read (1-512, 0 is start code)
+	 * @param data receives levels
+	 * @param offset index in data for first level
+	 * @param length number of slots to read
+	 */
+	public void getSlots(int slot, byte[] data, int offset, int length) {
+		System.arraycopy(inputLevels(), slot, data, offset, length);
+	}
+	
+	/**
+	 * copy the levels of consecutive slots into an int array
+	 * @param slot first slot to read (1-512, 0 is start code)
+	 * @param data receives levels 0-255
+	 * @param offset index in data for first level
+	 * @param length number of slots to read
+	 */
+	public void getSlots(int slot, int[] data, int offset, int length) {
+		byte[] levels = inputLevels();
+		for (int j=0; j<length; j++) {
+			data[offset+j] = byte2int(levels[slot+j]);
 		}
-		return byte2int( _dmx_buffer1[slot] );		// otherwise return slot from dmx buffer #1
+	}
+	
+	/**
+	 * put the levels of consecutive slots into a ByteBuffer at its current position
+	 * @param slot first slot to read (1-512, 0 is start code)
+	 * @param data receives levels, position is advanced by length
+	 * @param length number of slots to read
+	 */
+	public void getSlots(int slot, ByteBuffer data, int length) {
+		data.put(inputLevels(), slot, length);
 	}
 
 	/**
@@ -151,17 +304,70 @@ public class LXSACN extends LXDMXEthernet  {
 	 * @param value the level 0-255 for the slot (aka address or channel)
 	 */
 	public void setSlot(int slot, byte value) {
-		_dmx_buffer1[slot] = value;
+		if ( _dmx_buffer1[slot] != value ) {
+			_dmx_buffer1[slot] = value;
+			_output_frames.markChanged(slot);
+		}
+	}
+	
+	/**
+	 * copy a range of levels into consecutive slots
+	 * @param slot first slot to set (1-512, 0 is start code)
+	 * @param data levels 0-255
+	 * @param offset index of first level in data
+	 * @param length number of slots to set
+	 */
+	public void setSlots(int slot, byte[] data, int offset, int length) {
+		_output_frames.update(_dmx_buffer1, slot, data, offset, length);
+	}
+	
+	/**
+	 * copy a range of int levels into consecutive slots
+	 * @param slot first slot to set (1-512, 0 is start code)
+	 * @param data levels 0-255
+	 * @param offset index of first level in data
+	 * @param length number of slots to set
+	 */
+	public void setSlots(int slot, int[] data, int offset, int length) {
+		_output_frames.update(_dmx_buffer1, slot, data, offset, length);
+	}
+	
+	/**
+	 * copy levels from the current position of a ByteBuffer into consecutive slots
+	 * @param slot first slot to set (1-512, 0 is start code)
+	 * @param data levels 0-255, position is advanced by length
+	 * @param length number of slots to set
+	 */
+	public void setSlots(int slot, ByteBuffer data, int length) {
+		_output_frames.update(_dmx_buffer1, slot, data, length);
+	}
+	
+	/**
+	 * set a range of consecutive slots to the same level
+	 * @param slot first slot to set (1-512, 0 is start code)
+	 * @param length number of slots to set
+	 * @param value the level 0-255
+	 */
+	public void fillSlots(int slot, int length, byte value) {
+		_output_frames.fill(_dmx_buffer1, slot, length, value);
 	}
 	
 	/**
-	 * clears both dmx data buffers
+	 * publish the levels in dmx buffer #1 (including start code) as a complete frame for sending
+	 */
+	public void commitSlots() {
+		_output_frames.commit(_dmx_buffer1, 0, _dmx_slots);
+	}
+	
+	/**
+	 * clears dmx data buffer and received levels
 	 */
 	public void clearSlots() {
+		_merge.clear();
 		for(int j=0; j<DMX_UNIVERSE_MAX+1; j++) {
 			_dmx_buffer1[j] = 0;
-			_dmx_buffer2[j] = 0;
 		}
+		_output_frames.markFrameChanged();
 	}
 	
 	/**
@@ -187,17 +393,36 @@ public class LXSACN extends LXDMXEthernet  {
 	 * @return the dmx universe
 	 */
 	public int getUniverse() {
-		return byte2int(_universe);
+		return _universe;
 	}
 	
 	/**
 	 * set dmx universe
 	 * <p>Each dmx stream of up to 512 slots/addresses/channels is called a universe.<BR>
 	 * Universe numbers vary by protocol.  The first universe in zero for Art-Net and one for sACN</p>
-	 * @param u the dmx universe
+	 * @param u the dmx universe 1-63999
 	 */
 	public void setUniverse(int u) {
-		_universe = (byte) u;
+		_universe = u;
+		_data_packet.setUniverse(u);
+	}
+	
+	/**
+	 * sets the synchronization address placed in sent data packets
+	 * <p>Receivers hold packets with a sync address until a Universe Sync packet for that address is sent
+	 * with sendUniverseSync.</p>
+	 * @param a synchronization universe 1-63999 or zero for unsynchronized output
+	 */
+	public void setSyncAddress(int a) {
+		_sync_address = a;
+		_data_packet.setSyncAddress(a);
+	}
+	
+	/**
+	 * @return synchronization address placed in sent data packets, zero for none
+	 */
+	public int getSyncAddress() {
+		return _sync_address;
 	}
 	
 	/**
@@ -221,7 +446,7 @@ public class LXSACN extends LXDMXEthernet  {
 	 * @return priority of packet (100=normal)
 	 */
 	public int packetPriorty() {
-		return _priority1;
+		return _priority;
 	}
 	
 	/**
@@ -229,11 +454,49 @@ public class LXSACN extends LXDMXEthernet  {
 	 * @param p priority of packet (100=normal)
 	 */
 	public void setPacketPriority(int p) {
-		_priority1 = (byte) p;
+		_priority = (byte) p;
+		_data_packet.setPriority(_priority);
+	}
+	
+	/**
+	 * set the source name of sent packets
+	 * @param name up to 63 bytes (default "LXSACN")
+	 */
+	public void setSourceName(String name) {
+		_data_packet.setSourceName(name);
+	}
+	
+	/**
+	 * sets the CID of sent packets
+	 * @param cid 16 byte CID, see LXSACNIdentityStore
+	 */
+	public void setCID(byte[] cid) {
+		System.arraycopy(cid, 0, my_cid, 0, SACN_CID_LENGTH);
+		_data_packet.setCID(my_cid);
+	}
+	
+	/**
+	 * sets the source name and a CID that stays the same on every launch
+	 * <p>The CID is kept in LXSACNIdentityStore.defaultStore under the source name, so each sender
+	 * must use a different name.  Two objects using the same name are one source to receivers.</p>
+	 * @param name source name of this sender, up to 63 bytes
+	 */
+	public void setPersistentIdentity(String name) {
+		setSourceName(name);
+		setCID(LXSACNIdentityStore.defaultStore().cidForName(name));
+	}
+	
+	/**
+	 * @return copy of the CID of sent packets
+	 */
+	public byte[] getCID() {
+		return my_cid.clone();
 	}
 	
 	/**
 	 * sets the CID based on the hardware MAC address
+	 * <p>Every object created this way on one host has the same CID, so receivers merge them as one source.
+	 * Prefer setCID with a CID from LXSACNIdentityStore.</p>
 	 * @param mac byte array representing the hardware MAC address
 	 */
 	public void setCIDwithMACAddress(byte[] mac) {
@@ -253,6 +516,234 @@ public class LXSACN extends LXDMXEthernet  {
 		my_cid[13] = 'i';
 		my_cid[14] = 'n';
 		my_cid[15] = 'g';
+		_data_packet.setCID(my_cid);
+	}
+	
+	/**
+	 * sets the maximum number of sources merged for received dmx
+	 * @param max number of sources
+	 */
+	public void setMaxMergeSources(int max) {
+		_merge.setMaxSources(max);
+		for (int i=0; i<_universe_list.length; i++) {
+			_universe_list[i].setMaxSources(max);
+		}
+	}
+	
+	/**
+	 * sets how received sources with the same priority are merged
+	 * @param m LXDMXMerge.MERGE_HTP or LXDMXMerge.MERGE_LTP
+	 */
+	public void setMergeMode(int m) {
+		_merge.setMergeMode(m);
+		for (int i=0; i<_universe_list.length; i++) {
+			_universe_list[i].setMergeMode(m);
+		}
+	}
+	
+	/**
+	 * sets the time after which a source that has stopped sending is removed from the merge
+	 * @param ms milliseconds, zero to never remove sources
+	 */
+	public void setSourceTimeout(int ms) {
+		_merge.setSourceTimeout(ms);
+		for (int i=0; i<_universe_list.length; i++) {
+			_universe_list[i].setSourceTimeout(ms);
+		}
+	}
+	
+	/**
+	 * sets the object notified when a source is removed from the merge after timing out
+	 * @param l listener
+	 */
+	public void setSourceLossListener(LXDMXSourceLossListener l) {
+		_merge.setSourceLossListener(l);
+		for (int i=0; i<_universe_list.length; i++) {
+			_universe_list[i].setSourceLossListener(l);
+		}
+	}
+	
+	/**
+	 * removes sources that have stopped sending
+	 * <p>Called by readPacket.  Checks are limited to ten per second.</p>
+	 */
+	public void checkSourceTimeouts() {
+		long now = LXDMXMerge.currentTime();
+		if ( now >= _next_timeout_check ) {
+			_next_timeout_check = now + 100;
+			_merge.removeExpiredSources(now);
+			for (int i=0; i<_universe_list.length; i++) {
+				_universe_list[i].removeExpiredSources(now);
+			}
+		}
+	}
+	
+	/**
+	 * utility to find the multicast group of a universe
+	 * @param u universe 1-63999
+	 * @return 239.255.hi.lo or null
+	 */
+	public static InetAddress multicastAddressForUniverse(int u) {
+		byte[] addr = new byte[4];
+		addr[0] = (byte)239;
+		addr[1] = (byte)255;
+		addr[2] = (byte)(u >> 8);
+		addr[3] = (byte)(u & 0xff);
+		try {
+			return InetAddress.getByAddress(addr);
+		} catch (UnknownHostException e) {
+		}
+		return null;
+	}
+	
+	/**
+	 * sets the network interface used to join the multicast groups of subscribed universes using dmxsocket
+	 * <p>dmxsocket must be a MulticastSocket for groups to be joined.</p>
+	 * @param nic network interface, null for default
+	 */
+	public void setMulticastInterface(NetworkInterface nic) {
+		_multicast_interface = nic;
+	}
+	
+	/**
+	 * sets a channel used to join the multicast groups of subscribed universes
+	 * <p>Use with a channel bound to SACN_PORT and registered with an LXUDPReactor.
+	 * Groups of universes already subscribed are joined.</p>
+	 * @param ch DatagramChannel
+	 * @param nic network interface, null for the first multicast capable interface
+	 */
+	public void setMulticastChannel(DatagramChannel ch, NetworkInterface nic) {
+		_multicast_channel = ch;
+		_multicast_interface = nic;
+		for (int i=0; i<_universe_list.length; i++) {
+			joinUniverseGroup(_universe_list[i].getUniverse());
+		}
+	}
+	
+	/**
+	 * subscribe to a universe in multi-universe receive mode
+	 * <p>Packets for any subscribed universe are accepted by a single LXSACN object
+	 * and stored in that universe's own merge buffers.  The universe's multicast group is joined.</p>
+	 * @param u universe 1-63999
+	 * @return universe object holding the received data or null if u is out of range
+	 */
+	public LXDMXUniverse addUniverse(int u) {
+		if (( u < SACN_UNIVERSE_MIN ) || ( u > SACN_UNIVERSE_MAX )) {
+			return null;
+		}
+		if ( _universe_table == null ) {
+			_universe_table = new LXDMXUniverse[SACN_UNIVERSE_MAX+1];
+		}
+		if ( _universe_table[u] == null ) {
+			LXDMXUniverse nu = new LXDMXUniverse(u, true);
+			nu.setMaxSources(_merge.getMaxSources());
+			nu.setMergeMode(_merge.getMergeMode());
+			nu.setSourceTimeout(_merge.getSourceTimeout());
+			nu.setSourceLossListener(_merge._loss_listener);
+			_universe_table[u] = nu;
+			LXDMXUniverse[] nl = new LXDMXUniverse[_universe_list.length+1];
+			System.arraycopy(_universe_list, 0, nl, 0, _universe_list.length);
+			nl[_universe_list.length] = nu;
+			_universe_list = nl;
+			joinUniverseGroup(u);
+		}
+		return _universe_table[u];
+	}
+	
+	/**
+	 * unsubscribe from a universe in multi-universe receive mode, leaving its multicast group
+	 * @param u universe 1-63999
+	 */
+	public void removeUniverse(int u) {
+		LXDMXUniverse ou = getDMXUniverse(u);
+		if ( ou != null ) {
+			_universe_table[u] = null;
+			LXDMXUniverse[] nl = new LXDMXUniverse[_universe_list.length-1];
+			int n = 0;
+			for (int i=0; i<_universe_list.length; i++) {
+				if ( _universe_list[i] != ou ) {
+					nl[n++] = _universe_list[i];
+				}
+			}
+			_universe_list = nl;
+			leaveUniverseGroup(u);
+		}
+	}
+	
+	/**
+	 * @param u universe 1-63999
+	 * @return subscribed universe object or null if the universe is not subscribed
+	 */
+	public LXDMXUniverse getDMXUniverse(int u) {
+		if (( _universe_table != null ) && ( u >= 0 ) && ( u <= SACN_UNIVERSE_MAX )) {
+			return _universe_table[u];
+		}
+		return null;
+	}
+	
+	/**
+	 * dmx level data in slot of a subscribed universe
+	 * @param u universe 1-63999
+	 * @param slot the address or channel of the data (1-512)
+	 * @return the level 0-255 for the slot or zero if the universe is not subscribed
+	 */
+	public int getSlot(int u, int slot) {
+		LXDMXUniverse du = getDMXUniverse(u);
+		if ( du != null ) {
+			return du.getSlot(slot);
+		}
+		return 0;
+	}
+	
+	/**
+	 * universe of the most recent dmx packet accepted
+	 * <p>Use after readPacket returns true to find which universe changed.
+	 * After a Universe Sync packet merges held frames this is the sync address.</p>
+	 * @return universe number or -1
+	 */
+	public int lastReceivedUniverse() {
+		return _last_universe;
+	}
+	
+	/**
+	 * join the multicast group of a universe using the multicast channel or dmxsocket
+	 * @param u universe
+	 */
+	void joinUniverseGroup(int u) {
+		try {
+			InetAddress group = multicastAddressForUniverse(u);
+			if ( _multicast_channel != null ) {
+				if ( ! _memberships.containsKey(u) ) {
+					NetworkInterface nic = _multicast_interface;
+					if ( nic == null ) {
+						nic = LXUDPReactor.networkInterfaceForAddress(null);
+					}
+					_memberships.put(u, _multicast_channel.join(group, nic));
+				}
+			} else if ( dmxsocket instanceof MulticastSocket ) {
+				((MulticastSocket)dmxsocket).joinGroup(new InetSocketAddress(group, SACN_PORT), _multicast_interface);
+			}
+		} catch (Exception e) {
+			System.out.println("join universe " + u + " exception " + e);
+		}
+	}
+	
+	/**
+	 * leave the multicast group of a universe
+	 * @param u universe
+	 */
+	void leaveUniverseGroup(int u) {
+		try {
+			MembershipKey key = _memberships.remove(u);
+			if ( key != null ) {
+				key.drop();
+			} else if (( _multicast_channel == null ) && ( dmxsocket instanceof MulticastSocket )) {
+				InetAddress group = multicastAddressForUniverse(u);
+				((MulticastSocket)dmxsocket).leaveGroup(new InetSocketAddress(group, SACN_PORT), _multicast_interface);
+			}
+		} catch (Exception e) {
+			System.out.println("leave universe " + u + " exception " + e);
+		}
 	}
 	
 	/**
@@ -271,17 +762,18 @@ public class LXSACN extends LXDMXEthernet  {
 	 */
 	public boolean readPacket(DatagramSocket socket) {
 		boolean good_dmx = false;
-		// setup a DatagramPacket.  Note that _packet_buffer is the storage for the receivePacket
-		DatagramPacket receivePacket = new DatagramPacket(_packet_buffer, _packet_buffer.length);
+		// _packet_buffer is the storage for _receive_packet, a previous receive may have shortened its length
+		_receive_packet.setLength(_packet_buffer.length);
 		try {
-			socket.receive(receivePacket);
-			if ( processDatagramPacket(socket, receivePacket) ) {
-				good_dmx = ( getStartCode() == 0 );
+			socket.receive(_receive_packet);
+			if ( processDatagramPacket(socket, _receive_packet) ) {
+				good_dmx = ( _last_merge.getLevel(0) == 0 );		// start code of accepted packet
 			}
 		} catch ( Exception e) {
 			//   will catch receive time out exception
 			System.out.println("receive exception " + e);
 		}
+		checkSourceTimeouts();
       return good_dmx;
 	}
 	
@@ -293,7 +785,10 @@ public class LXSACN extends LXDMXEthernet  {
 	 */
 	public boolean processDatagramPacket(DatagramSocket socket, DatagramPacket receivePacket) {
 		boolean good_dmx = false;
-		int receivedDataLength = receivePacket.getLength();
+		int receivedDataLength = Math.min(receivePacket.getLength(), _packet_buffer.length);
+		if ( receivePacket.getData() != _packet_buffer ) {
+			System.arraycopy(receivePacket.getData(), receivePacket.getOffset(), _packet_buffer, 0, receivedDataLength);
+		}
 		
 		if ( receivedDataLength > 0 ) {
 			good_dmx = parseRootLayer(receivedDataLength);
@@ -302,6 +797,25 @@ public class LXSACN extends LXDMXEthernet  {
 		return good_dmx;
 	}
 	
+	/**
+	 * called by an LXUDPReactor when a packet is received on a channel registered with this object
+	 * <p>The packet is parsed and its levels merged directly from the reactor's buffer.</p>
+	 */
+	public void packetReceived(LXUDPReactor reactor, DatagramChannel channel, ByteBuffer packet, InetSocketAddress sender) {
+		if ( parseRootLayer(packet) ) {
+			if ( _receive_listener != null ) {
+				_receive_listener.dmxReceived(this, _last_universe);
+			}
+		}
+	}
+	
+	/**
+	 * called periodically by an LXUDPReactor to remove sources that have stopped sending
+	 */
+	public void reactorPeriodic(LXUDPReactor reactor) {
+		checkSourceTimeouts();
+	}
+	
 	/**
 	 * Sends sACN E1.31 DMX packet to address using socket.
 	 * <p>Assumes that the socket is already setup for the type of address unicast/multicast.</p>
@@ -309,72 +823,83 @@ public class LXSACN extends LXDMXEthernet  {
 	 * @param to_ip address to which packet is sent.
 	 */
 	public void sendDMX ( DatagramSocket socket, InetAddress to_ip ) {
-		for (int n=0; n<126; n++) {
-			_packet_buffer[n] = 0;		// zero outside layers & start code
-		 }
-		// ----- root layer -----
-		_packet_buffer[1] = (byte) 0x10;
-		_packet_buffer[4] = 'A';
-		_packet_buffer[5] = 'S';
-		_packet_buffer[6] = 'C';
-		_packet_buffer[7] = '-';
-		_packet_buffer[8] = 'E';
-		_packet_buffer[9] = '1';
-		_packet_buffer[10] = '.';
-		_packet_buffer[11] = '1';
-		_packet_buffer[12] = '7';
-		int fplusl = _dmx_slots + 109 + 0x7000;
-		_packet_buffer[16] = (byte)(fplusl >> 8);
-		_packet_buffer[17] = (byte)(fplusl & 0xff);
-		_packet_buffer[21] = (byte)(0x04);			// ACN vector
-		for(int i =0; i<my_cid.length; i++) {
-			_packet_buffer[22+i] = my_cid[i];
+		if ( autoCommit(_output_frames) ) {
+			commitSlots();
 		}
-		// ----- framing layer -----
-		fplusl = _dmx_slots + 87 + 0x7000;
-		_packet_buffer[38] = (byte)(fplusl >> 8);
-		_packet_buffer[39] = (byte)(fplusl & 0xff);
-		_packet_buffer[43] = (byte)(0x02);			// ACN vector
-		_packet_buffer[44] = 'L';
-		_packet_buffer[45] = 'X';
-		_packet_buffer[46] = 'S';
-		_packet_buffer[47] = 'A';
-		_packet_buffer[48] = 'C';
-		_packet_buffer[49] = 'N';
-		_packet_buffer[108] = _priority1;
-		if ( _sequence == 0 ) {
-			_sequence = 1;
-		} else {
-			_sequence++;
-		}
-		_packet_buffer[111] = _sequence;
-		_packet_buffer[113] = 0;	//_universe >> 8
-		_packet_buffer[114] = _universe;
-		// ----- dmp layer -----
-		fplusl = _dmx_slots + 10 + 0x7000;
-		_packet_buffer[115] = (byte)(fplusl >> 8);
-		_packet_buffer[116] = (byte)(fplusl & 0xff);
-		_packet_buffer[117] = (byte)0x02;			// ACN vector
-		_packet_buffer[118] = (byte)0xa1;			// address and data type
-		_packet_buffer[122] = (byte)0x01;			// address increment
-		fplusl = _dmx_slots;                        // _dmx_slots includes 1 for start code 1-513
-		_packet_buffer[123] = (byte)(fplusl >> 8);
-		_packet_buffer[124] = (byte)(fplusl & 0xFF);
-
-		// write from dmx buffer #1 to packet buffer for output
-		// (setSlot puts values into dmx buffer #1)
-		for(int j=0; j<_dmx_slots; j++)  {
-			_packet_buffer[125+j] = _dmx_buffer1[j];
-  		}
-		
-  		DatagramPacket sendPacket = new DatagramPacket(_packet_buffer, 125+_dmx_slots, to_ip, SACN_PORT);
+		if ( ! sendRequired(_output_frames.hasNewFrame()) ) {
+			return;				// unchanged and keep-alive interval has not passed
+		}
+		byte[] frame = _output_frames.snapshot();
+		int frame_slots = _output_frames.snapshotLength();	// includes 1 for start code
+		sendDataPacket(socket, to_ip, frame, frame_slots, _options);
+	}
+	
+	/**
+	 * sends one data packet
+	 * @param socket Open and configured socket used to send the packet.
+	 * @param to_ip address to which packet is sent.
+	 * @param frame levels including start code
+	 * @param frame_slots number of levels in frame including start code
+	 * @param options framing layer options
+	 */
+	void sendDataPacket ( DatagramSocket socket, InetAddress to_ip, byte[] frame, int frame_slots, byte options ) {
+		LXSACNPacket packet = _data_packet;
+		packet.setOptions(options);
+		// header was encoded when configured, only sequence, lengths and levels are written here
+		packet.setFrame(frame, 0, frame_slots);
 		try {
-			socket.send(sendPacket);
+			socket.send(packet.datagram(to_ip, SACN_PORT));
+			_has_sent = true;
 		} catch ( Exception e) {
 			System.out.println("send dmx exception " + e);
 		}
 	}
 	
+	/**
+	 * tells receivers that this source has stopped sending the universe
+	 * <p>Sends SACN_TERMINATE_PACKET_COUNT packets with the stream terminated option and the last sent levels.</p>
+	 * @param socket Open and configured socket used to send the packets.
+	 * @param to_ip address to which packets are sent.
+	 */
+	public void sendStreamTerminated ( DatagramSocket socket, InetAddress to_ip ) {
+		byte[] frame = _output_frames.snapshot();
+		int frame_slots = _output_frames.snapshotLength();
+		byte options = (byte)(_options | SACN_OPTION_STREAM_TERMINATED);
+		for (int i=0; i<SACN_TERMINATE_PACKET_COUNT; i++) {
+			sendDataPacket(socket, to_ip, frame, frame_slots, options);
+		}
+		_has_sent = false;
+	}
+	
+	/**
+	 * marks sent data as preview (visualization) only
+	 * @param preview if true, sent packets have the preview option
+	 */
+	public void setPreviewData(boolean preview) {
+		if ( preview ) {
+			_options |= SACN_OPTION_PREVIEW;
+		} else {
+			_options &= ~SACN_OPTION_PREVIEW;
+		}
+	}
+	
+	/**
+	 * @param ignore if true, received packets marked as preview data are ignored
+	 */
+	public void setIgnorePreviewData(boolean ignore) {
+		_ignore_preview = ignore;
+	}
+	
+	/**
+	 * sends stream terminated packets if data has been sent to the multicast address, then closes the socket
+	 */
+	public void close() {
+		if (( dmxsocket != null ) && _has_sent && ( _multicast_address != null )) {
+			sendStreamTerminated(dmxsocket, _multicast_address);
+		}
+		super.close();
+	}
+	
 	/**
 	 * Sends sACN E1.31 DMX packet to member variable multicast address using socket.
 	 * <p>Assumes that the socket is already setup for the type of address (unicast or multicast).</p>
@@ -387,26 +912,160 @@ public class LXSACN extends LXDMXEthernet  {
 		}
 	}
 	
+	/**
+	 * Sends an E1.31 Universe Sync packet for the sync address to address using socket.
+	 * @param socket Open and configured socket used to send the packet.
+	 * @param to_ip address to which packet is sent.
+	 */
+	public void sendUniverseSync ( DatagramSocket socket, InetAddress to_ip ) {
+		if ( _sync_address == 0 ) {
+			return;
+		}
+		if ( _sync_sequence == 0 ) {
+			_sync_sequence = 1;
+		} else {
+			_sync_sequence++;
+		}
+		encodeUniverseSync(_sync_buffer, my_cid, _sync_sequence, _sync_address);
+		
+		if ( _sync_packet.getAddress() != to_ip ) {
+			_sync_packet.setAddress(to_ip);
+			_sync_packet.setPort(SACN_PORT);
+		}
+		try {
+			socket.send(_sync_packet);
+		} catch ( Exception e) {
+			System.out.println("send sync exception " + e);
+		}
+	}
+	
+	/**
+	 * writes an E1.31 Universe Sync packet
+	 * @param buffer receives packet, at least SACN_SYNC_PACKET_SIZE bytes
+	 * @param cid CID of sender
+	 * @param sequence sequence number of packet
+	 * @param syncAddress synchronization address 1-63999
+	 */
+	static void encodeUniverseSync(byte[] buffer, byte[] cid, byte sequence, int syncAddress) {
+		// ----- root layer -----
+		buffer[1] = (byte) 0x10;
+		LXDMXEthernet.setStringInByteArray("ASC-E1.17", buffer, 4, true);
+		int fplusl = SACN_SYNC_PACKET_SIZE - 16 + 0x7000;
+		buffer[16] = (byte)(fplusl >> 8);
+		buffer[17] = (byte)(fplusl & 0xff);
+		buffer[21] = (byte)SACN_VECTOR_ROOT_E131_EXTENDED;
+		System.arraycopy(cid, 0, buffer, 22, SACN_CID_LENGTH);
+		// ----- framing layer -----
+		fplusl = SACN_SYNC_PACKET_SIZE - 38 + 0x7000;
+		buffer[38] = (byte)(fplusl >> 8);
+		buffer[39] = (byte)(fplusl & 0xff);
+		buffer[43] = (byte)SACN_VECTOR_E131_EXTENDED_SYNCHRONIZATION;
+		buffer[44] = sequence;
+		buffer[45] = (byte)(syncAddress >> 8);
+		buffer[46] = (byte)(syncAddress & 0xff);
+	}
+	
+	/**
+	 * Sends an E1.31 Universe Sync packet to the multicast address of the sync address.
+	 * <p>Call after sending the data packets of every synchronized universe.</p>
+	 * @param socket Open and configured socket used to send the packet.
+	 */
+	public void sendUniverseSync ( DatagramSocket socket ) {
+		if ( _sync_address != 0 ) {
+			sendUniverseSync(socket, multicastAddressForUniverse(_sync_address));
+		}
+	}
+	
+	/**
+	 * Sends an E1.31 Universe Sync packet using dmxsocket
+	 */
+	public void sendSynchronization() {
+		if ( dmxsocket != null ) {
+			sendUniverseSync(dmxsocket);
+		}
+	}
+	
 	/**
 	 * parses packet and checks root layer data
 	 * @param size received data length
 	 * @return true if packet contains dmx output
 	 */
 	public boolean parseRootLayer( int size ) {
-		if  ( byte2int(_packet_buffer[1]) == 0x10 ) {									//preamble size
-			String header = new String( _packet_buffer, 4, 9 );
-			if ( header.equals("ASC-E1.17") ) {
-				int tsize = size - 16;
-				if ( checkFlagsAndLength(16, tsize) ) { // root pdu length
-				  if ( byte2int(_packet_buffer[21]) == 0x04 ) {							// vector RLP is 1.31 data
-					 return parseFramingLayer( tsize );
-				  }
+		_packet_view.clear();
+		_packet_view.limit(size);
+		return parseRootLayer(_packet_view);
+	}
+	
+	/**
+	 * parses packet and checks root layer data
+	 * <p>The packet is read in place with absolute gets.  Identifiers are compared as int and long values
+	 * so that parsing a packet does not allocate.</p>
+	 * @param packet received packet starting at index zero, limit is the received data length
+	 * @return true if packet contains dmx output
+	 */
+	public boolean parseRootLayer( ByteBuffer packet ) {
+		int size = packet.limit();
+		if ( size < 38 ) {
+			return false;
+		}
+		if (( packet.getInt(0) == SACN_PREAMBLE_INT ) && ( packet.getLong(4) == SACN_ACN_ID_LONG ) && ( packet.getInt(12) == SACN_ACN_ID_INT )) {
+			int tsize = size - 16;
+			if ( checkFlagsAndLength(packet, 16, tsize) ) { // root pdu length
+			  int vector = packet.getInt(18);
+			  if ( vector == SACN_VECTOR_ROOT_E131_DATA ) {					// vector RLP is 1.31 data
+				 return parseFramingLayer( packet, tsize );
+			  }
+			  if ( vector == SACN_VECTOR_ROOT_E131_EXTENDED ) {
+				 return parseSyncPacket( packet, tsize );
+			  }
+			}
+		}       // preamble and ACN packet identifier
+		return false;
+	}
+	
+	/**
+	 * parses a Universe Sync packet and merges frames held for its sync address
+	 * <p>If frames are merged, lastReceivedUniverse returns the sync address.</p>
+	 * @param packet received packet starting at index zero
+	 * @param size length of packet following root layer preamble
+	 * @return true if held frames were merged
+	 */
+	boolean parseSyncPacket( ByteBuffer packet, int size ) {
+		if ( packet.limit() < SACN_SYNC_PACKET_SIZE ) {
+			return false;
+		}
+		if ( checkFlagsAndLength(packet, 38, size - 22) && ( packet.getInt(40) == SACN_VECTOR_E131_EXTENDED_SYNCHRONIZATION )) {
+			int sync = packet.getShort(45) & 0xffff;
+			long now = LXDMXMerge.currentTime();
+			boolean applied = false;
+			if ( _merge.applySync(sync, now) ) {
+				_last_merge = _merge;
+				applied = true;
+			}
+			for (int i=0; i<_universe_list.length; i++) {
+				if ( _universe_list[i].applySync(sync, now) ) {
+					_last_merge = _universe_list[i];
+					applied = true;
 				}
-			}       // ACN packet identifier
-		}			// preamble size
+			}
+			if ( applied ) {
+				_last_universe = sync;
+			}
+			return applied;
+		}
 		return false;
 	}
 	
+	/**
+	 * join the multicast group of a sync address the first time it is seen in a data packet
+	 * @param a sync address
+	 */
+	void joinSyncGroup(int a) {
+		if (( a != _universe ) && ( getDMXUniverse(a) == null ) && _sync_groups.add(a) ) {
+			joinUniverseGroup(a);
+		}
+	}
+	
 	/**
 	 * parses packet and checks framing layer data
 	 * <p>Checks to see if unverse matches and ignore packets sent to other universes.<BR>
@@ -415,12 +1074,33 @@ public class LXSACN extends LXDMXEthernet  {
 	 * @return true if packet contains dmx output
 	 */
 	public boolean parseFramingLayer( int size ) {
+		_packet_view.clear();
+		return parseFramingLayer(_packet_view, size);
+	}
+	
+	/**
+	 * parses packet and checks framing layer data
+	 * @param packet received packet starting at index zero
+	 * @param size length of packet following root layer preamble
+	 * @return true if packet contains dmx output
+	 */
+	public boolean parseFramingLayer( ByteBuffer packet, int size ) {
 		int tsize = size - 22;
-		if ( checkFlagsAndLength(38, tsize) ) {     // framing pdu length
-			if ( byte2int(_packet_buffer[43]) == 0x02 ) {                        // vector dmp is 1.31
-				if ( byte2int(_packet_buffer[114]) == _universe ) {// implementation has 255 universe limit
-					return parseDMPLayer( tsize, _packet_buffer[108] );       
-        		}
+		if ( packet.limit() < 126 ) {			// dmp layer through start code
+			return false;
+		}
+		if ( checkFlagsAndLength(packet, 38, tsize) ) {     // framing pdu length
+			if ( packet.getInt(40) == SACN_VECTOR_E131_DATA_PACKET ) {                        // vector dmp is 1.31
+				int universe = packet.getShort(113) & 0xffff;
+				if (( _universe_table != null ) && ( universe <= SACN_UNIVERSE_MAX )) {
+					LXDMXUniverse u = _universe_table[universe];
+					if ( u != null ) {
+						return parseDMPLayer( packet, tsize, packet.get(108), u );
+					}
+				}
+				if ( universe == _universe ) {
+					return parseDMPLayer( packet, tsize, packet.get(108), _merge );
+				}
 			}
 		}
 		return false;
@@ -434,51 +1114,73 @@ public class LXSACN extends LXDMXEthernet  {
 	 * @return true if packet contains dmx output
 	 */
 	public boolean parseDMPLayer( int size, byte priority ) {
+		_packet_view.clear();
+		return parseDMPLayer(_packet_view, size, priority, _merge);
+	}
+	
+	/**
+	 * parses and checks DMP portion of packet and merges dmx levels directly from the packet
+	 * @param packet received packet starting at index zero
+	 * @param size length of packet following framing layer
+	 * @param priority priority from framing layer
+	 * @param merge _merge or the subscribed universe of the packet
+	 * @return true if packet contains dmx output
+	 */
+	boolean parseDMPLayer( ByteBuffer packet, int size, byte priority, LXDMXMerge merge ) {
 		int tsize = size - 77;
 		boolean good_dmx = false;
-		if ( checkFlagsAndLength(115, tsize) ) {
-			if ( byte2int(_packet_buffer[117]) == 0x02 ) {		// dmp vector
-				if ( byte2int(_packet_buffer[118]) == 0xa1 ) { 	// address and data type
-					int slots = byte2int(_packet_buffer[124]);
-	        		slots += byte2int(_packet_buffer[123]) << 8;
+		if ( checkFlagsAndLength(packet, 115, tsize) ) {
+			if ( byte2int(packet.get(117)) == 0x02 ) {		// dmp vector
+				if ( byte2int(packet.get(118)) == 0xa1 ) { 	// address and data type
+					int slots = packet.getShort(123) & 0xffff;
 	   
-	        		if ( isEmptyUUIDBytes(_dmx_source1) ) {
-	        			for(int k=0; k<SACN_CID_LENGTH; k++) {
-	        				_dmx_source1[k] = _packet_buffer[22+k];
-	        			}
-	        		}
-	        		if ( isEqualUUIDBytes(_dmx_source1, _packet_buffer, 22) ) {
-		        		if ( slots > _dmx_slots ) {
-		        			_dmx_slots = slots;
+	        		if (( slots <= DMX_UNIVERSE_MAX+1 ) && ( 125 + slots <= packet.limit() )) {
+		        		int options = byte2int(packet.get(112));
+		        		if ( _ignore_preview && (( options & SACN_OPTION_PREVIEW ) != 0 )) {
+		        			return false;
 		        		}
-		        		_priority1 = priority;
-		        		for(int j=0; j<_dmx_slots; j++) {
-		        			if ( j < slots ) {
-		        				_dmx_buffer1[j] = _packet_buffer[j+125];
-		        			} else {
-		        				_dmx_buffer1[j] = 0;
-		        			}
-						}
-		        		good_dmx = true;
-	        		} else {
-	        			if ( isEmptyUUIDBytes(_dmx_source2) ) {
-	        				for(int k=0; k<SACN_CID_LENGTH; k++) {
-		        				_dmx_source2[k] = _packet_buffer[22+k];
+		        		boolean terminated = (( options & SACN_OPTION_STREAM_TERMINATED ) != 0 );
+		        		int start_code = byte2int(packet.get(125));
+		        		boolean levels = ( start_code == 0 ) || ( start_code == SACN_START_CODE_PRIORITY );
+		        		// only level and priority packets add a source, other start codes are ignored unless terminating
+		        		LXDMXMergeSource source = merge.sourceForCID(packet, 22, levels && ( ! terminated ));
+		        		if (( source != null ) && ( ! checkSequence(source, byte2int(packet.get(111)), 256) )) {
+		        			return false;		// duplicate or late packet
+		        		}
+		        		if ( terminated ) {
+		        			if ( source == null ) {
+		        				return false;		// already removed
 		        			}
+		        			merge.terminateSource(source);		// release immediately
+		        			_last_merge = merge;
+		        			_last_universe = packet.getShort(113) & 0xffff;
+		        			return ( merge.getSourceCount() > 0 );	// levels recomputed from remaining sources
 		        		}
-	        			if ( isEqualUUIDBytes(_dmx_source2, _packet_buffer, 22) ) {
-			        		if ( slots > _dmx_slots ) {
-			        			_dmx_slots = slots;
-			        		}
-			        		_priority2 = priority;
-			        		for(int j=0; j<_dmx_slots; j++) {
-			        			if ( j < slots ) {
-			        				_dmx_buffer2[j] = _packet_buffer[j+125];
-			        			} else {
-			        				_dmx_buffer2[j] = 0;
-			        			}
-							}
-			        		good_dmx = true;
+		        		if (( source == null ) || ( ! levels )) {
+		        			return false;
+		        		}
+		        		if (( start_code == SACN_START_CODE_PRIORITY ) && ( slots > 1 )) {
+		        			merge.updateSourcePriorities(source, packet, 126, slots-1, 1);	// per slot priority, not levels
+		        		} else if ( start_code == 0 ) {
+		        			int sync = packet.getShort(109) & 0xffff;
+		        			if ( sync != source._sync_address ) {
+		        				source._sync_address = sync;
+		        				if ( sync != 0 ) {
+		        					joinSyncGroup(sync);
+		        				}
+		        			}
+		        			if (( sync != 0 ) && source._sync_received && ( LXDMXMerge.currentTime() - source._last_sync_time <= LXDMXMerge.SYNC_TIMEOUT )) {
+		        				merge.stageSource(source, packet, 125, slots, byte2int(priority));
+		        				return false;		// held until Universe Sync
+		        			}
+		        			if (( merge == _merge ) && ( slots > _dmx_slots )) {
+		        				_dmx_slots = slots;
+		        			}
+		        			merge.setSourcePriority(source, byte2int(priority));
+		        			merge.updateSource(source, packet, 125, slots);
+		        			_last_merge = merge;
+		        			_last_universe = packet.getShort(113) & 0xffff;
+		        			good_dmx = true;
 		        		}
 	        		}
 				}			//address type
@@ -512,6 +1214,24 @@ public class LXSACN extends LXDMXEthernet  {
 		return false;
 	}
 	
+	/**
+	 * Utility for checking flags + length bytes in a received packet
+	 * @param packet received packet starting at index zero
+	 * @param index starting index of 2byte flags + length field
+	 * @param size to compare with expected size
+	 * @return true if flags and size are good
+	 */
+	public static boolean checkFlagsAndLength( ByteBuffer packet, int index, int size ) {
+		int flags_length = packet.getShort(index) & 0xffff;
+		if ( ( flags_length & 0xF000 ) == 0x7000 ) {
+			int pdu_length = flags_length & 0x0fff;
+			if ( ( pdu_length != 0 ) && ( size >= pdu_length ) ) {
+			   return true;
+			}
+		}
+		return false;
+	}
+	
 	/**
 	 * Utility to check if UUID byte[] is empty (all zeros)
 	 * @param ba byte array
@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) 2016 by Claude Heintz Design
+ *
+ * This file is part of a library called LXforProcessing - https://github.com/claudeheintz/LXforProcessing
+ *
+ * LXforProcessing is free software: you can redistribute it and/or modify
+ * it under the terms of a BSD style license that should have been included with this file.
+ * If not, see https://www.claudeheintzdesign.com/lx/opensource.html.
+ *
+*/
+
+package lx4p;
+
+import java.net.*;
+import java.util.*;
+
+/** LXSACNDiscoveredSource
+ *
+ * <p>LXSACNDiscoveredSource holds the universes advertised by one sACN source
+ * in E1.31 Universe Discovery packets.</p>
+ *
+ * @author Claude Heintz
+*/
+
+public class LXSACNDiscoveredSource  {
+
+	/**
+	 * CID of source
+	 */
+	byte[] _cid;
+	/**
+	 * source name from framing layer
+	 */
+	String _name = "";
+	/**
+	 * IP address discovery packets were received from
+	 */
+	InetAddress _address = null;
+	/**
+	 * sorted universes from the last complete set of pages
+	 */
+	int[] _universes = new int[0];
+	/**
+	 * universes of the pages received so far
+	 */
+	int[] _pending = new int[0];
+	/**
+	 * number of universes in _pending
+	 */
+	int _pending_count = 0;
+	/**
+	 * page expected next
+	 */
+	int _next_page = 0;
+	/**
+	 * time of last discovery packet in milliseconds, see LXDMXMerge.currentTime
+	 */
+	long _last_seen = 0;
+
+	/**
+	 * @param cid array containing CID
+	 * @param offset index of CID in array
+	 */
+	LXSACNDiscoveredSource(byte[] cid, int offset) {
+		_cid = Arrays.copyOfRange(cid, offset, offset+LXSACN.SACN_CID_LENGTH);
+	}
+
+	/**
+	 * @return copy of CID of source
+	 */
+	public byte[] getCID() {
+		return _cid.clone();
+	}
+
+	/**
+	 * @return source name
+	 */
+	public String getName() {
+		return _name;
+	}
+
+	/**
+	 * @return IP address of source
+	 */
+	public InetAddress getAddress() {
+		return _address;
+	}
+
+	/**
+	 * @return copy of the sorted list of universes the source is sending
+	 */
+	public int[] getUniverses() {
+		return _universes.clone();
+	}
+
+	/**
+	 * @param u universe
+	 * @return true if the source advertises the universe
+	 */
+	public boolean hasUniverse(int u) {
+		return Arrays.binarySearch(_universes, u) >= 0;
+	}
+
+	/**
+	 * @return time of last discovery packet in milliseconds, see LXDMXMerge.currentTime
+	 */
+	public long getLastSeen() {
+		return _last_seen;
+	}
+
+	/**
+	 * @param ca array containing CID
+	 * @param ci index of CID in ca
+	 * @return true if this source is identified by the CID
+	 */
+	boolean matchesCID(byte[] ca, int ci) {
+		for (int i=0; i<LXSACN.SACN_CID_LENGTH; i++) {
+			if ( _cid[i] != ca[ci+i] ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * add the universes of one page
+	 * <p>Pages must arrive in order starting with page zero, otherwise the set is discarded.</p>
+	 * @param page page number
+	 * @param lastPage number of last page
+	 * @param data packet containing universe list
+	 * @param index index of first universe
+	 * @param count number of universes in page
+	 * @return true if this page completed a list that differs from the current list
+	 */
+	boolean addPage(int page, int lastPage, byte[] data, int index, int count) {
+		if ( page == 0 ) {
+			_pending_count = 0;
+			_next_page = 0;
+		}
+		if ( page != _next_page ) {
+			_next_page = 0;				// missed a page, wait for page zero
+			return false;
+		}
+		if ( _pending.length < _pending_count + count ) {
+			_pending = Arrays.copyOf(_pending, _pending_count + count);
+		}
+		for (int i=0; i<count; i++) {
+			_pending[_pending_count++] = ((data[index+2*i] & 0xff) << 8) | (data[index+2*i+1] & 0xff);
+		}
+		_next_page++;
+		if ( page < lastPage ) {
+			return false;
+		}
+		_next_page = 0;
+		int[] nu = Arrays.copyOf(_pending, _pending_count);
+		Arrays.sort(nu);
+		if ( Arrays.equals(nu, _universes) ) {
+			return false;
+		}
+		_universes = nu;
+		return true;
+	}
+}
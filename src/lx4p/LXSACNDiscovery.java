@@ -0,0 +1,475 @@
+/**
+ * Copyright (c) 2016 by Claude Heintz Design
+ *
+ * This file is part of a library called LXforProcessing - https://github.com/claudeheintz/LXforProcessing
+ * 
+ * LXforProcessing is free software: you can redistribute it and/or modify
+ * it under the terms of a BSD style license that should have been included with this file.
+ * If not, see https://www.claudeheintzdesign.com/lx/opensource.html.
+ * 
+*/
+
+package lx4p;
+
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.*;
+
+/** LXSACNDiscovery
+ * 
+ * <p>LXSACNDiscovery implements E1.31 Universe Discovery.<BR>
+ * It advertises the universes a sender is producing and listens for the advertisements of other sources.</p>
+ * 
+ * <p>Discovery packets are sent to 239.255.250.214 every 10 seconds.  A universe list longer than 512
+ * is sent as several pages.  Received pages are assembled into a table of sources and their universes.
+ * A source that has not advertised for SACN_DISCOVERY_TIMEOUT is removed.  A receiver can use the table,
+ * or an LXSACNDiscoveryListener, to subscribe only to universes that are actually being sent.</p>
+ * 
+ * <p>With a socket from createSACNDiscovery, call update regularly (e.g. in draw) and readPacket to receive.
+ * Alternatively, register a channel joined to the discovery group with an LXUDPReactor, which then
+ * does both on its own thread.</p>
+ * 
+ * @author Claude Heintz
+*/
+
+public class LXSACNDiscovery implements LXUDPPacketHandler  {
+
+	public static final String SACN_DISCOVERY_ADDRESS = "239.255.250.214";
+	public static final int SACN_DISCOVERY_UNIVERSE = 64214;
+	/**
+	 * milliseconds between discovery advertisements (E131_UNIVERSE_DISCOVERY_INTERVAL)
+	 */
+	public static final int SACN_DISCOVERY_INTERVAL = 10000;
+	/**
+	 * milliseconds without an advertisement before a source is removed
+	 */
+	public static final int SACN_DISCOVERY_TIMEOUT = 2 * SACN_DISCOVERY_INTERVAL + 500;
+	public static final int SACN_DISCOVERY_PAGE_MAX = 512;
+	public static final int SACN_DISCOVERY_HEADER_SIZE = 120;
+	public static final int SACN_DISCOVERY_BUFFER_MAX = SACN_DISCOVERY_HEADER_SIZE + 2 * SACN_DISCOVERY_PAGE_MAX;
+	public static final int SACN_VECTOR_E131_EXTENDED_DISCOVERY = 0x02;
+	public static final int SACN_VECTOR_UNIVERSE_DISCOVERY_UNIVERSE_LIST = 0x01;
+	
+	/**
+	 * buffer for reading packets
+	 */
+	byte[] _packet_buffer = new byte[SACN_DISCOVERY_BUFFER_MAX];
+	/**
+	 * view of _packet_buffer
+	 */
+	ByteBuffer _packet_view = ByteBuffer.wrap(_packet_buffer);
+	/**
+	 * buffer for sending packets
+	 */
+	byte[] _send_buffer = new byte[SACN_DISCOVERY_BUFFER_MAX];
+	
+	/**
+	 * CID of this sender
+	 */
+	byte[] _cid = new byte[LXSACN.SACN_CID_LENGTH];
+	/**
+	 * name of this sender
+	 */
+	String _source_name = "LXforProcessing";
+	/**
+	 * sorted universes advertised by this sender
+	 */
+	int[] _universes = new int[0];
+	/**
+	 * if true, update and the reactor send advertisements every SACN_DISCOVERY_INTERVAL
+	 */
+	boolean _advertising = false;
+	/**
+	 * time of next advertisement
+	 */
+	long _next_advertisement = 0;
+	
+	/**
+	 * sources found by listening
+	 */
+	Vector<LXSACNDiscoveredSource> _sources = new Vector<LXSACNDiscoveredSource>();
+	/**
+	 * object notified of changes to sources
+	 */
+	LXSACNDiscoveryListener _listener = null;
+	
+	/**
+	 * socket for sending and receiving when not using an LXUDPReactor
+	 */
+	DatagramSocket _socket = null;
+	/**
+	 * channel registered with an LXUDPReactor
+	 */
+	DatagramChannel _channel = null;
+	/**
+	 * destination of advertisements
+	 */
+	InetSocketAddress _discovery_address = null;
+	
+	/**
+	 * construct discovery
+	 * @param cid CID of this sender (LXSACN.getCID() for example)
+	 * @param name name of this sender
+	 */
+	public LXSACNDiscovery(byte[] cid, String name) {
+		setCID(cid);
+		if ( name != null ) {
+			_source_name = name;
+		}
+		try {
+			_discovery_address = new InetSocketAddress(InetAddress.getByName(SACN_DISCOVERY_ADDRESS), LXSACN.SACN_PORT);
+		} catch (Exception e) {
+			System.out.println("sACN discovery address exception " + e);
+		}
+	}
+	
+	/**
+	 * Factory method to create an LXSACNDiscovery with a socket joined to the discovery multicast group
+	 * @param networkAddress address of network interface, "0.0.0.0" for any
+	 * @param cid CID of this sender
+	 * @param name name of this sender
+	 * @return LXSACNDiscovery or null if the socket could not be opened
+	 */
+	public static LXSACNDiscovery createSACNDiscovery(String networkAddress, byte[] cid, String name) {
+		LXSACNDiscovery discovery = new LXSACNDiscovery(cid, name);
+		try {
+			MulticastSocket ms = new MulticastSocket( null );
+			ms.setReuseAddress(true);
+			ms.bind(new InetSocketAddress(LXSACN.SACN_PORT));
+			NetworkInterface nic = LXUDPReactor.networkInterfaceForAddress(networkAddress);
+			ms.joinGroup(discovery._discovery_address, nic);
+			if ( nic != null ) {
+				ms.setNetworkInterface(nic);
+			}
+			ms.setSoTimeout(1000);
+			discovery._socket = ms;
+		} catch (Exception e) {
+			System.out.println("Can't open socket for sACN discovery " + e);
+			discovery = null;
+		}
+		return discovery;
+	}
+	
+	/**
+	 * @param cid CID of this sender
+	 */
+	public void setCID(byte[] cid) {
+		System.arraycopy(cid, 0, _cid, 0, LXSACN.SACN_CID_LENGTH);
+	}
+	
+	/**
+	 * @param name name of this sender, up to 63 bytes
+	 */
+	public void setSourceName(String name) {
+		_source_name = name;
+	}
+	
+	/**
+	 * @param l object notified when sources change
+	 */
+	public void setListener(LXSACNDiscoveryListener l) {
+		_listener = l;
+	}
+	
+	/**
+	 * @param ch channel joined to the discovery group and registered with an LXUDPReactor
+	 */
+	public void setDatagramChannel(DatagramChannel ch) {
+		_channel = ch;
+	}
+	
+	/**
+	 * @param adv if true, advertise universes every SACN_DISCOVERY_INTERVAL
+	 */
+	public void setAdvertising(boolean adv) {
+		_advertising = adv;
+		_next_advertisement = 0;
+	}
+	
+	/**
+	 * sets the universes advertised by this sender
+	 * @param u array of universes 1-63999
+	 */
+	public synchronized void setUniverses(int[] u) {
+		int[] nu = u.clone();
+		Arrays.sort(nu);
+		_universes = nu;
+	}
+	
+	/**
+	 * adds a universe to the list advertised by this sender
+	 * @param u universe 1-63999
+	 */
+	public synchronized void addUniverse(int u) {
+		int i = Arrays.binarySearch(_universes, u);
+		if ( i < 0 ) {
+			i = -i - 1;
+			int[] nu = new int[_universes.length+1];
+			System.arraycopy(_universes, 0, nu, 0, i);
+			nu[i] = u;
+			System.arraycopy(_universes, i, nu, i+1, _universes.length-i);
+			_universes = nu;
+		}
+	}
+	
+	/**
+	 * removes a universe from the list advertised by this sender
+	 * @param u universe 1-63999
+	 */
+	public synchronized void removeUniverse(int u) {
+		int i = Arrays.binarySearch(_universes, u);
+		if ( i >= 0 ) {
+			int[] nu = new int[_universes.length-1];
+			System.arraycopy(_universes, 0, nu, 0, i);
+			System.arraycopy(_universes, i+1, nu, i, _universes.length-i-1);
+			_universes = nu;
+		}
+	}
+	
+	/**
+	 * @return copy of universes advertised by this sender
+	 */
+	public synchronized int[] getUniverses() {
+		return _universes.clone();
+	}
+	
+	/**
+	 * sends the universe list, one packet per page of up to 512 universes
+	 * @param socket open socket or null to use the reactor channel
+	 */
+	public synchronized void sendDiscovery(DatagramSocket socket) {
+		int[] universes = _universes;
+		int last_page = 0;
+		if ( universes.length > 0 ) {
+			last_page = (universes.length - 1) / SACN_DISCOVERY_PAGE_MAX;
+		}
+		for (int page=0; page<=last_page; page++) {
+			int first = page * SACN_DISCOVERY_PAGE_MAX;
+			int count = Math.min(SACN_DISCOVERY_PAGE_MAX, universes.length - first);
+			int size = buildPage(page, last_page, universes, first, count);
+			try {
+				if ( socket != null ) {
+					socket.send(new DatagramPacket(_send_buffer, size, _discovery_address));
+				} else if ( _channel != null ) {
+					LXUDPReactor.send(_channel, _send_buffer, size, _discovery_address);
+				}
+			} catch (Exception e) {
+				System.out.println("send sACN discovery exception " + e);
+			}
+		}
+	}
+	
+	/**
+	 * sends the universe list using the socket from createSACNDiscovery or the reactor channel
+	 */
+	public void sendDiscovery() {
+		sendDiscovery(_socket);
+	}
+	
+	/**
+	 * builds one page of the universe list in the send buffer
+	 * @return size of packet
+	 */
+	int buildPage(int page, int lastPage, int[] universes, int first, int count) {
+		int size = SACN_DISCOVERY_HEADER_SIZE + 2 * count;
+		for (int n=0; n<SACN_DISCOVERY_HEADER_SIZE; n++) {
+			_send_buffer[n] = 0;
+		}
+		// ----- root layer -----
+		_send_buffer[1] = (byte) 0x10;
+		LXDMXEthernet.setStringInByteArray("ASC-E1.17", _send_buffer, 4, true);
+		int fplusl = size - 16 + 0x7000;
+		_send_buffer[16] = (byte)(fplusl >> 8);
+		_send_buffer[17] = (byte)(fplusl & 0xff);
+		_send_buffer[21] = (byte)LXSACN.SACN_VECTOR_ROOT_E131_EXTENDED;
+		System.arraycopy(_cid, 0, _send_buffer, 22, LXSACN.SACN_CID_LENGTH);
+		// ----- framing layer -----
+		fplusl = size - 38 + 0x7000;
+		_send_buffer[38] = (byte)(fplusl >> 8);
+		_send_buffer[39] = (byte)(fplusl & 0xff);
+		_send_buffer[43] = (byte)SACN_VECTOR_E131_EXTENDED_DISCOVERY;
+		byte[] name = _source_name.getBytes();
+		System.arraycopy(name, 0, _send_buffer, 44, Math.min(name.length, 63));
+		// ----- universe discovery layer -----
+		fplusl = size - 112 + 0x7000;
+		_send_buffer[112] = (byte)(fplusl >> 8);
+		_send_buffer[113] = (byte)(fplusl & 0xff);
+		_send_buffer[117] = (byte)SACN_VECTOR_UNIVERSE_DISCOVERY_UNIVERSE_LIST;
+		_send_buffer[118] = (byte)page;
+		_send_buffer[119] = (byte)lastPage;
+		for (int i=0; i<count; i++) {
+			int u = universes[first+i];
+			_send_buffer[120+2*i] = (byte)(u >> 8);
+			_send_buffer[121+2*i] = (byte)(u & 0xff);
+		}
+		return size;
+	}
+	
+	/**
+	 * sends an advertisement if one is due and removes expired sources
+	 * <p>Call regularly when not using an LXUDPReactor.</p>
+	 */
+	public void update() {
+		long now = LXDMXMerge.currentTime();
+		if ( _advertising && ( now >= _next_advertisement )) {
+			_next_advertisement = now + SACN_DISCOVERY_INTERVAL;
+			sendDiscovery();
+		}
+		removeExpiredSources(now);
+	}
+	
+	/**
+	 * attempt to read a discovery packet from the socket from createSACNDiscovery
+	 * @return true if a universe list changed
+	 */
+	public boolean readPacket() {
+		boolean changed = false;
+		if ( _socket != null ) {
+			DatagramPacket receivePacket = new DatagramPacket(_packet_buffer, _packet_buffer.length);
+			try {
+				_socket.receive(receivePacket);
+				changed = parsePacket(receivePacket.getLength(), receivePacket.getAddress());
+			} catch ( Exception e) {
+				//   will catch receive time out exception
+			}
+		}
+		return changed;
+	}
+	
+	/**
+	 * called by an LXUDPReactor when a packet is received on a channel registered with this object
+	 */
+	public void packetReceived(LXUDPReactor reactor, DatagramChannel channel, ByteBuffer packet, InetSocketAddress sender) {
+		_channel = channel;
+		int length = Math.min(packet.remaining(), _packet_buffer.length);
+		packet.get(_packet_buffer, 0, length);
+		parsePacket(length, sender.getAddress());
+	}
+	
+	/**
+	 * called periodically by an LXUDPReactor to advertise and remove expired sources
+	 */
+	public void reactorPeriodic(LXUDPReactor reactor) {
+		if ( _channel != null ) {
+			update();
+		}
+	}
+	
+	/**
+	 * parses a Universe Discovery packet in the packet buffer
+	 * @param length length of packet
+	 * @param sender address of sender
+	 * @return true if a source's universe list changed
+	 */
+	boolean parsePacket(int length, InetAddress sender) {
+		if ( length < SACN_DISCOVERY_HEADER_SIZE ) {
+			return false;
+		}
+		ByteBuffer packet = _packet_view;
+		packet.clear();
+		packet.limit(length);
+		if (( packet.getInt(0) != LXSACN.SACN_PREAMBLE_INT ) || ( packet.getLong(4) != LXSACN.SACN_ACN_ID_LONG ) || ( packet.getInt(12) != LXSACN.SACN_ACN_ID_INT )) {
+			return false;
+		}
+		if (( packet.getInt(18) != LXSACN.SACN_VECTOR_ROOT_E131_EXTENDED ) || ( packet.getInt(40) != SACN_VECTOR_E131_EXTENDED_DISCOVERY ) || ( packet.getInt(114) != SACN_VECTOR_UNIVERSE_DISCOVERY_UNIVERSE_LIST )) {
+			return false;
+		}
+		if ( ! LXSACN.checkFlagsAndLength(packet, 112, length - 112) ) {
+			return false;
+		}
+		int count = ((packet.getShort(112) & 0x0fff) - 8) / 2;
+		count = Math.max(0, Math.min(count, SACN_DISCOVERY_PAGE_MAX));
+		
+		LXSACNDiscoveredSource source = sourceForCID(_packet_buffer, 22);
+		if ( source == null ) {
+			source = new LXSACNDiscoveredSource(_packet_buffer, 22);
+			_sources.addElement(source);
+		}
+		int n = 44;
+		while (( n < 108 ) && ( _packet_buffer[n] != 0 )) {
+			n++;
+		}
+		source._name = new String(_packet_buffer, 44, n-44);
+		source._address = sender;
+		source._last_seen = LXDMXMerge.currentTime();
+		if ( source.addPage(_packet_buffer[118] & 0xff, _packet_buffer[119] & 0xff, _packet_buffer, 120, count) ) {
+			if ( _listener != null ) {
+				_listener.universesChanged(this, source);
+			}
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * @param cid array containing CID
+	 * @param offset index of CID in array
+	 * @return discovered source or null
+	 */
+	public LXSACNDiscoveredSource sourceForCID(byte[] cid, int offset) {
+		synchronized ( _sources ) {
+			for (int i=0; i<_sources.size(); i++) {
+				LXSACNDiscoveredSource s = _sources.elementAt(i);
+				if ( s.matchesCID(cid, offset) ) {
+					return s;
+				}
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * @return copy of the list of discovered sources
+	 */
+	public Vector<LXSACNDiscoveredSource> getSources() {
+		return new Vector<LXSACNDiscoveredSource>(_sources);
+	}
+	
+	/**
+	 * @return sorted universes advertised by any discovered source
+	 */
+	public int[] activeUniverses() {
+		TreeSet<Integer> all = new TreeSet<Integer>();
+		synchronized ( _sources ) {
+			for (int i=0; i<_sources.size(); i++) {
+				int[] u = _sources.elementAt(i)._universes;
+				for (int j=0; j<u.length; j++) {
+					all.add(u[j]);
+				}
+			}
+		}
+		int[] rv = new int[all.size()];
+		int i = 0;
+		for (Integer u : all) {
+			rv[i++] = u;
+		}
+		return rv;
+	}
+	
+	/**
+	 * remove sources that have not advertised within SACN_DISCOVERY_TIMEOUT
+	 * @param now current time in milliseconds, see LXDMXMerge.currentTime
+	 */
+	public void removeExpiredSources(long now) {
+		for (int i=_sources.size()-1; i>=0; i--) {
+			LXSACNDiscoveredSource s = _sources.elementAt(i);
+			if ( now - s._last_seen > SACN_DISCOVERY_TIMEOUT ) {
+				_sources.removeElementAt(i);
+				if ( _listener != null ) {
+					_listener.sourceExpired(this, s);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * closes the socket if it exists
+	 */
+	public void close() {
+		if ( _socket != null ) {
+			_socket.close();
+			_socket = null;
+		}
+	}
+}
@@ -0,0 +1,37 @@
+/**
+ * Copyright (c) 2016 by Claude Heintz Design
+ *
+ * This file is part of a library called LXforProcessing - https://github.com/claudeheintz/LXforProcessing
+ * 
+ * LXforProcessing is free software: you can redistribute it and/or modify
+ * it under the terms of a BSD style license that should have been included with this file.
+ * If not, see https://www.claudeheintzdesign.com/lx/opensource.html.
+ * 
+*/
+
+package lx4p;
+
+/** LXSACNDiscoveryListener
+ * 
+ * <p>LXSACNDiscoveryListener is an interface for objects that want to be informed when
+ * E1.31 Universe Discovery finds a source, its list of universes changes or it stops advertising.</p>
+*/
+
+
+public interface LXSACNDiscoveryListener  {
+
+	/**
+	 * called when a source's complete universe list has been received and differs from the previous list
+	 * @param discovery LXSACNDiscovery that received the list
+	 * @param source the source, getUniverses returns the new list
+	 */
+	public void universesChanged(LXSACNDiscovery discovery, LXSACNDiscoveredSource source);
+	
+	/**
+	 * called after a source that has stopped sending discovery packets is removed
+	 * @param discovery LXSACNDiscovery that removed the source
+	 * @param source the removed source
+	 */
+	public void sourceExpired(LXSACNDiscovery discovery, LXSACNDiscoveredSource source);
+
+}
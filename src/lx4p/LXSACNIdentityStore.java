@@ -0,0 +1,281 @@
+/**
+ * Copyright (c) 2016 by Claude Heintz Design
+ *
+ * This file is part of a library called LXforProcessing - https://github.com/claudeheintz/LXforProcessing
+ * 
+ * LXforProcessing is free software: you can redistribute it and/or modify
+ * it under the terms of a BSD style license that should have been included with this file.
+ * If not, see https://www.claudeheintzdesign.com/lx/opensource.html.
+ * 
+*/
+
+package lx4p;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.util.*;
+
+/** LXSACNIdentityStore
+ * 
+ * <p>LXSACNIdentityStore keeps the CIDs of named sACN sources in a small properties file
+ * so that a source keeps the same CID when the sketch is restarted.<BR>
+ * The first time a name is asked for, a random (version 4) UUID is generated and saved.</p>
+ * 
+ * <p>Each name has its own CID, so several LXSACN objects or output groups in one process
+ * are seen by receivers as distinct sources:</p>
+ * 
+ * <p>dmx.setCID(LXSACNIdentityStore.defaultStore().cidForName("stage left"));</p>
+ * 
+ * <p>The file may be shared by several sketches.  Before a name is added or removed the file is read again
+ * while holding a lock on a companion ".lock" file, so names added by another process are kept.</p>
+ * 
+ * @author Claude Heintz
+*/
+
+public class LXSACNIdentityStore  {
+	
+	/**
+	 * name of file in the user's home directory used by defaultStore
+	 */
+	public static final String DEFAULT_FILE_NAME = ".lx4p_sacn_cid.properties";
+	/**
+	 * suffix of the lock file held while the identities are read and written
+	 */
+	public static final String LOCK_FILE_SUFFIX = ".lock";
+	
+	/**
+	 * serializes file locking within this process, FileChannel.lock is held per process
+	 */
+	static final Object _file_lock = new Object();
+	
+	/**
+	 * shared store in the user's home directory
+	 */
+	static LXSACNIdentityStore _default_store = null;
+	
+	/**
+	 * file holding the identities
+	 */
+	File _file;
+	/**
+	 * name = UUID string
+	 */
+	Properties _identities = new Properties();
+	
+	/**
+	 * construct store, reading the file if it exists
+	 * @param file properties file holding the identities
+	 */
+	public LXSACNIdentityStore(File file) {
+		_file = file;
+		load();
+	}
+	
+	/**
+	 * construct store, reading the file if it exists
+	 * @param path path of properties file holding the identities
+	 */
+	public LXSACNIdentityStore(String path) {
+		this(new File(path));
+	}
+	
+	/**
+	 * @return store kept in DEFAULT_FILE_NAME in the user's home directory
+	 */
+	public static synchronized LXSACNIdentityStore defaultStore() {
+		if ( _default_store == null ) {
+			_default_store = new LXSACNIdentityStore(new File(System.getProperty("user.home"), DEFAULT_FILE_NAME));
+		}
+		return _default_store;
+	}
+	
+	/**
+	 * CID for a named source, created and saved if the name is new
+	 * @param name name of source
+	 * @return 16 byte CID
+	 */
+	public byte[] cidForName(String name) {
+		return uuidToCID(uuidForName(name));
+	}
+	
+	/**
+	 * UUID for a named source, created and saved if the name is new
+	 * @param name name of source
+	 * @return UUID
+	 */
+	public synchronized UUID uuidForName(String name) {
+		UUID uuid = storedUUID(name);
+		if ( uuid != null ) {
+			return uuid;
+		}
+		synchronized ( _file_lock ) {
+			RandomAccessFile lock = lockFile();
+			try {
+				load();									// another process may have added the name
+				uuid = storedUUID(name);
+				if ( uuid == null ) {
+					uuid = UUID.randomUUID();
+					_identities.setProperty(name, uuid.toString());
+					save();
+				}
+			} finally {
+				unlockFile(lock);
+			}
+		}
+		return uuid;
+	}
+	
+	/**
+	 * forget a named source so that it gets a new CID next time
+	 * @param name name of source
+	 */
+	public synchronized void removeName(String name) {
+		synchronized ( _file_lock ) {
+			RandomAccessFile lock = lockFile();
+			try {
+				load();
+				if ( _identities.remove(name) != null ) {
+					save();
+				}
+			} finally {
+				unlockFile(lock);
+			}
+		}
+	}
+	
+	/**
+	 * @param name name of source
+	 * @return UUID held in memory for name or null if there is none or it is not valid
+	 */
+	UUID storedUUID(String name) {
+		String s = _identities.getProperty(name);
+		if ( s != null ) {
+			try {
+				return UUID.fromString(s);
+			} catch (IllegalArgumentException e) {
+				System.out.println("Bad CID for " + name + " in " + _file + ", replacing it");
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * lock the companion lock file, blocking until other processes release it
+	 * @return open lock file, closing it releases the lock, or null if it could not be locked
+	 */
+	RandomAccessFile lockFile() {
+		try {
+			RandomAccessFile raf = new RandomAccessFile(new File(_file.getPath() + LOCK_FILE_SUFFIX), "rw");
+			try {
+				raf.getChannel().lock();
+				return raf;
+			} catch (IOException e) {
+				raf.close();
+				throw e;
+			}
+		} catch (IOException e) {
+			System.out.println("Can't lock sACN identities " + e);
+		}
+		return null;
+	}
+	
+	/**
+	 * release a lock returned by lockFile
+	 * @param raf open lock file or null
+	 */
+	static void unlockFile(RandomAccessFile raf) {
+		if ( raf != null ) {
+			try {
+				raf.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+	
+	/**
+	 * @return names of the stored sources
+	 */
+	public synchronized Set<String> getNames() {
+		return new TreeSet<String>(_identities.stringPropertyNames());
+	}
+	
+	/**
+	 * read the identities from the file if it exists, merged into those in memory
+	 * <p>A name in the file replaces the same name in memory.</p>
+	 */
+	synchronized void load() {
+		if ( _file.exists() ) {
+			try {
+				InputStream in = new FileInputStream(_file);
+				try {
+					_identities.load(in);
+				} finally {
+					in.close();
+				}
+			} catch (IOException e) {
+				System.out.println("Can't read sACN identities " + e);
+			}
+		}
+	}
+	
+	/**
+	 * write the identities, replacing the file only after the new one is complete
+	 * <p>Called while holding the lock file.  The complete file is moved into place atomically where supported.</p>
+	 * @return true if saved
+	 */
+	synchronized boolean save() {
+		File temp = null;
+		try {
+			File dir = _file.getAbsoluteFile().getParentFile();
+			temp = File.createTempFile("lx4p", ".tmp", dir);
+			OutputStream out = new FileOutputStream(temp);
+			try {
+				_identities.store(out, "LXforProcessing sACN source CIDs");
+			} finally {
+				out.close();
+			}
+			try {
+				Files.move(temp.toPath(), _file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp.toPath(), _file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			return true;
+		} catch (IOException e) {
+			System.out.println("Can't save sACN identities " + e);
+			if ( temp != null ) {
+				temp.delete();
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * @return CID from a new random UUID, for a source that does not need to keep its identity
+	 */
+	public static byte[] randomCID() {
+		return uuidToCID(UUID.randomUUID());
+	}
+	
+	/**
+	 * @param uuid UUID
+	 * @return 16 byte CID in network byte order
+	 */
+	public static byte[] uuidToCID(UUID uuid) {
+		byte[] cid = new byte[LXSACN.SACN_CID_LENGTH];
+		ByteBuffer b = ByteBuffer.wrap(cid);
+		b.putLong(0, uuid.getMostSignificantBits());
+		b.putLong(8, uuid.getLeastSignificantBits());
+		return cid;
+	}
+	
+	/**
+	 * @param cid array containing CID
+	 * @param offset index of CID in array
+	 * @return UUID of CID
+	 */
+	public static UUID cidToUUID(byte[] cid, int offset) {
+		ByteBuffer b = ByteBuffer.wrap(cid);
+		return new UUID(b.getLong(offset), b.getLong(offset+8));
+	}
+}
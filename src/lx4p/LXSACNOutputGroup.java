@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) 2016 by Claude Heintz Design
+ *
+ * This file is part of a library called LXforProcessing - https://github.com/claudeheintz/LXforProcessing
+ * 
+ * LXforProcessing is free software: you can redistribute it and/or modify
+ * it under the terms of a BSD style license that should have been included with this file.
+ * If not, see https://www.claudeheintzdesign.com/lx/opensource.html.
+ * 
+*/
+
+package lx4p;
+
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/** LXSACNOutputGroup
+ * 
+ * <p>LXSACNOutputGroup sends many sACN universes from a single DatagramChannel.<BR>
+ * Each universe is an LXSACNOutputUniverse with its own pre-encoded packet.  When a universe's
+ * frame changes, commitSlots places it on a lock-free queue.  flush takes every queued universe,
+ * plus any unchanged universe whose keep-alive interval has passed, copies their frames into their
+ * packets and then sends the packets back to back.  If a sync address is set, a Universe Sync
+ * packet follows the data packets.</p>
+ * 
+ * <p>The queue, flush loop and statistics are shared with LXArtNetOutputGroup, see LXDMXOutputGroup.</p>
+ * 
+ * @author Claude Heintz
+*/
+
+public class LXSACNOutputGroup extends LXDMXOutputGroup  {
+	
+	/**
+	 * CID of sender
+	 */
+	byte[] _cid = new byte[LXSACN.SACN_CID_LENGTH];
+	/**
+	 * source name of sent packets
+	 */
+	String _source_name = "LXSACN";
+	/**
+	 * priority of sent packets
+	 */
+	byte _priority = (byte)LXDMXMerge.DEFAULT_PRIORITY;
+	/**
+	 * synchronization address placed in data packets, zero for none
+	 */
+	int _sync_address = 0;
+	/**
+	 * Universe Sync packet
+	 */
+	byte[] _sync_buffer = new byte[LXSACN.SACN_SYNC_PACKET_SIZE];
+	ByteBuffer _sync_view = ByteBuffer.wrap(_sync_buffer);
+	InetSocketAddress _sync_destination = null;
+	byte _sync_sequence = 0;
+	
+	/**
+	 * construct group
+	 * @param channel open channel used to send all universes
+	 * @param cid CID of sender
+	 * @param name source name of sent packets
+	 */
+	public LXSACNOutputGroup(DatagramChannel channel, byte[] cid, String name) {
+		super(channel, LXSACN.SACN_UNIVERSE_MIN, LXSACN.SACN_UNIVERSE_MAX);
+		if ( cid != null ) {
+			System.arraycopy(cid, 0, _cid, 0, LXSACN.SACN_CID_LENGTH);
+		}
+		if ( name != null ) {
+			_source_name = name;
+		}
+	}
+	
+	/**
+	 * Factory method to create a group with a blocking channel bound to one network interface
+	 * @param networkAddress address of network interface, "0.0.0.0" or null for default
+	 * @param cid CID of sender
+	 * @param name source name of sent packets
+	 * @return group or null if the channel could not be opened
+	 */
+	public static LXSACNOutputGroup createOutputGroup(String networkAddress, byte[] cid, String name) {
+		DatagramChannel channel = null;
+		try {
+			channel = DatagramChannel.open(StandardProtocolFamily.INET);
+			channel.setOption(StandardSocketOptions.SO_SNDBUF, SEND_BUFFER_SIZE);
+			if ( ( networkAddress == null ) || networkAddress.equals("0.0.0.0") ) {
+				channel.bind(new InetSocketAddress(0));
+			} else {
+				channel.bind(new InetSocketAddress(InetAddress.getByName(networkAddress), 0));
+			}
+			channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, LXUDPReactor.networkInterfaceForAddress(networkAddress));
+			channel.configureBlocking(true);
+		} catch (Exception e) {
+			System.out.println("Can't open sACN output channel " + e);
+			LXUDPReactor.closeChannel(channel);
+			return null;
+		}
+		return new LXSACNOutputGroup(channel, cid, name);
+	}
+	
+	/**
+	 * add a universe to the group
+	 * @param u universe 1-63999
+	 * @return the universe, existing if already added
+	 */
+	public LXSACNOutputUniverse addUniverse(int u) {
+		return (LXSACNOutputUniverse)addOutputUniverse(u);
+	}
+	
+	/**
+	 * @param u universe 1-63999
+	 * @return the universe or null if it is not in the group
+	 */
+	public LXSACNOutputUniverse getUniverse(int u) {
+		return (LXSACNOutputUniverse)outputUniverse(u);
+	}
+	
+	/**
+	 * @param u universe 1-63999
+	 * @return new sACN universe
+	 */
+	LXDMXOutputUniverse createUniverse(int u) {
+		return new LXSACNOutputUniverse(this, u);
+	}
+	
+	/**
+	 * set the priority of every universe
+	 * <p>Header fields should be set before flushing starts, they are written into the packets directly.</p>
+	 * @param p priority 0-200
+	 */
+	public synchronized void setPacketPriority(int p) {
+		_priority = (byte)p;
+		LXDMXOutputUniverse[] list = _universe_list;
+		for (int i=0; i<list.length; i++) {
+			((LXSACNOutputUniverse)list[i])._packet.setPriority(_priority);
+		}
+	}
+	
+	/**
+	 * set the synchronization address of every universe
+	 * <p>When set, flush sends a Universe Sync packet after the data packets.</p>
+	 * @param a synchronization universe 1-63999 or zero for unsynchronized output
+	 */
+	public synchronized void setSyncAddress(int a) {
+		_sync_address = a;
+		if ( a != 0 ) {
+			_sync_destination = new InetSocketAddress(LXSACN.multicastAddressForUniverse(a), LXSACN.SACN_PORT);
+		}
+		LXDMXOutputUniverse[] list = _universe_list;
+		for (int i=0; i<list.length; i++) {
+			((LXSACNOutputUniverse)list[i])._packet.setSyncAddress(a);
+		}
+	}
+	
+	/**
+	 * sends a Universe Sync packet after the data packets when a sync address is set
+	 */
+	void flushed(int packets) {
+		if ( _sync_address != 0 ) {
+			sendUniverseSync();
+		}
+	}
+	
+	/**
+	 * send a Universe Sync packet for the group's sync address
+	 */
+	void sendUniverseSync() {
+		if ( _sync_sequence == 0 ) {
+			_sync_sequence = 1;
+		} else {
+			_sync_sequence++;
+		}
+		LXSACN.encodeUniverseSync(_sync_buffer, _cid, _sync_sequence, _sync_address);
+		_sync_view.clear();
+		send(_sync_view, _sync_destination);
+	}
+	
+	/**
+	 * sends stream terminated packets for every universe and closes the channel
+	 */
+	public void close() {
+		if ( _channel != null ) {
+			LXDMXOutputUniverse[] list = _universe_list;
+			for (int i=0; i<list.length; i++) {
+				LXSACNOutputUniverse ou = (LXSACNOutputUniverse)list[i];
+				for (int n=0; n<LXSACN.SACN_TERMINATE_PACKET_COUNT; n++) {
+					ou.encode((byte)LXSACN.SACN_OPTION_STREAM_TERMINATED);
+					send(ou._packet_view, ou._destination);
+				}
+			}
+		}
+		super.close();
+	}
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2016 by Claude Heintz Design
+ *
+ * This file is part of a library called LXforProcessing - https://github.com/claudeheintz/LXforProcessing
+ * 
+ * LXforProcessing is free software: you can redistribute it and/or modify
+ * it under the terms of a BSD style license that should have been included with this file.
+ * If not, see https://www.claudeheintzdesign.com/lx/opensource.html.
+ * 
+*/
+
+package lx4p;
+
+import java.net.*;
+import java.nio.ByteBuffer;
+
+/** LXSACNOutputUniverse
+ * 
+ * <p>LXSACNOutputUniverse is one universe sent by an LXSACNOutputGroup.<BR>
+ * The sketch sets levels and calls commitSlots when the frame is complete.  A changed frame
+ * is published to the universe's LXDMXUniverseBuffer and the universe is queued to be sent
+ * by the group's next flush.</p>
+ * 
+ * <p>Levels are set from one writer thread.  The frame and packet belong to the thread calling flush.</p>
+ * 
+ * @author Claude Heintz
+*/
+
+public class LXSACNOutputUniverse extends LXDMXOutputUniverse  {
+	
+	/**
+	 * pre-encoded packet (sending thread)
+	 */
+	LXSACNPacket _packet;
+	/**
+	 * multicast address of the universe or a unicast destination
+	 */
+	InetSocketAddress _destination;
+	
+	/**
+	 * construct output universe
+	 * @param group the group sending the universe
+	 * @param u universe 1-63999
+	 */
+	LXSACNOutputUniverse(LXSACNOutputGroup group, int u) {
+		super(group, u, true);
+		_packet = new LXSACNPacket(group._cid, group._source_name, u);
+		_packet.setPriority(group._priority);
+		_packet.setSyncAddress(group._sync_address);
+		_packet_view = ByteBuffer.wrap(_packet.getBuffer());
+		_destination = new InetSocketAddress(LXSACN.multicastAddressForUniverse(u), LXSACN.SACN_PORT);
+	}
+	
+	/**
+	 * @return universe number
+	 */
+	public int getUniverse() {
+		return _number;
+	}
+	
+	/**
+	 * send to a unicast address instead of the universe's multicast address
+	 * @param to_ip destination address
+	 */
+	public void setDestination(InetAddress to_ip) {
+		_destination = new InetSocketAddress(to_ip, LXSACN.SACN_PORT);
+	}
+	
+	/**
+	 * copy the latest committed frame into the packet (sending thread)
+	 */
+	void encode() {
+		encode((byte)0);
+	}
+	
+	/**
+	 * copy the latest committed frame into the packet (sending thread)
+	 * @param options framing layer options
+	 */
+	void encode(byte options) {
+		byte[] frame = _frames.snapshot();
+		_packet.setOptions(options);
+		int length = _packet.setFrame(frame, 0, _frames.snapshotLength());
+		_packet_view.clear();
+		_packet_view.limit(length);
+	}
+	
+	/**
+	 * send the packet to the universe's destination (sending thread)
+	 */
+	int transmit() {
+		return _group.send(_packet_view, _destination);
+	}
+}
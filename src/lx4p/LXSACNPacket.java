@@ -0,0 +1,217 @@
+/**
+ * Copyright (c) 2016 by Claude Heintz Design
+ *
+ * This file is part of a library called LXforProcessing - https://github.com/claudeheintz/LXforProcessing
+ * 
+ * LXforProcessing is free software: you can redistribute it and/or modify
+ * it under the terms of a BSD style license that should have been included with this file.
+ * If not, see https://www.claudeheintzdesign.com/lx/opensource.html.
+ * 
+*/
+
+package lx4p;
+
+import java.net.*;
+
+/** LXSACNPacket
+ * 
+ * <p>LXSACNPacket is a pre-encoded E1.31 data packet for one universe.<BR>
+ * The root, framing and DMP layers are written once when the packet is constructed.
+ * Setters patch only the bytes of their own field.
+ * For each frame only the sequence number and the levels are written, plus the three
+ * flags and length fields when the number of slots changes.  The DatagramPacket is reused.</p>
+ * 
+ * <p>An LXSACNPacket is not thread safe, it should be owned by the sending thread.</p>
+ * 
+ * @author Claude Heintz
+*/
+
+public class LXSACNPacket  {
+	
+	public static final int SACN_DATA_HEADER_SIZE = 125;
+	
+	/**
+	 * encoded packet
+	 */
+	byte[] _buffer = new byte[LXSACN.SACN_BUFFER_MAX];
+	/**
+	 * reused for sending
+	 */
+	DatagramPacket _datagram = new DatagramPacket(_buffer, LXSACN.SACN_BUFFER_MAX);
+	/**
+	 * number of slots in the packet including the start code
+	 */
+	int _slots = -1;
+	/**
+	 * universe of the packet
+	 */
+	int _universe = 0;
+	/**
+	 * sequence number of the last packet
+	 */
+	byte _sequence = 0;
+	
+	/**
+	 * construct template
+	 * @param cid CID of sender
+	 * @param name source name, up to 63 bytes
+	 * @param universe 1-63999
+	 */
+	public LXSACNPacket(byte[] cid, String name, int universe) {
+		// ----- root layer -----
+		_buffer[1] = (byte) 0x10;
+		LXDMXEthernet.setStringInByteArray("ASC-E1.17", _buffer, 4, true);
+		_buffer[21] = (byte)LXSACN.SACN_VECTOR_ROOT_E131_DATA;
+		// ----- framing layer -----
+		_buffer[43] = (byte)LXSACN.SACN_VECTOR_E131_DATA_PACKET;
+		_buffer[108] = (byte)LXDMXMerge.DEFAULT_PRIORITY;
+		// ----- dmp layer -----
+		_buffer[117] = (byte)0x02;			// ACN vector
+		_buffer[118] = (byte)0xa1;			// address and data type
+		_buffer[122] = (byte)0x01;			// address increment
+		
+		setCID(cid);
+		setSourceName(name);
+		setUniverse(universe);
+		setSlotCount(LXDMXInterface.DMX_UNIVERSE_MAX+1);
+	}
+	
+	/**
+	 * @param cid CID of sender
+	 */
+	public void setCID(byte[] cid) {
+		System.arraycopy(cid, 0, _buffer, 22, LXSACN.SACN_CID_LENGTH);
+	}
+	
+	/**
+	 * @param name source name, truncated to 63 bytes
+	 */
+	public void setSourceName(String name) {
+		for (int n=44; n<108; n++) {
+			_buffer[n] = 0;
+		}
+		if ( name != null ) {
+			byte[] nb = name.getBytes();
+			System.arraycopy(nb, 0, _buffer, 44, Math.min(nb.length, 63));
+		}
+	}
+	
+	/**
+	 * @param p priority 0-200
+	 */
+	public void setPriority(byte p) {
+		_buffer[108] = p;
+	}
+	
+	/**
+	 * @param sync synchronization address, zero for none
+	 */
+	public void setSyncAddress(int sync) {
+		_buffer[109] = (byte)(sync >> 8);
+		_buffer[110] = (byte)(sync & 0xff);
+	}
+	
+	/**
+	 * @param options framing layer options, see LXSACN.SACN_OPTION_PREVIEW
+	 */
+	public void setOptions(byte options) {
+		_buffer[112] = options;
+	}
+	
+	/**
+	 * @param u universe 1-63999
+	 */
+	public void setUniverse(int u) {
+		if ( u != _universe ) {
+			_universe = u;
+			_buffer[113] = (byte)(u >> 8);
+			_buffer[114] = (byte)(u & 0xff);
+		}
+	}
+	
+	/**
+	 * @return universe of packet
+	 */
+	public int getUniverse() {
+		return _universe;
+	}
+	
+	/**
+	 * sets the slot count and the three flags and length fields if the count has changed
+	 * @param slots number of slots including the start code 1-513
+	 */
+	void setSlotCount(int slots) {
+		if ( slots != _slots ) {
+			_slots = slots;
+			int fplusl = slots + 109 + 0x7000;
+			_buffer[16] = (byte)(fplusl >> 8);
+			_buffer[17] = (byte)(fplusl & 0xff);
+			fplusl = slots + 87 + 0x7000;
+			_buffer[38] = (byte)(fplusl >> 8);
+			_buffer[39] = (byte)(fplusl & 0xff);
+			fplusl = slots + 10 + 0x7000;
+			_buffer[115] = (byte)(fplusl >> 8);
+			_buffer[116] = (byte)(fplusl & 0xff);
+			_buffer[123] = (byte)(slots >> 8);
+			_buffer[124] = (byte)(slots & 0xff);
+			_datagram.setLength(SACN_DATA_HEADER_SIZE + slots);
+		}
+	}
+	
+	/**
+	 * copy a frame into the packet and advance the sequence number
+	 * @param frame levels including the start code
+	 * @param offset index of start code in frame
+	 * @param slots number of slots including the start code 1-513
+	 * @return length of packet
+	 */
+	public int setFrame(byte[] frame, int offset, int slots) {
+		setSlotCount(slots);
+		System.arraycopy(frame, offset, _buffer, SACN_DATA_HEADER_SIZE, slots);
+		nextSequence();
+		return SACN_DATA_HEADER_SIZE + slots;
+	}
+	
+	/**
+	 * advance the sequence number without changing the levels (used to repeat a frame)
+	 */
+	public void nextSequence() {
+		_sequence++;
+		_buffer[111] = _sequence;
+	}
+	
+	/**
+	 * @param seq sequence number of next packet minus one
+	 */
+	public void setSequence(byte seq) {
+		_sequence = seq;
+	}
+	
+	/**
+	 * @return encoded packet (not a copy)
+	 */
+	public byte[] getBuffer() {
+		return _buffer;
+	}
+	
+	/**
+	 * @return length of encoded packet
+	 */
+	public int getLength() {
+		return SACN_DATA_HEADER_SIZE + _slots;
+	}
+	
+	/**
+	 * the reused DatagramPacket addressed to a destination
+	 * @param to_ip destination address
+	 * @param port destination port
+	 * @return packet ready to send
+	 */
+	public DatagramPacket datagram(InetAddress to_ip, int port) {
+		if (( _datagram.getAddress() != to_ip ) || ( _datagram.getPort() != port )) {
+			_datagram.setAddress(to_ip);
+			_datagram.setPort(port);
+		}
+		return _datagram;
+	}
+}
@@ -0,0 +1,45 @@
+/**
+ * Copyright (c) 2016 by Claude Heintz Design
+ *
+ * This file is part of a library called LXforProcessing - https://github.com/claudeheintz/LXforProcessing
+ * 
+ * LXforProcessing is free software: you can redistribute it and/or modify
+ * it under the terms of a BSD style license that should have been included with this file.
+ * If not, see https://www.claudeheintzdesign.com/lx/opensource.html.
+ * 
+*/
+
+package lx4p;
+
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/** LXUDPPacketHandler
+ * 
+ * <p>LXUDPPacketHandler is an interface for protocol objects that receive packets
+ * from a DatagramChannel registered with an LXUDPReactor.</p>
+ * 
+ * <p>Both methods are called on the reactor's thread.</p>
+*/
+
+
+public interface LXUDPPacketHandler  {
+
+	/**
+	 * called when a packet has been received
+	 * @param reactor LXUDPReactor that received the packet
+	 * @param channel DatagramChannel the packet was received on, can be used to reply
+	 * @param packet contents of the packet from position to limit, only valid until this method returns
+	 * @param sender address and port of sender
+	 */
+	public void packetReceived(LXUDPReactor reactor, DatagramChannel channel, ByteBuffer packet, InetSocketAddress sender);
+	
+	/**
+	 * called periodically by the reactor, even when no packets are received
+	 * <p>Used for housekeeping such as removing sources that have stopped sending.</p>
+	 * @param reactor LXUDPReactor calling the handler
+	 */
+	public void reactorPeriodic(LXUDPReactor reactor);
+
+}
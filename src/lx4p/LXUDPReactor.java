@@ -0,0 +1,390 @@
+/**
+ * Copyright (c) 2016 by Claude Heintz Design
+ *
+ * This file is part of a library called LXforProcessing - https://github.com/claudeheintz/LXforProcessing
+ * 
+ * LXforProcessing is free software: you can redistribute it and/or modify
+ * it under the terms of a BSD style license that should have been included with this file.
+ * If not, see https://www.claudeheintzdesign.com/lx/opensource.html.
+ * 
+*/
+
+package lx4p;
+
+import java.io.IOException;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+/** LXUDPReactor
+ * 
+ * <p>LXUDPReactor receives packets for any number of protocols on a single thread.<BR>
+ * Each DatagramChannel is registered with an LXUDPPacketHandler (LXArtNet, LXSACN, LXOSC,
+ * LXmDNSDiscoverer or LXUPnPDiscoverer).  The reactor waits on one Selector and passes each
+ * packet to the handler of the channel it arrived on.  There is no receive timeout to wait out,
+ * so a packet is handled as soon as it arrives and the sketch's draw loop never blocks.</p>
+ * 
+ * <p>Packets are received into one direct ByteBuffer that is reused for every packet.
+ * It holds RECEIVE_BUFFER_SIZE bytes, enough for the largest mDNS response.
+ * Handlers are called on the reactor thread.</p>
+ * 
+ * <p>Example:<BR>
+ * <code>
+ * LXUDPReactor reactor = new LXUDPReactor();<BR>
+ * reactor.register(LXUDPReactor.openChannel("10.110.115.10", LXArtNet.ARTNET_PORT), artnet);<BR>
+ * reactor.start();
+ * </code></p>
+ * 
+ * @author Claude Heintz
+*/
+
+public class LXUDPReactor extends Object implements Runnable  {
+
+	/**
+	 * size of the receive buffer, the largest packet of any registered protocol (mDNS allows 9000 bytes)
+	 */
+	public static final int RECEIVE_BUFFER_SIZE = LXmDNSDiscoverer.MDNS_PACKET_SIZE;
+	/**
+	 * milliseconds between calls to handlers' reactorPeriodic
+	 */
+	public static final int PERIODIC_INTERVAL = 100;
+
+	/**
+	 * selector for all registered channels
+	 */
+	Selector _selector;
+	/**
+	 * receives every packet
+	 */
+	ByteBuffer _receive_buffer = ByteBuffer.allocateDirect(RECEIVE_BUFFER_SIZE);
+	/**
+	 * channels and handlers waiting to be registered by the reactor thread
+	 */
+	Vector<Object[]> _pending = new Vector<Object[]>();
+	/**
+	 * handlers of registered channels, notified periodically, replaced (never modified) when a handler is added or removed
+	 */
+	volatile LXUDPPacketHandler[] _handlers = new LXUDPPacketHandler[0];
+	/**
+	 * number of registered channels for each handler
+	 */
+	HashMap<LXUDPPacketHandler, Integer> _channel_counts = new HashMap<LXUDPPacketHandler, Integer>();
+	/**
+	 * set while reactor thread is running
+	 */
+	volatile boolean _running = false;
+	/**
+	 * reactor thread
+	 */
+	Thread _thread = null;
+	
+	/**
+	 * construct reactor
+	 */
+	public LXUDPReactor() throws IOException {
+		_selector = Selector.open();
+	}
+	
+	/**
+	 * open a non-blocking channel bound to a network address and port
+	 * @param networkAddress address of network interface, null or "0.0.0.0" for any
+	 * @param port UDP port
+	 * @return channel or null if it could not be opened
+	 */
+	public static DatagramChannel openChannel(String networkAddress, int port) {
+		DatagramChannel channel = null;
+		try {
+			channel = DatagramChannel.open(StandardProtocolFamily.INET);
+			channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+			channel.setOption(StandardSocketOptions.SO_BROADCAST, true);
+			if ( ( networkAddress == null ) || networkAddress.equals("0.0.0.0") ) {
+				channel.bind(new InetSocketAddress(port));
+			} else {
+				channel.bind(new InetSocketAddress(InetAddress.getByName(networkAddress), port));
+			}
+			channel.configureBlocking(false);
+		} catch (Exception e) {
+			System.out.println("Can't open channel " + e);
+			closeChannel(channel);
+			channel = null;
+		}
+		return channel;
+	}
+	
+	/**
+	 * open a non-blocking channel bound to a port and joined to a multicast group
+	 * @param networkAddress address of network interface used to join the group, null for default
+	 * @param port UDP port
+	 * @param group multicast group address
+	 * @return channel or null if it could not be opened
+	 */
+	public static DatagramChannel openMulticastChannel(String networkAddress, int port, String group) {
+		DatagramChannel channel = null;
+		try {
+			NetworkInterface nic = networkInterfaceForAddress(networkAddress);
+			channel = DatagramChannel.open(StandardProtocolFamily.INET);
+			channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+			channel.bind(new InetSocketAddress(port));
+			channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, nic);
+			channel.join(InetAddress.getByName(group), nic);
+			channel.configureBlocking(false);
+		} catch (Exception e) {
+			System.out.println("Can't open multicast channel " + e);
+			closeChannel(channel);
+			channel = null;
+		}
+		return channel;
+	}
+	
+	/**
+	 * find the network interface with an address, falling back to the first multicast interface that is up
+	 * @param networkAddress address of network interface or null
+	 * @return network interface
+	 */
+	public static NetworkInterface networkInterfaceForAddress(String networkAddress) throws IOException {
+		NetworkInterface nic = null;
+		if ( ( networkAddress != null ) && ! networkAddress.equals("0.0.0.0") ) {
+			nic = NetworkInterface.getByInetAddress(InetAddress.getByName(networkAddress));
+		}
+		if ( nic == null ) {
+			Enumeration<NetworkInterface> nets = NetworkInterface.getNetworkInterfaces();
+			while ( nets.hasMoreElements() && ( nic == null ) ) {
+				NetworkInterface n = nets.nextElement();
+				if ( n.isUp() && n.supportsMulticast() && ! n.isLoopback() ) {
+					nic = n;
+				}
+			}
+		}
+		return nic;
+	}
+	
+	static void closeChannel(DatagramChannel channel) {
+		if ( channel != null ) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+	
+	/**
+	 * register a channel so that its packets are passed to a handler
+	 * <p>May be called from any thread, before or after start.</p>
+	 * @param channel non-blocking DatagramChannel
+	 * @param handler object that receives packets from the channel
+	 */
+	public void register(DatagramChannel channel, LXUDPPacketHandler handler) {
+		if ( channel == null ) {
+			return;
+		}
+		Object[] pair = new Object[2];
+		pair[0] = channel;
+		pair[1] = handler;
+		_pending.addElement(pair);
+		_selector.wakeup();
+	}
+	
+	/**
+	 * stop receiving packets from a channel and close it
+	 * <p>When the last channel of a handler is unregistered, the handler is no longer notified periodically.</p>
+	 * @param channel registered channel
+	 */
+	public void unregister(DatagramChannel channel) {
+		synchronized ( _pending ) {		// not registered part way by registerPending
+			SelectionKey key = channel.keyFor(_selector);
+			if ( key != null ) {
+				key.cancel();
+				removeChannel((LXUDPPacketHandler) key.attachment());
+			} else {
+				for (int i=0; i<_pending.size(); i++) {
+					if ( _pending.elementAt(i)[0] == channel ) {
+						_pending.removeElementAt(i);
+						break;
+					}
+				}
+			}
+			closeChannel(channel);
+		}
+		_selector.wakeup();
+	}
+	
+	/**
+	 * count a registered channel for a handler, adding the handler if it is the first
+	 * @param handler handler of the channel
+	 */
+	void addChannel(LXUDPPacketHandler handler) {
+		synchronized ( _channel_counts ) {
+			Integer count = _channel_counts.get(handler);
+			if ( count == null ) {
+				_channel_counts.put(handler, 1);
+				LXUDPPacketHandler[] handlers = Arrays.copyOf(_handlers, _handlers.length+1);
+				handlers[_handlers.length] = handler;
+				_handlers = handlers;
+			} else {
+				_channel_counts.put(handler, count+1);
+			}
+		}
+	}
+	
+	/**
+	 * remove a registered channel of a handler, removing the handler if it was the last
+	 * @param handler handler of the channel
+	 */
+	void removeChannel(LXUDPPacketHandler handler) {
+		synchronized ( _channel_counts ) {
+			Integer count = _channel_counts.get(handler);
+			if ( count == null ) {
+				return;
+			}
+			if ( count > 1 ) {
+				_channel_counts.put(handler, count-1);
+				return;
+			}
+			_channel_counts.remove(handler);
+			LXUDPPacketHandler[] handlers = new LXUDPPacketHandler[_handlers.length-1];
+			int n = 0;
+			for (int i=0; i<_handlers.length; i++) {
+				if ( _handlers[i] != handler ) {
+					handlers[n++] = _handlers[i];
+				}
+			}
+			_handlers = handlers;
+		}
+	}
+	
+	/**
+	 * start the reactor thread
+	 */
+	public synchronized void start() {
+		if ( _thread == null ) {
+			_running = true;
+			_thread = new Thread(this, "LXUDPReactor");
+			_thread.setDaemon(true);
+			_thread.start();
+		}
+	}
+	
+	/**
+	 * stop the reactor thread and wait for it to exit
+	 * <p>Registered channels remain open.</p>
+	 */
+	public void stop() {
+		Thread t;
+		synchronized ( this ) {
+			_running = false;
+			t = _thread;
+			_thread = null;
+		}
+		if ( t != null ) {
+			_selector.wakeup();
+			try {
+				t.join(1000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * stop the reactor and close the selector and every registered channel
+	 */
+	public void close() {
+		stop();
+		for (SelectionKey key : _selector.keys()) {
+			closeChannel((DatagramChannel) key.channel());
+		}
+		try {
+			_selector.close();
+		} catch (IOException e) {
+		}
+	}
+	
+	/**
+	 * @return true if reactor thread is running
+	 */
+	public boolean isRunning() {
+		return _running;
+	}
+	
+	/**
+	 * reactor loop
+	 */
+	public void run() {
+		long next_periodic = System.nanoTime();
+		while ( _running ) {
+			try {
+				registerPending();
+				_selector.select(PERIODIC_INTERVAL);
+				Iterator<SelectionKey> keys = _selector.selectedKeys().iterator();
+				while ( keys.hasNext() ) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if ( key.isValid() && key.isReadable() ) {
+						readChannel((DatagramChannel) key.channel(), (LXUDPPacketHandler) key.attachment());
+					}
+				}
+				long now = System.nanoTime();
+				if ( now - next_periodic >= 0 ) {
+					next_periodic = now + PERIODIC_INTERVAL * 1000000L;
+					LXUDPPacketHandler[] handlers = _handlers;
+					for (int i=0; i<handlers.length; i++) {
+						handlers[i].reactorPeriodic(this);
+					}
+				}
+			} catch (ClosedSelectorException e) {
+				_running = false;
+			} catch (Exception e) {
+				System.out.println("reactor exception " + e);
+			}
+		}
+	}
+	
+	/**
+	 * register channels added by other threads, must be called by the reactor thread
+	 */
+	void registerPending() throws IOException {
+		synchronized ( _pending ) {
+			while ( _pending.size() > 0 ) {
+				Object[] pair = _pending.remove(0);
+				DatagramChannel channel = (DatagramChannel) pair[0];
+				LXUDPPacketHandler handler = (LXUDPPacketHandler) pair[1];
+				channel.configureBlocking(false);
+				channel.register(_selector, SelectionKey.OP_READ, handler);
+				addChannel(handler);
+			}
+		}
+	}
+	
+	/**
+	 * receive every waiting packet on a channel and pass each to its handler
+	 * @param channel readable channel
+	 * @param handler handler registered with channel
+	 */
+	void readChannel(DatagramChannel channel, LXUDPPacketHandler handler) {
+		try {
+			while ( true ) {
+				_receive_buffer.clear();
+				SocketAddress sender = channel.receive(_receive_buffer);
+				if ( sender == null ) {
+					return;
+				}
+				_receive_buffer.flip();
+				handler.packetReceived(this, channel, _receive_buffer, (InetSocketAddress) sender);
+			}
+		} catch (Exception e) {
+			System.out.println("receive exception " + e);
+		}
+	}
+	
+	/**
+	 * send a packet on a channel
+	 * @param channel open channel
+	 * @param data packet bytes
+	 * @param length length of packet
+	 * @param to address and port of receiver
+	 */
+	public static void send(DatagramChannel channel, byte[] data, int length, SocketAddress to) throws IOException {
+		channel.send(ByteBuffer.wrap(data, 0, length), to);
+	}
+}
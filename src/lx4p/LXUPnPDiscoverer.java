@@ -12,6 +12,8 @@
 package lx4p;
 
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 import java.util.*;
 
 import javax.xml.parsers.*;
@@ -28,12 +30,16 @@ import org.w3c.dom.*;
  *  it retrieves the XML device description from the location in the SSDP packet.
  *  It calls its delegate's foundURLBase method with the device URLBase string.
  *  
+ *  Alternatively, LXUPnPDiscoverer can be registered with an LXUDPReactor.
+ *  The reactor thread sends searches every 5 seconds until the URLBase is found.
+ *  The device description is read on a separate thread so that the reactor is not blocked.
+ *  
  *  @version 001
  *  @author Claude Heintz
  *  @see LXUPnPDelegate
  */
 
-public class LXUPnPDiscoverer extends Object implements Runnable  {
+public class LXUPnPDiscoverer extends Object implements Runnable, LXUDPPacketHandler  {
 	
 	public static byte[] UPNP_MULTICAST_ADDRESS = new byte[]{(byte)224,(byte)0,(byte)0,(byte)251};
 	public static byte[] UPNP_ALT_MULTICAST_ADDRESS = new byte[]{(byte)239,(byte)255,(byte)255,(byte)250};
@@ -44,6 +50,21 @@ public class LXUPnPDiscoverer extends Object implements Runnable  {
 	 */
 	MulticastSocket udpsocket = null;
 	
+	/**
+	 *  A channel registered with an LXUDPReactor, used instead of udpsocket
+	 */
+	DatagramChannel _channel = null;
+	
+	/**
+	 *  time to send next search when receiving from an LXUDPReactor
+	 */
+	long _next_search = 0;
+	
+	/**
+	 *  set while a device description is being read for a packet received from an LXUDPReactor
+	 */
+	volatile boolean _reading_description = false;
+	
 	/**
 	 *  The string to look for in the SSDP server: line
 	 */
@@ -120,37 +141,10 @@ public class LXUPnPDiscoverer extends Object implements Runnable  {
 				udpsocket.receive(receivePacket);
 				if ( receivePacket.getLength() > 0 ) {
 					rstatus = 1;
-					byte[] receivedData = receivePacket.getData();
-					String receivedString = new String(receivedData, "UTF-8");
-					if ( diagnostic ) {
-						System.out.println("UPnP packet: " + receivedString);
-					}
-					if ( receivedString.startsWith("NOTIFY * HTTP/1.1") || receivedString.startsWith("HTTP/1.1 200 OK") ) {
-						String lines[] = receivedString.split("\\r?\\n");
-						String server = null;
-						String location = null;
-						for (int li=0; li<lines.length; li++) {
-							String t[] = lines[li].split(" ");
-							if ( t.length >= 2 ) {
-								if ( t[0].toLowerCase().equals("location:")) {
-									location = t[1];
-								} else if ( t[0].toLowerCase().equals("server:")) {
-									server = lines[li];
-								}
-							}
-						}
-						if ((location != null) && (server != null)) {
-							int sindex = server.indexOf(targetServer);
-							if ( sindex >= 0 ) {
-								getDescription(new URL(location));
-								if (urlBase != null) {
-									rstatus = 2;
-									searching = false;
-									if ( delegate != null ) {
-										delegate.foundURLBase(urlBase);
-									}
-								}
-							}
+					String location = locationForPacket(receivePacket.getData(), receivePacket.getLength());
+					if ( location != null ) {
+						if ( readDescription(location) ) {
+							rstatus = 2;
 						}
 					}
 				}
@@ -162,21 +156,131 @@ public class LXUPnPDiscoverer extends Object implements Runnable  {
 		return rstatus;
 	}
 	
+	/**
+	 * Looks for the targetServer string in the server line of an SSDP packet
+	 * @param receivedData packet bytes
+	 * @param length length of packet
+	 * @return location of device description if the packet is of interest, otherwise null
+	 */
+	String locationForPacket(byte[] receivedData, int length) throws java.io.UnsupportedEncodingException {
+		String receivedString = new String(receivedData, 0, length, "UTF-8");
+		if ( diagnostic ) {
+			System.out.println("UPnP packet: " + receivedString);
+		}
+		if ( receivedString.startsWith("NOTIFY * HTTP/1.1") || receivedString.startsWith("HTTP/1.1 200 OK") ) {
+			String lines[] = receivedString.split("\\r?\\n");
+			String server = null;
+			String location = null;
+			for (int li=0; li<lines.length; li++) {
+				String t[] = lines[li].split(" ");
+				if ( t.length >= 2 ) {
+					if ( t[0].toLowerCase().equals("location:")) {
+						location = t[1];
+					} else if ( t[0].toLowerCase().equals("server:")) {
+						server = lines[li];
+					}
+				}
+			}
+			if ((location != null) && (server != null)) {
+				int sindex = server.indexOf(targetServer);
+				if ( sindex >= 0 ) {
+					return location;
+				}
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Reads the device description at location and informs the delegate if URLBase is found
+	 * @param location URL of the device description
+	 * @return true if urlBase was found
+	 */
+	boolean readDescription(String location) throws MalformedURLException {
+		getDescription(new URL(location));
+		if (urlBase != null) {
+			searching = false;
+			if ( delegate != null ) {
+				delegate.foundURLBase(urlBase);
+			}
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * called by an LXUDPReactor when a packet is received on a channel registered with this object
+	 * <p>The device description is read on a separate thread.</p>
+	 */
+	public void packetReceived(LXUDPReactor reactor, DatagramChannel channel, ByteBuffer packet, InetSocketAddress sender) {
+		_channel = channel;
+		if (( urlBase != null ) || _reading_description ) {
+			return;
+		}
+		int length = Math.min(packet.remaining(), _packet_buffer.length);
+		packet.get(_packet_buffer, 0, length);
+		try {
+			final String location = locationForPacket(_packet_buffer, length);
+			if ( location != null ) {
+				_reading_description = true;
+				Thread reader = new Thread(new Runnable() {
+					public void run() {
+						try {
+							readDescription(location);
+						} catch ( Exception e) {
+							System.out.println("UPnP description exception " + e);
+						}
+						_reading_description = false;
+					}
+				});
+				reader.setDaemon(true);
+				reader.start();
+			}
+		} catch ( Exception e) {
+			System.out.println("UPnP packet exception " + e);
+		}
+	}
+	
+	/**
+	 * called periodically by an LXUDPReactor, sends search every 5 seconds until URLBase is found
+	 */
+	public void reactorPeriodic(LXUDPReactor reactor) {
+		if (( _channel != null ) && ( urlBase == null ) && ( System.currentTimeMillis() > _next_search )) {
+			sendSearch();
+			_next_search = System.currentTimeMillis() + 5000;
+		}
+	}
+	
+	/**
+	 * Set the DatagramChannel registered with an LXUDPReactor, used for sending searches
+	 * @param ch DatagramChannel
+	 */
+	public void setDatagramChannel(DatagramChannel ch) {
+		_channel = ch;
+	}
+	
 	/**
 	 * Sends a search request to the SSDP multicast address.
 	 * The search target is any basic device on the network
 	 */
 	public void sendSearch() {
-		if ( udpsocket != null ) {
+		if (( udpsocket != null ) || ( _channel != null )) {
 			String message = "M-SEARCH * HTTP/1.1\r\nHOST: 239.255.255.250:1900\r\nMAN: \"ssdp:discover\"\r\nMX:3\r\nST: urn:schemas-upnp-org:device:basic:1";
 			byte[] mbytes = message.getBytes();
 			try {
-				DatagramPacket sendPacket = new DatagramPacket(mbytes, 0, mbytes.length, new InetSocketAddress(InetAddress.getByAddress(UPNP_ALT_MULTICAST_ADDRESS), UPNP_MULTICAST_PORT));
-				udpsocket.send(sendPacket);
-				udpsocket.send(sendPacket);
-				udpsocket.send(sendPacket);
-				udpsocket.send(sendPacket);
-				udpsocket.send(sendPacket);
+				InetSocketAddress to = new InetSocketAddress(InetAddress.getByAddress(UPNP_ALT_MULTICAST_ADDRESS), UPNP_MULTICAST_PORT);
+				if ( udpsocket != null ) {
+					DatagramPacket sendPacket = new DatagramPacket(mbytes, 0, mbytes.length, to);
+					udpsocket.send(sendPacket);
+					udpsocket.send(sendPacket);
+					udpsocket.send(sendPacket);
+					udpsocket.send(sendPacket);
+					udpsocket.send(sendPacket);
+				} else {
+					for (int i=0; i<5; i++) {
+						LXUDPReactor.send(_channel, mbytes, mbytes.length, to);
+					}
+				}
 			} catch ( Exception e) {
 				System.out.println("UPnP send search exception " + e);
 			}
@@ -12,6 +12,8 @@
 package lx4p;
 
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 import java.util.*;
 
 /**
@@ -21,18 +23,32 @@ import java.util.*;
  *  LXmDNSDiscoverer receives DNS packets on a thread and informs its
  *  delegate of their contents.
  *  
+ *  Alternatively, LXmDNSDiscoverer can be registered with an LXUDPReactor
+ *  using a channel joined to the mDNS multicast group.  Searches are then
+ *  sent every 5 seconds by the reactor thread while in search mode.
+ *  
  *  @version 001
  *  @author Claude Heintz
  *  @see LXUPnPDelegate
  */
 
-public class LXmDNSDiscoverer extends Object implements Runnable  {
+public class LXmDNSDiscoverer extends Object implements Runnable, LXUDPPacketHandler  {
 	
 	/**
 	 *  A socket for network communication
 	 */
 	MulticastSocket multisocket = null;
 	
+	/**
+	 *  A channel registered with an LXUDPReactor, used instead of multisocket
+	 */
+	DatagramChannel _channel = null;
+	
+	/**
+	 *  time to send next search when receiving from an LXUDPReactor
+	 */
+	long _next_search = 0;
+	
 	/**
 	 *  The string to look for in the fully qualified domain name string
 	 */
@@ -45,6 +61,10 @@ public class LXmDNSDiscoverer extends Object implements Runnable  {
 	
 	public static byte[] MDNS_MULTICAST_ADDRESS = new byte[]{(byte)224, (byte)0, (byte)0, (byte)251};
 	public static int MDNS_MULTICAST_PORT = 5353;
+	/**
+	 * largest mDNS message, RFC 6762 allows responses up to 9000 bytes
+	 */
+	public static final int MDNS_PACKET_SIZE = 9000;
 	
 	/**
 	 *  A delegate to receive the foundURLBase() call when a device description
@@ -71,7 +91,7 @@ public class LXmDNSDiscoverer extends Object implements Runnable  {
 	/**
 	 * buffer for reading and sending packets
 	 */
-	byte[] _packet_buffer = new byte[1024];
+	byte[] _packet_buffer = new byte[MDNS_PACKET_SIZE];
 	
 	/**
 	 * sequence number identified reply records as belonging to the same query or response
@@ -219,69 +239,9 @@ public class LXmDNSDiscoverer extends Object implements Runnable  {
 		int rstatus = 0;
 		if ( multisocket != null ) {
 			DatagramPacket receivePacket = new DatagramPacket(_packet_buffer, _packet_buffer.length);
-			byte[] bpacket = null;
-			boolean isQuery = false;
-			boolean isResponse = false;
 			try {
 				multisocket.receive(receivePacket);
-				bpacket = receivePacket.getData();
-				if ((bpacket[0] + bpacket[1]) != 0 ) {
-					printError("bad dns packet header");
-					return 0;
-				}
-				isQuery = (( bpacket[2] == 0 ) && ( bpacket[3] == 0 ));
-				isResponse = (( (bpacket[2]&0xFF) == 0x84 ) && ( bpacket[3] == 0 ));
-			    boolean done = ( !(isQuery||isResponse));  // standard query response, no error
-			    if ( ! done ) {
-			    	int questionRecords = ((bpacket[4]&0xFF)<<8) + (bpacket[5]&0xFF);
-			    	int answerRecords = ((bpacket[6]&0xFF)<<8) + (bpacket[7]&0xFF);
-			    	int authorityRecords = ((bpacket[8]&0xFF)<<8) + (bpacket[9]&0xFF);
-			    	int additionalRecords = ((bpacket[10]&0xFF)<<8) + (bpacket[11]&0xFF);
-			    	int s = 12;
-			    	LXDNSReplyRecord rr;
-			    	_packetID++;		//identifies all responses as belonging to a group
-			    	
-			    	printMessage("? " +questionRecords + ", * " + answerRecords + ", ! " + authorityRecords + ", + " + additionalRecords);
-			    	
-			    	for(int i=0; i<questionRecords; i++) {
-			    		rr = readReplyRecordFromPacket(bpacket, s, isQuery);
-			    		rr.setPacketID(_packetID);
-			    		printMessage("question" + (i+1) + ": " + rr.getName() + ", " + rr.getQType() + ", " + rr.getQClass());
-			    		if ( delegate != null ) {
-			    			delegate.receivedMDNSQueryRecord(rr);
-			    		}
-			    		s=rr.getNextLocation();
-			    	}
-			    	for(int i=0; i<answerRecords; i++) {
-			    		rr = readReplyRecordFromPacket(bpacket, s, isQuery);
-			    		rr.setPacketID(_packetID);
-			    		rr.setAddress(receivePacket.getAddress());
-			    		printMessage("answer" + (i+1) + ": " + rr.getName() + ", " + rr.getQType() + ", " + rr.getQClass());
-			    		if ( delegate != null ) {
-			    			delegate.receivedMDNSQueryAnswerRecord(rr);
-			    		}
-			    		s=rr.getNextLocation();
-			    	}
-			    	for(int i=0; i<authorityRecords; i++) {
-			    		rr = readReplyRecordFromPacket(bpacket, s, isQuery);	//todo determine if false or isQuery
-			    		rr.setPacketID(_packetID);
-			    		printMessage("authority" + (i+1) + ": " + rr.getName() + ", " + rr.getQType() + ", " + rr.getQClass());
-			    		if ( delegate != null ) {
-			    			delegate.receivedMDNSQueryAnswerRecord(rr);
-			    		}
-			    		s=rr.getNextLocation();
-			    	}
-			    	for(int i=0; i<additionalRecords; i++) {
-			    		rr = readReplyRecordFromPacket(bpacket, s, isQuery);
-			    		rr.setPacketID(_packetID);
-			    		printMessage("additional" + (i+1) + ": " + rr.getName() + ", " + rr.getQType() + ", " + rr.getQClass());
-			    		if ( delegate != null ) {
-			    			delegate.receivedMDNSQueryAnswerRecord(rr);
-			    		}
-			    		s=rr.getNextLocation();
-			    	}
-			    	rstatus = 1;
-			    }
+				rstatus = processPacket(receivePacket.getData(), receivePacket.getAddress());
 			} catch ( Exception e) {
 			      //   will catch receive time out exception
 			      if ( ! (e instanceof java.net.SocketTimeoutException ) ) {
@@ -292,12 +252,114 @@ public class LXmDNSDiscoverer extends Object implements Runnable  {
 		return rstatus;
 	}
 	
+	/**
+	 * called by an LXUDPReactor when a packet is received on a channel registered with this object
+	 */
+	public void packetReceived(LXUDPReactor reactor, DatagramChannel channel, ByteBuffer packet, InetSocketAddress sender) {
+		_channel = channel;
+		int length = Math.min(packet.remaining(), _packet_buffer.length);
+		packet.get(_packet_buffer, 0, length);
+		try {
+			processPacket(_packet_buffer, sender.getAddress());
+		} catch ( Exception e) {
+			printError("mDNS packet exception " + e);
+		}
+	}
+	
+	/**
+	 * called periodically by an LXUDPReactor, sends search every 5 seconds while in search mode
+	 */
+	public void reactorPeriodic(LXUDPReactor reactor) {
+		if ( searchMode && ( _channel != null ) && ( System.currentTimeMillis() > _next_search ) ) {
+			sendSearch();
+			_next_search = System.currentTimeMillis() + 5000;
+		}
+	}
+	
+	/**
+	 * Set the DatagramChannel registered with an LXUDPReactor, used for sending searches
+	 * @param ch DatagramChannel joined to the mDNS multicast group
+	 */
+	public void setDatagramChannel(DatagramChannel ch) {
+		_channel = ch;
+	}
+	
+	/**
+	 * Parse an mDNS packet and pass its records to the delegate
+	 * @param bpacket packet bytes
+	 * @param sender address of sender
+	 * @return 1 if packet was a standard query or response, otherwise 0
+	 */
+	int processPacket(byte[] bpacket, InetAddress sender) {
+		int rstatus = 0;
+		boolean isQuery = false;
+		boolean isResponse = false;
+		if ((bpacket[0] + bpacket[1]) != 0 ) {
+			printError("bad dns packet header");
+			return 0;
+		}
+		isQuery = (( bpacket[2] == 0 ) && ( bpacket[3] == 0 ));
+		isResponse = (( (bpacket[2]&0xFF) == 0x84 ) && ( bpacket[3] == 0 ));
+	    boolean done = ( !(isQuery||isResponse));  // standard query response, no error
+	    if ( ! done ) {
+	    	int questionRecords = ((bpacket[4]&0xFF)<<8) + (bpacket[5]&0xFF);
+	    	int answerRecords = ((bpacket[6]&0xFF)<<8) + (bpacket[7]&0xFF);
+	    	int authorityRecords = ((bpacket[8]&0xFF)<<8) + (bpacket[9]&0xFF);
+	    	int additionalRecords = ((bpacket[10]&0xFF)<<8) + (bpacket[11]&0xFF);
+	    	int s = 12;
+	    	LXDNSReplyRecord rr;
+	    	_packetID++;		//identifies all responses as belonging to a group
+	    	
+	    	printMessage("? " +questionRecords + ", * " + answerRecords + ", ! " + authorityRecords + ", + " + additionalRecords);
+	    	
+	    	for(int i=0; i<questionRecords; i++) {
+	    		rr = readReplyRecordFromPacket(bpacket, s, isQuery);
+	    		rr.setPacketID(_packetID);
+	    		printMessage("question" + (i+1) + ": " + rr.getName() + ", " + rr.getQType() + ", " + rr.getQClass());
+	    		if ( delegate != null ) {
+	    			delegate.receivedMDNSQueryRecord(rr);
+	    		}
+	    		s=rr.getNextLocation();
+	    	}
+	    	for(int i=0; i<answerRecords; i++) {
+	    		rr = readReplyRecordFromPacket(bpacket, s, isQuery);
+	    		rr.setPacketID(_packetID);
+	    		rr.setAddress(sender);
+	    		printMessage("answer" + (i+1) + ": " + rr.getName() + ", " + rr.getQType() + ", " + rr.getQClass());
+	    		if ( delegate != null ) {
+	    			delegate.receivedMDNSQueryAnswerRecord(rr);
+	    		}
+	    		s=rr.getNextLocation();
+	    	}
+	    	for(int i=0; i<authorityRecords; i++) {
+	    		rr = readReplyRecordFromPacket(bpacket, s, isQuery);	//todo determine if false or isQuery
+	    		rr.setPacketID(_packetID);
+	    		printMessage("authority" + (i+1) + ": " + rr.getName() + ", " + rr.getQType() + ", " + rr.getQClass());
+	    		if ( delegate != null ) {
+	    			delegate.receivedMDNSQueryAnswerRecord(rr);
+	    		}
+	    		s=rr.getNextLocation();
+	    	}
+	    	for(int i=0; i<additionalRecords; i++) {
+	    		rr = readReplyRecordFromPacket(bpacket, s, isQuery);
+	    		rr.setPacketID(_packetID);
+	    		printMessage("additional" + (i+1) + ": " + rr.getName() + ", " + rr.getQType() + ", " + rr.getQClass());
+	    		if ( delegate != null ) {
+	    			delegate.receivedMDNSQueryAnswerRecord(rr);
+	    		}
+	    		s=rr.getNextLocation();
+	    	}
+	    	rstatus = 1;
+	    }
+		return rstatus;
+	}
+	
 	/**
 	 * sends a question record asking for A type, IN class records matching targetName
 	 * 
 	 */
 	public void sendSearch() {
-		if ( multisocket != null ) {
+		if (( multisocket != null ) || ( _channel != null )) {
 			byte[] mbytes = new byte[255];
 			String[] labels = targetName.split("[.]");
 			int s = 0;
@@ -331,8 +393,13 @@ public class LXmDNSDiscoverer extends Object implements Runnable  {
 			s++;
 			
 			try {
-				DatagramPacket sendPacket = new DatagramPacket(mbytes, 0, s, new InetSocketAddress(InetAddress.getByAddress(MDNS_MULTICAST_ADDRESS), MDNS_MULTICAST_PORT));
-				multisocket.send(sendPacket);
+				InetSocketAddress to = new InetSocketAddress(InetAddress.getByAddress(MDNS_MULTICAST_ADDRESS), MDNS_MULTICAST_PORT);
+				if ( multisocket != null ) {
+					DatagramPacket sendPacket = new DatagramPacket(mbytes, 0, s, to);
+					multisocket.send(sendPacket);
+				} else {
+					LXUDPReactor.send(_channel, mbytes, s, to);
+				}
 			} catch ( Exception e) {
 				printError("mDNS send search exception " + e);
 			}